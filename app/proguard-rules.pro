@@ -596,4 +596,7 @@
  -keep class **.R
  -keep class **.R$* {
  <fields>;
- }
\ No newline at end of file
+ }
+-keepclasseswithmembernames class fragments.imageHelper.webPHelper {
+    native <methods>;
+}
\ No newline at end of file
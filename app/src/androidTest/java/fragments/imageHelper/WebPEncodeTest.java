@@ -0,0 +1,112 @@
+package fragments.imageHelper;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Pixel check and throughput of {@link webPHelper#bitmapToWebp(Bitmap, float, boolean)} against its
+ * Java fallback, on a sticker-like bitmap with soft, semi transparent edges.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WebPEncodeTest {
+    private static final String TAG = "WebPEncodeTest";
+    private static final int SIZE = 512;
+    private static final int RUNS = 5;
+    private Bitmap mBitmap;
+
+    @Before
+    public void setUp() {
+        mBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        int[] row = new int[SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                row[x] = Color.argb((x + y) & 0xFF, x & 0xFF, y & 0xFF, (x * y) & 0xFF);
+            }
+            mBitmap.setPixels(row, 0, SIZE, 0, y, SIZE, 1);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mBitmap.recycle();
+    }
+
+    @Test
+    public void losslessKeepsEveryPixel() {
+        assertSamePixels(webPHelper.bitmapToWebp(mBitmap, 100, true));
+    }
+
+    @Test
+    public void fallbackKeepsEveryPixel() {
+        assertSamePixels(webPHelper.encodeThroughJava(mBitmap, 100, true));
+    }
+
+    @Test
+    public void semiTransparentWhiteStaysWhite() {
+        Bitmap bitmap = Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.argb(128, 255, 255, 255));
+        byte[] encoded = webPHelper.bitmapToWebp(bitmap, 100, true);
+        bitmap.recycle();
+        Bitmap decoded = BitmapFactory.decodeByteArray(encoded, 0, encoded.length);
+        int pixel = decoded.getPixel(1, 1);
+        decoded.recycle();
+        // encoding the premultiplied bytes as they are gave about half white
+        assertEquals(128, Color.alpha(pixel), 1);
+        assertEquals(255, Color.red(pixel), 2);
+    }
+
+    @Test
+    public void throughput() {
+        // warm up both paths before timing them
+        webPHelper.bitmapToWebp(mBitmap, 75, false);
+        webPHelper.encodeThroughJava(mBitmap, 75, false);
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            assertNotNull(webPHelper.bitmapToWebp(mBitmap, 75, false));
+        }
+        long direct = SystemClock.elapsedRealtimeNanos() - start;
+        start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < RUNS; i++) {
+            assertNotNull(webPHelper.encodeThroughJava(mBitmap, 75, false));
+        }
+        long fallback = SystemClock.elapsedRealtimeNanos() - start;
+        double megapixels = RUNS * SIZE * SIZE / 1e6;
+        Log.i(TAG, String.format("direct %.1f MP/s, java fallback %.1f MP/s",
+                megapixels / (direct / 1e9), megapixels / (fallback / 1e9)));
+    }
+
+    private void assertSamePixels(byte[] encoded) {
+        assertNotNull(encoded);
+        Bitmap decoded = BitmapFactory.decodeByteArray(encoded, 0, encoded.length);
+        assertNotNull(decoded);
+        // compared premultiplied, as stored, the decoder may round its premultiply one off
+        byte[] expected = premultipliedBytes(mBitmap);
+        byte[] actual = premultipliedBytes(decoded);
+        decoded.recycle();
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("byte " + i, expected[i] & 0xFF, actual[i] & 0xFF, 1);
+        }
+    }
+
+    private static byte[] premultipliedBytes(Bitmap bitmap) {
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(buffer);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,177 @@
+package fragments.objectHelper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Color;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import fragments.objects.ImageProperties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A 6000x6000 tiled PNG export of a scene of image layers: the file must come out whole while the
+ * heap grows far less than the 144MB one ARGB_8888 frame of that size takes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TiledExportTest {
+    private static final String TAG = "TiledExportTest";
+    private static final int SCENE = 600;
+    private static final float SCALE = 10f;
+    private static final int SIZE = 6000;
+    private static final int LAYER = 150;
+    private static final int GRID = 200;
+    private static final int MARGIN = 25;
+    private static final int LAYER_COLOR = Color.rgb(200, 30, 60);
+    /**
+     * the band, the decoded images one band crosses and the deflater, with room for the rest
+     */
+    private static final long HEAP_CAP = 64L * 1024 * 1024;
+    private Context mContext;
+    private File mImage;
+    private File mTarget;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mImage = new File(mContext.getCacheDir(), "tiled_layer.png");
+        mTarget = new File(mContext.getCacheDir(), "tiled_export.png");
+        Bitmap bitmap = Bitmap.createBitmap(512, 512, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(LAYER_COLOR);
+        FileOutputStream out = new FileOutputStream(mImage);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mImage.delete();
+        mTarget.delete();
+    }
+
+    @Test
+    public void exportsUnderTheHeapCap() throws Exception {
+        final SceneRenderer scene = scene();
+        final ExportTask[] task = new ExportTask[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                task[0] = new ExportTask(scene, SCALE, mTarget, ExportTask.FORMAT_PNG, null).setTiled(true);
+            }
+        });
+        System.gc();
+        PeakSampler sampler = new PeakSampler();
+        sampler.start();
+        long start = SystemClock.elapsedRealtime();
+        File file = task[0].doInBackground();
+        long time = SystemClock.elapsedRealtime() - start;
+        long peak = sampler.finish();
+        Log.i(TAG, String.format("%dx%d in %d ms, %d bytes, heap grew %.1f MB", SIZE, SIZE, time, mTarget.length(),
+                peak / (1024f * 1024f)));
+        assertNotNull(file);
+        assertTrue("heap grew " + peak + " bytes", peak < HEAP_CAP);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(mTarget.getPath(), options);
+        assertEquals(SIZE, options.outWidth);
+        assertEquals(SIZE, options.outHeight);
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(mTarget.getPath(), false);
+        try {
+            // the centers of the first and last layer, and the gap between two layers
+            assertEquals(LAYER_COLOR, pixel(decoder, MARGIN + LAYER / 2, MARGIN + LAYER / 2));
+            assertEquals(LAYER_COLOR, pixel(decoder, 2 * GRID + MARGIN + LAYER / 2, 2 * GRID + MARGIN + LAYER / 2));
+            assertEquals(Color.WHITE, pixel(decoder, GRID, MARGIN + LAYER / 2));
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * a white scene with a three by three grid of layers, the middle one rotated
+     */
+    private SceneRenderer scene() {
+        Drawable backGround = new ColorDrawable(Color.WHITE);
+        backGround.setBounds(0, 0, SCENE, SCENE);
+        List<Object> layers = new ArrayList<>();
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                layers.add(new ImageProperties()
+                        .setImageViewSrc(mImage.getPath())
+                        .setImageViewAlpha(1f)
+                        .setImageViewRotate(row == 1 && column == 1 ? 30 : 0)
+                        .setImageViewSize(new Point(LAYER, LAYER))
+                        .setImageViewPosition(new Point(column * GRID + MARGIN, row * GRID + MARGIN)));
+            }
+        }
+        return new SceneRenderer(mContext, SCENE, SCENE, backGround, null, null, layers);
+    }
+
+    /**
+     * the output pixel at scene pixel x, y
+     */
+    private static int pixel(BitmapRegionDecoder decoder, int x, int y) {
+        int outX = Math.round(x * SCALE);
+        int outY = Math.round(y * SCALE);
+        Bitmap region = decoder.decodeRegion(new Rect(outX, outY, outX + 1, outY + 1), null);
+        int pixel = region.getPixel(0, 0);
+        region.recycle();
+        return pixel;
+    }
+
+    /**
+     * samples how far the Java and native heaps grew since it was made
+     */
+    private static final class PeakSampler extends Thread {
+        private final long mBase = used();
+        private volatile boolean mDone;
+        private volatile long mPeak;
+
+        @Override
+        public void run() {
+            while (!mDone) {
+                mPeak = Math.max(mPeak, used() - mBase);
+                SystemClock.sleep(5);
+            }
+        }
+
+        long finish() throws InterruptedException {
+            mDone = true;
+            join();
+            return Math.max(mPeak, used() - mBase);
+        }
+
+        private static long used() {
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+        }
+    }
+}
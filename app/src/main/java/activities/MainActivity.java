@@ -9,7 +9,6 @@ import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.database.Cursor;
 import android.graphics.Bitmap;
@@ -28,7 +27,6 @@ import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.Toolbar;
-import android.util.Log;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -58,10 +56,7 @@ import com.yalantis.ucrop.UCrop;
 
 import org.apprater.AppRater;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -81,8 +76,6 @@ import fragments.MTViews.AnimationCompat.ViewProxy;
 import fragments.MTViews.LayoutHelper;
 import fragments.MTViews.PhotoEditorSeekBar;
 import fragments.MTViews.ReboundHelpers.ReboundContainerView;
-import fragments.db.dl.FilesDBManager;
-import fragments.db.dl.FilesInfo;
 import fragments.imageHelper.ImageLoader;
 import fragments.lisetener.BGResizeListener;
 import fragments.lisetener.ButtonListener;
@@ -93,6 +86,7 @@ import fragments.objectHelper.SaveImage;
 import fragments.objects.BackGroundProperties;
 import fragments.objects.ImageProperties;
 import fragments.objects.TextProperties;
+import fragments.tool.AssetProvisioner;
 import fragments.tool.CropConfig;
 import fragments.tool.Util;
 import fragments.tool.preferences.Pref;
@@ -112,6 +106,7 @@ import fragments.views.pinterestview.PinterestView;
 import mt.karimi.ronevis.ApplicationLoader;
 import mt.karimi.ronevis.BuildConfig;
 import mt.karimi.ronevis.R;
+import mt.karimi.ronevis.startup.Startup;
 
 import static android.view.View.GONE;
 import static android.view.View.VISIBLE;
@@ -451,41 +446,6 @@ public class MainActivity extends BaseActivity /* implements SuicidalFragmentLis
         }
     }
 
-    private void CopyAssets() {
-        AssetManager assetManager = getAssets();
-        String[] files = null;
-        try {
-            files = assetManager.list("sans");
-        } catch (IOException e) {
-            Log.e("tag", e.getMessage());
-        }
-        for (String filename : files) {
-            System.out.println("File name => " + filename);
-            InputStream in = null;
-            OutputStream out = null;
-            try {
-                in = assetManager.open("sans/" + filename);   // if files resides inside the "Files" directory itself
-                out = new FileOutputStream(ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisPathFontsFa), filename));
-                copyFile(in, out);
-                in.close();
-                in = null;
-                out.flush();
-                out.close();
-                out = null;
-            } catch (Exception e) {
-                Log.e("tag", e.getMessage());
-            }
-        }
-    }
-
-    private void copyFile(InputStream in, OutputStream out) throws IOException {
-        byte[] buffer = new byte[1024];
-        int read;
-        while ((read = in.read(buffer)) != -1) {
-            out.write(buffer, 0, read);
-        }
-    }
-
     private void handleSendImage(Intent intent) {
         Uri imageUri = intent.getParcelableExtra(Intent.EXTRA_STREAM);
         if (imageUri != null) {
@@ -501,23 +461,11 @@ public class MainActivity extends BaseActivity /* implements SuicidalFragmentLis
 
         mInternalLifeCycleListener = new InternalLifecycleListener();
         getApplication().registerActivityLifecycleCallbacks(mInternalLifeCycleListener);
-        CopyAssets();
-        FilesDBManager filesDBManager;
-        filesDBManager = FilesDBManager.getInstance(this);
-        FilesInfo filesInfo = new FilesInfo(
-                "1",
-                "font",
-                "fa",
-                "fa_IRANSans",
-                "5 فونت",
-                "fa_IRANSans",
-                "ایران",
-                "img",
-                "url");
-        if (!filesDBManager.exists(filesInfo.getSubcat())) {
-            filesDBManager.insert(filesInfo);
-        }
-
+        // the bundled fonts, copied in the background and only when new or changed
+        AssetProvisioner.getInstance(this).provision("sans", ApplicationLoader.appInstance().storage.getFile(getString(R.string.ronevisPathFontsFa)));
+        // the splash waited for it, a restored activity may come first
+        Startup.getInstance().require(ApplicationLoader.TASK_DEFAULT_FONT);
+        Startup.getInstance().traceFirstFrame(this);
 
         switch (AppChecker.checkAppStart(this)) {
             case NORMAL:
@@ -622,6 +570,18 @@ public class MainActivity extends BaseActivity /* implements SuicidalFragmentLis
             }
         });
 
+        // loading the WebView engine is slow and the view stays hidden, it waits until the screen is up
+        Startup.getInstance().runWhenIdle("reviewWebView", new Runnable() {
+            @Override
+            public void run() {
+                if (!isFinishing()) {
+                    addReviewWebView();
+                }
+            }
+        });
+    }
+
+    private void addReviewWebView() {
         wb = new WebView(this);
         wb.setId(R.id.web_review);
         wb.setLayoutParams(LayoutHelper.createRelative(LayoutHelper.MATCH_PARENT, LayoutHelper.MATCH_PARENT, RelativeLayout.ALIGN_PARENT_BOTTOM));
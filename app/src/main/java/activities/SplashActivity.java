@@ -10,7 +10,9 @@ import android.view.Window;
 import android.view.WindowManager;
 
 import fragments.tool.WeakHandler;
+import mt.karimi.ronevis.ApplicationLoader;
 import mt.karimi.ronevis.R;
+import mt.karimi.ronevis.startup.Startup;
 
 public class SplashActivity extends AppCompatActivity {
     public WeakHandler mHandler;
@@ -43,13 +45,17 @@ public class SplashActivity extends AppCompatActivity {
             default:
                 break;
         }
-        mHandler.postDelayed(new Runnable() {
+        Startup.getInstance().traceFirstFrame(this);
+        // shown until the main screen can draw, instead of for a fixed second
+        Startup.getInstance().whenDone(ApplicationLoader.TASK_DEFAULT_FONT, new Runnable() {
             @Override
             public void run() {
-                checkShowTutorial();
-                finish();
+                if (!isFinishing()) {
+                    checkShowTutorial();
+                    finish();
+                }
             }
-        }, 1000);
+        });
     }
 
     private void checkShowTutorial() {
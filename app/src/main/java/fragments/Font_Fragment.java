@@ -29,6 +29,7 @@ import fragments.animation.SmallBangListener;
 import fragments.db.Font_DBAdapter;
 import fragments.db.dl.FilesInfo;
 import fragments.download.listener.OnItemClickListener;
+import fragments.tool.AssetProvisioner;
 import fragments.tool.RegexFileFilter;
 import fragments.tool.Typefaces;
 import fragments.tool.Util;
@@ -134,7 +135,31 @@ public class Font_Fragment extends BaseFragment implements OnItemClickListener<F
 //        return null;
 //    }
 
+    /**
+     * the bundled fonts are copied in the background, waits for the ones of this pack only
+     *
+     * @return true when getDatas runs again once they are in place
+     */
+    private boolean waitForAssets() {
+        FilesInfo filesInfo = (FilesInfo) getArguments().getSerializable("EXTRA_SUB_CAT_INFO");
+        if (getArguments().getBoolean("fontFav") || filesInfo == null || !"fa".equals(filesInfo.getMaincat())) {
+            return false;
+        }
+        File dir = ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisPathFontsFa));
+        return AssetProvisioner.getInstance(ApplicationLoader.appInstance()).whenReady(new File(dir, filesInfo.getSubcat()).getAbsolutePath(), new Runnable() {
+            @Override
+            public void run() {
+                if (isAdded() && recyclerView != null) {
+                    getDatas();
+                }
+            }
+        });
+    }
+
     public void getDatas() {
+        if (waitForAssets()) {
+            return;
+        }
         fontDBAdapter = new Font_DBAdapter(getContext());
         fontFav = getArguments().getBoolean("fontFav");
         fontInstalled = getArguments().getBoolean("fontInstalled");
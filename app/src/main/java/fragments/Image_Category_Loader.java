@@ -22,6 +22,8 @@ import fragments.db.dl.FilesDBManager;
 import fragments.db.dl.FilesInfo;
 import fragments.views.dragLayout.DargInnerViews;
 import fragments.views.dragLayout.DragLayout;
+import mt.karimi.ronevis.ApplicationLoader;
+import mt.karimi.ronevis.startup.Startup;
 
 public class Image_Category_Loader extends DialogFragment {
     private FilesDBManager filesDBManager;
@@ -50,6 +52,7 @@ public class Image_Category_Loader extends DialogFragment {
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup group,
                              Bundle bundle) {
+        Startup.getInstance().require(ApplicationLoader.TASK_BUNDLED_PACKS);
         filesDBManager = FilesDBManager.getInstance(getContext());
         DragLayout dragLayout = null;
         dragLayout = DargInnerViews.DragLayoutLinear(getContext(), false, 184);
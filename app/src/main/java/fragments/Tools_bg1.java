@@ -2,7 +2,6 @@ package fragments;
 
 import android.app.Dialog;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
@@ -23,6 +22,7 @@ import java.util.List;
 import activities.MainActivity;
 import fragments.adapter.RecyclerImageAdapter;
 import fragments.download.listener.OnItemClickListener;
+import fragments.imageHelper.BitmapLoader;
 import fragments.objectHelper.BackGroundHelper;
 import fragments.objectHelper.Manimator;
 import mt.karimi.ronevis.ApplicationLoader;
@@ -32,6 +32,7 @@ public class Tools_bg1 extends BottomSheetDialogFragment implements OnItemClickL
     RecyclerView recyclerView;
     private List<File> BacksFiles;
     private RecyclerImageAdapter mAdapter;
+    private BitmapLoader.Request mBackGroundRequest;
     private BottomSheetBehavior.BottomSheetCallback mBottomSheetBehaviorCallback = new BottomSheetBehavior.BottomSheetCallback() {
         @Override
         public void onStateChanged(@NonNull View bottomSheet, int newState) {
@@ -140,7 +141,7 @@ public class Tools_bg1 extends BottomSheetDialogFragment implements OnItemClickL
 //            BackGroundHelper.SetBackGroundRefresh();
             BackGroundHelper.setBackGroundRemove();
             final File currentBG = BacksFiles.get(position);
-            Bitmap bitmap = BitmapFactory.decodeFile(currentBG.getAbsolutePath());
+            final String path = currentBG.getAbsolutePath();
             Ion.with(MainActivity.mainInstance().MainImageBG)
                     .placeholder(null).crossfade(false).smartSize(true).fadeIn(false).animateIn(R.anim.zoom_in_img)
                     .load(currentBG.getAbsolutePath());
@@ -148,8 +149,27 @@ public class Tools_bg1 extends BottomSheetDialogFragment implements OnItemClickL
 //            Tools_bg_setting.seekbgblur.setProgress(0);
 //            MainActivity.mainInstance().MainImageBG.setImageDrawable(new BitmapDrawable(ApplicationLoader.appInstance().getResources(), bitmap));
 //            MainActivity.mainInstance().MainImageBG.setImageBitmap(bitmap);
-            MainActivity.mainInstance().backGroundProperties.setBackGroundBitmap(bitmap);
-            MainActivity.mainInstance().backGroundProperties.setBackGroundSrc(currentBG.getAbsolutePath());
+            MainActivity.mainInstance().backGroundProperties.setBackGroundBitmap(null);
+            MainActivity.mainInstance().backGroundProperties.setBackGroundSrc(path);
+            if (mBackGroundRequest != null) {
+                mBackGroundRequest.cancel();
+            }
+            // sized for the canvas like a picked photo, Ion already shows the image meanwhile; owned, the
+            // background helpers recycle it when it is removed or blurred away
+            mBackGroundRequest = BitmapLoader.getInstance().loadOwned(path, MainActivity.CanvasSize.x, MainActivity.CanvasSize.y,
+                    BitmapLoader.PRIORITY_HIGH, new BitmapLoader.Callback() {
+                        @Override
+                        public void onLoaded(Bitmap bitmap) {
+                            if (bitmap == null) {
+                                return;
+                            }
+                            if (path.equals(MainActivity.mainInstance().backGroundProperties.getBackGroundSrc())) {
+                                MainActivity.mainInstance().backGroundProperties.setBackGroundBitmap(bitmap);
+                            } else {
+                                BitmapLoader.getInstance().recycle(bitmap);
+                            }
+                        }
+                    });
 //            Tools_bg_setting.SeekBarBGAlpha.setProgress(100);
         } catch (Exception ignored) {
             FirebaseCrash.report(ignored);
@@ -23,6 +23,7 @@ import activities.MainActivity;
 import fragments.adapter.RecyclerImageAdapter;
 import fragments.db.dl.FilesInfo;
 import fragments.download.listener.OnItemClickListener;
+import fragments.imageHelper.ImageMetadata;
 import fragments.objectHelper.ImageHelper;
 import fragments.objects.ImageProperties;
 import fragments.tool.RegexFileFilter;
@@ -147,6 +148,7 @@ public class Tools_sticker extends BaseFragment implements OnItemClickListener<F
             mAdapter.setOnItemClickListener(this);
             if (ApplicationLoader.appInstance().storage.isDirectoryExists(ApplicationLoader.appInstance().getString(R.string.ronevisPathStickers))) {
                 StickerFiles.addAll(Arrays.asList(listFilesMatching(PackageDir, mfilesInfo.getSubcat() + "_*\\d*")));
+                ImageMetadata.getInstance().indexPack(mfilesInfo.getSubcat(), new ArrayList<>(StickerFiles));
             }
             recyclerView.setLayoutManager(new GridLayoutManager(getActivity(), 5));
             recyclerView.setAdapter(mAdapter);
@@ -1,6 +1,7 @@
 package fragments.adapter;
 
 import android.annotation.SuppressLint;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -18,22 +19,45 @@ import java.util.List;
 import activities.MainActivity;
 import fragments.db.Font_DBAdapter;
 import fragments.download.listener.OnItemClickListener;
-import fragments.tool.Typefaces;
+import fragments.tool.FontPreviewLoader;
+import fragments.tool.FrameStats;
 import fragments.tool.Util;
 import fragments.views.TextIcon;
 import mt.karimi.ronevis.ApplicationLoader;
 import mt.karimi.ronevis.R;
 
 public class RecyclerFontAdapter extends RecyclerSwipeAdapter<RecyclerFontAdapter.FontsViewHolder> {
+    // rows above and below the visible ones whose fonts are parsed ahead
+    private static final int PREFETCH = 6;
     public Font_DBAdapter fontDBAdapter;
     RecyclerView recyclerView;
     private List<File> mFiles;
     private OnItemClickListener<File> mListener;
     private boolean isBacks;
+    private final FontPreviewLoader mPreviewLoader;
+    private final FrameStats mFrameStats = new FrameStats("fonts");
+    private int mPrefetchedFirst = RecyclerView.NO_POSITION;
+    private int mPrefetchedLast = RecyclerView.NO_POSITION;
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                mFrameStats.stop();
+            } else {
+                mFrameStats.start();
+            }
+        }
+
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            prefetchAround(recyclerView);
+        }
+    };
 
     public RecyclerFontAdapter(RecyclerView recyclerView) {
         this.mFiles = new ArrayList<>();
         this.recyclerView = recyclerView;
+        this.mPreviewLoader = FontPreviewLoader.getInstance(ApplicationLoader.appInstance());
     }
 
     public void setOnItemClickListener(OnItemClickListener<File> listener) {
@@ -62,11 +86,52 @@ public class RecyclerFontAdapter extends RecyclerSwipeAdapter<RecyclerFontAdapte
         bindData(holder, position);
     }
 
+    @Override
+    public void onViewRecycled(FontsViewHolder holder) {
+        super.onViewRecycled(holder);
+        mPreviewLoader.cancel(holder.tvtitlesection);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        recyclerView.addOnScrollListener(mScrollListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(mScrollListener);
+        mFrameStats.stop();
+    }
+
     @Override
     public int getItemCount() {
         return mFiles.size();
     }
 
+    private void prefetchAround(RecyclerView recyclerView) {
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || (first == mPrefetchedFirst && last == mPrefetchedLast)) {
+            return;
+        }
+        mPrefetchedFirst = first;
+        mPrefetchedLast = last;
+        List<String> fonts = new ArrayList<>();
+        for (int i = Math.max(0, first - PREFETCH); i < first; i++) {
+            fonts.add(mFiles.get(i).getAbsolutePath());
+        }
+        for (int i = last + 1; i <= Math.min(getItemCount() - 1, last + PREFETCH); i++) {
+            fonts.add(mFiles.get(i).getAbsolutePath());
+        }
+        mPreviewLoader.prefetch(fonts);
+    }
+
     public void asddsd() {
         notifyItemRangeChanged(0, getItemCount());
     }
@@ -135,12 +200,11 @@ public class RecyclerFontAdapter extends RecyclerSwipeAdapter<RecyclerFontAdapte
         File file = new File(currentImage.getAbsolutePath());
 //        Logger.d("3" + currentImage.getAbsolutePath());
         holder.singleRowFontTextID.setText(position + 1 + "");
-        MainActivity.mainInstance().tf_selected = Typefaces.getTypeface(ApplicationLoader.appInstance(), currentImage.getAbsolutePath());
-        holder.tvtitlesection.setTypeface(MainActivity.mainInstance().tf_selected);
+        final CharSequence sample;
         if (MainActivity.mainInstance().SelecetedTextView != null) {
-            holder.tvtitlesection.setText(MainActivity.mainInstance().SelecetedTextView.getText());
+            sample = MainActivity.mainInstance().SelecetedTextView.getText();
         } else {
-            holder.tvtitlesection.setText(Util.Persian(R.string.app_namePer));
+            sample = Util.Persian(R.string.app_namePer);
         }
         holder.tvtitlesection.setOnClickListener(new View.OnClickListener() {
             @SuppressLint("NewApi")
@@ -178,8 +242,12 @@ public class RecyclerFontAdapter extends RecyclerSwipeAdapter<RecyclerFontAdapte
         });
         if (file.exists()) {
             holder.singleRowFontDelete.setChecked(true);
+            // the font is parsed off the main thread, the row shows it once ready
+            mPreviewLoader.load(holder.tvtitlesection, currentImage.getAbsolutePath(), sample);
         } else {
             holder.singleRowFontDelete.setChecked(false);
+            mPreviewLoader.cancel(holder.tvtitlesection);
+            holder.tvtitlesection.setTypeface(null);
             holder.tvtitlesection.setText(Util.Persian(R.string.dfFileDeleted));
         }
     }
@@ -1,6 +1,10 @@
 package fragments.adapter;
 
 import android.animation.Animator;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -10,8 +14,6 @@ import android.view.animation.LinearInterpolator;
 import android.widget.ImageView;
 
 import com.daimajia.swipe.adapters.RecyclerSwipeAdapter;
-import com.koushikdutta.ion.Ion;
-
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,6 +21,9 @@ import java.util.List;
 import fragments.animation.BaseAnimation;
 import fragments.animation.ScaleInAnimation;
 import fragments.download.listener.OnItemClickListener;
+import fragments.imageHelper.BitmapLoader;
+import fragments.imageHelper.ImageMetadata;
+import fragments.tool.FrameStats;
 import fragments.tool.LoadImage;
 import mt.karimi.ronevis.R;
 
@@ -31,6 +36,17 @@ public class RecyclerImageAdapter extends RecyclerSwipeAdapter<RecyclerImageAdap
     private BaseAnimation mCustomAnimation;
     private BaseAnimation mSelectAnimation = new ScaleInAnimation();
     private LoadImage loadImage;
+    private final FrameStats mFrameStats = new FrameStats("images");
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                mFrameStats.stop();
+            } else {
+                mFrameStats.start();
+            }
+        }
+    };
 
     public RecyclerImageAdapter(boolean setBacks) {
         this.mFiles = new ArrayList<>();
@@ -75,7 +91,23 @@ public class RecyclerImageAdapter extends RecyclerSwipeAdapter<RecyclerImageAdap
     @Override
     public ImageViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.tab_bg_single, parent, false);
-        return new ImageViewHolder(itemView);
+        return new ImageViewHolder(itemView, cellSize(parent));
+    }
+
+    /**
+     * width of one grid cell, thumbnails decode at this size and not at the screen's before their
+     * view is laid out, a fixed thumbnail size outside a grid
+     */
+    private static int cellSize(ViewGroup parent) {
+        RecyclerView.LayoutManager layoutManager = parent instanceof RecyclerView ? ((RecyclerView) parent).getLayoutManager() : null;
+        if (!(layoutManager instanceof GridLayoutManager)) {
+            return parent.getResources().getDimensionPixelSize(R.dimen.image_thumbnail_size);
+        }
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        if (width <= 0) {
+            width = parent.getResources().getDisplayMetrics().widthPixels;
+        }
+        return Math.max(1, width / ((GridLayoutManager) layoutManager).getSpanCount());
     }
 
     @Override
@@ -88,6 +120,25 @@ public class RecyclerImageAdapter extends RecyclerSwipeAdapter<RecyclerImageAdap
         return mFiles.size();
     }
 
+    @Override
+    public void onViewRecycled(ImageViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.release();
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        recyclerView.addOnScrollListener(mScrollListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        recyclerView.removeOnScrollListener(mScrollListener);
+        mFrameStats.stop();
+    }
+
     private void bindData(ImageViewHolder holder, final int position) {
 //        mItemManger.bindView( holder.swipeLayout, position);
 //        holder.swipeLayout.setShowMode(SwipeLayout.ShowMode.PullOut);
@@ -110,9 +161,7 @@ public class RecyclerImageAdapter extends RecyclerSwipeAdapter<RecyclerImageAdap
 //                .withBitmap()
 //                .placeholder(R.drawable.empty_ronevis)
 //                .intoImageView(holder.imgbgsingle);
-        Ion.with(holder.imgbgsingle).smartSize(true)
-                .placeholder(R.drawable.empty_ronevis)
-                .load(pathString);
+        holder.load(pathString);
         holder.imgbgsingle.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -134,14 +183,50 @@ public class RecyclerImageAdapter extends RecyclerSwipeAdapter<RecyclerImageAdap
 
     public static final class ImageViewHolder extends RecyclerView.ViewHolder {
         ImageView imgbgsingle;
+        // the row owns its thumbnail, it goes back to the loader's pool when the row shows another
+        private BitmapLoader.Request mRequest;
+        private Bitmap mBitmap;
+        private final int mCellSize;
 //        SwipeLayout swipeLayout;
 //        TextIcon singleRowFontDelete;
 
-        ImageViewHolder(View itemView) {
+        ImageViewHolder(View itemView, int cellSize) {
             super(itemView);
+            mCellSize = cellSize;
             imgbgsingle = (ImageView) itemView.findViewById(R.id.imgbgsingle);
 //            singleRowFontDelete = (TextIcon) itemView.findViewById(R.id.singleRowFontDelete);
 //            swipeLayout = (SwipeLayout) itemView.findViewById(R.id.swipe);
         }
+
+        void load(String path) {
+            release();
+            // the pack's dominant color until the thumbnail is decoded, when it is indexed already
+            ImageMetadata.Info info = ImageMetadata.getInstance().peek(path);
+            if (info != null && info.getColor() != Color.TRANSPARENT) {
+                imgbgsingle.setImageDrawable(new ColorDrawable(info.getColor()));
+            }
+            mRequest = BitmapLoader.getInstance().loadOwned(path, mCellSize, mCellSize, BitmapLoader.PRIORITY_NORMAL, new BitmapLoader.Callback() {
+                @Override
+                public void onLoaded(Bitmap bitmap) {
+                    mRequest = null;
+                    if (bitmap != null) {
+                        mBitmap = bitmap;
+                        imgbgsingle.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+
+        void release() {
+            if (mRequest != null) {
+                mRequest.cancel();
+                mRequest = null;
+            }
+            imgbgsingle.setImageResource(R.drawable.empty_ronevis);
+            if (mBitmap != null) {
+                BitmapLoader.getInstance().recycle(mBitmap);
+                mBitmap = null;
+            }
+        }
     }
 }
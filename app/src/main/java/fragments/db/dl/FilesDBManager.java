@@ -18,7 +18,7 @@ public class FilesDBManager {
         mThreadInfoDao = new FilesInfoDao(context);
     }
 
-    public static FilesDBManager getInstance(Context context) {
+    public static synchronized FilesDBManager getInstance(Context context) {
         if (sDataBaseManager == null) {
             sDataBaseManager = new FilesDBManager(context);
         }
@@ -1,16 +1,34 @@
 package fragments.download;
 
-import android.os.StrictMode;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.google.firebase.crash.FirebaseCrash;
+import com.google.gson.Gson;
 
-import org.acra.sender.AcraLSender;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
+import fragments.download.model.CatalogDiff;
 import fragments.download.model.Download;
 import fragments.download.model.DownloadAPI;
 import fragments.lisetener.RespondListener;
-import fragments.tool.preferences.Pref;
 import mt.karimi.ronevis.ApplicationLoader;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
@@ -22,39 +40,218 @@ import retrofit2.converter.gson.GsonConverterFactory;
  * if you decompiled my application for any reason
  * let me know and we can be friend :)
  * email me at mtk.irib@gmail.com
+ * <p>
+ * Store catalog, served stale while it revalidates.
+ * <p>
+ * {@link #getAllFiles} answers right away with the last parsed catalog, from memory or from the copy
+ * saved in the app's files, then asks the server again. The request goes through one shared client
+ * with an on-disk HTTP cache, DownloadAPI's max-age=0 header makes it a conditional request
+ * (ETag / If-Modified-Since), so an unchanged file.txt costs a 304 and is neither parsed nor delivered
+ * again. The body comes raw and is only parsed when the server sent a new one. A new catalog is merged
+ * into the old one off the main thread ({@link CatalogDiff}), and only when something changed it is
+ * saved and delivered as a second onSuccess.
  */
 public class DataSource {
-    private static final DataSource sDataSource = new DataSource();
+    private static final String BASE_URL = "http://www.ronevis.com/";
+    private static final long HTTP_CACHE_SIZE = 2 * 1024 * 1024;
+    private static DataSource sDataSource;
+    private final Gson mGson = new Gson();
+    private final Executor mDiskExecutor = Executors.newSingleThreadExecutor();
+    private final String mBaseUrl;
+    private final File mHttpCacheDir;
+    private final File mModelFile;
+    private final Executor mMainThread;
+    private DownloadAPI mDownloadAPI;
+    private volatile Download mCatalog;
 
-    public static DataSource getInstance() {
+    /**
+     * @param baseUrl      server root, a local test server can stand in
+     * @param httpCacheDir where the HTTP cache keeps responses and validators
+     * @param modelFile    the last parsed catalog
+     * @param mainThread   runs the listener calls, the main thread in the app
+     */
+    DataSource(String baseUrl, File httpCacheDir, File modelFile, Executor mainThread) {
+        mBaseUrl = baseUrl;
+        mHttpCacheDir = httpCacheDir;
+        mModelFile = modelFile;
+        mMainThread = mainThread;
+    }
+
+    public static synchronized DataSource getInstance() {
+        if (sDataSource == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            sDataSource = new DataSource(BASE_URL,
+                    new File(ApplicationLoader.appInstance().getCacheDir(), "catalog_http"),
+                    new File(ApplicationLoader.appInstance().getFilesDir(), "catalog.json"),
+                    new Executor() {
+                        @Override
+                        public void execute(Runnable command) {
+                            handler.post(command);
+                        }
+                    });
+        }
         return sDataSource;
     }
 
-    public void getAllFiles(final RespondListener respondListener) {
-        try {
-            StrictMode.ThreadPolicy policy = new StrictMode.ThreadPolicy.Builder()
-                    .permitAll().build();
-            StrictMode.setThreadPolicy(policy);
+    private synchronized DownloadAPI getDownloadAPI() {
+        if (mDownloadAPI == null) {
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .cache(new Cache(mHttpCacheDir, HTTP_CACHE_SIZE))
+                    .build();
             Retrofit retrofit = new Retrofit.Builder()
-                    .baseUrl("http://www.ronevis.com/")
-                    .addConverterFactory(GsonConverterFactory.create())
+                    .baseUrl(mBaseUrl)
+                    .client(client)
+                    .addConverterFactory(GsonConverterFactory.create(mGson))
                     .build();
-            DownloadAPI downloadAPI = retrofit.create(DownloadAPI.class);
-            Call<Download> repos = downloadAPI.dlfile();
-            repos.enqueue(new Callback<Download>() {
+            mDownloadAPI = retrofit.create(DownloadAPI.class);
+        }
+        return mDownloadAPI;
+    }
+
+    /**
+     * delivers on the main thread, up to twice: the saved catalog first, then a changed one from the
+     * server. onFail is only called when there was nothing to show.
+     */
+    public void getAllFiles(final RespondListener respondListener) {
+        final Download catalog = mCatalog;
+        if (catalog != null) {
+            // posted, the caller's views may not exist yet
+            mMainThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    respondListener.onSuccess(Response.success(catalog));
+                }
+            });
+            refresh(respondListener, true);
+            return;
+        }
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Download saved = readModel();
+                mMainThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (saved != null) {
+                            if (mCatalog == null) {
+                                mCatalog = saved;
+                            }
+                            respondListener.onSuccess(Response.success(saved));
+                        }
+                        refresh(respondListener, saved != null);
+                    }
+                });
+            }
+        });
+    }
+
+    private void refresh(final RespondListener respondListener, final boolean served) {
+        try {
+            getDownloadAPI().dlfile().enqueue(new Callback<ResponseBody>() {
                 @Override
-                public void onResponse(Call<Download> call, Response<Download> response) {
-                    respondListener.onSuccess(response);
+                public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                    okhttp3.Response network = response.raw().networkResponse();
+                    if (served && network != null && network.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                        // revalidated, what is on screen is current, the cached body is not even read
+                        if (response.body() != null) {
+                            response.body().close();
+                        }
+                        return;
+                    }
+                    if (response.isSuccessful() && response.body() != null) {
+                        apply(response.body(), respondListener, served);
+                    } else if (!served) {
+                        respondListener.onSuccess(Response.<Download>error(response.errorBody(), response.raw()));
+                    }
                 }
 
                 @Override
-                public void onFailure(Call<Download> call, Throwable t) {
-                    respondListener.onFail(t);
+                public void onFailure(Call<ResponseBody> call, Throwable t) {
+                    if (!served) {
+                        respondListener.onFail(t);
+                    }
                 }
             });
         } catch (Exception ignored) {
             FirebaseCrash.report(ignored);
+        }
+    }
 
+    /**
+     * parses the body off the main thread and merges it into the catalog
+     */
+    private void apply(final ResponseBody body, final RespondListener respondListener, final boolean served) {
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Download fresh;
+                try {
+                    fresh = mGson.fromJson(body.charStream(), Download.class);
+                } catch (final Exception e) {
+                    if (!served) {
+                        mMainThread.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                respondListener.onFail(e);
+                            }
+                        });
+                    }
+                    return;
+                } finally {
+                    body.close();
+                }
+                if (fresh == null) {
+                    return;
+                }
+                final CatalogDiff diff = CatalogDiff.merge(mCatalog, fresh);
+                if (served && diff.isEmpty()) {
+                    return;
+                }
+                mCatalog = diff.getCatalog();
+                writeModel(diff.getCatalog());
+                mMainThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        respondListener.onSuccess(Response.success(diff.getCatalog()));
+                    }
+                });
+            }
+        });
+    }
+
+    private Download readModel() {
+        if (!mModelFile.exists()) {
+            return null;
+        }
+        try {
+            Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(mModelFile), StandardCharsets.UTF_8));
+            try {
+                return mGson.fromJson(reader, Download.class);
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            // unreadable, the network copy replaces it
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void writeModel(Download catalog) {
+        File temp = new File(mModelFile.getPath() + ".tmp");
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8));
+            try {
+                mGson.toJson(catalog, Download.class, writer);
+            } finally {
+                writer.close();
+            }
+            if (!temp.renameTo(mModelFile)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
         }
     }
 }
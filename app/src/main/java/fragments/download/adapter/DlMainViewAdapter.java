@@ -1,5 +1,7 @@
 package fragments.download.adapter;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,9 +11,14 @@ import android.widget.TextView;
 import com.koushikdutta.ion.Ion;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import fragments.download.listener.OnItemClickListener;
+import fragments.download.model.CatalogDiff;
 import fragments.download.model.Dlfile;
 import fragments.download.model.Download;
 import fragments.tool.Util;
@@ -24,8 +31,11 @@ import mt.karimi.ronevis.R;
  * email me at mtk.irib@gmail.com
  */
 public class DlMainViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
     private final ArrayList<Dlfile> mDownloads;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
     private OnItemClickListener<Dlfile> mListener;
+    private int mGeneration;
 
     public DlMainViewAdapter() {
         this.mDownloads = new ArrayList<>();
@@ -35,9 +45,37 @@ public class DlMainViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         this.mListener = listener;
     }
 
-    public void setData(Download appInfos) {
-        this.mDownloads.clear();
-        this.mDownloads.addAll(appInfos.getDlfile());
+    /**
+     * diffs the new catalog against the shown one off the main thread, then notifies only the rows
+     * that changed
+     *
+     * @param onApplied run on the main thread once the rows are updated, may be null
+     */
+    public void setData(Download appInfos, final Runnable onApplied) {
+        final List<Dlfile> oldList = new ArrayList<>(mDownloads);
+        final List<Dlfile> newList = new ArrayList<>(appInfos.getDlfile());
+        final int generation = ++mGeneration;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DlfileDiff(oldList, newList));
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            // a newer catalog is being diffed
+                            return;
+                        }
+                        mDownloads.clear();
+                        mDownloads.addAll(newList);
+                        result.dispatchUpdatesTo(DlMainViewAdapter.this);
+                        if (onApplied != null) {
+                            onApplied.run();
+                        }
+                    }
+                });
+            }
+        });
     }
 
     @Override
@@ -56,7 +94,7 @@ public class DlMainViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         return mDownloads.size();
     }
 
-    private void bindData(AppViewHolder holder, final int position) {
+    private void bindData(final AppViewHolder holder, final int position) {
         Ion.with(holder.itemView.getContext())
                 .load(mDownloads.get(position).getCover())
                 .withBitmap()
@@ -65,8 +103,10 @@ public class DlMainViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         holder.ivIcon.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                if (mListener != null) {
-                    mListener.onItemClick(v, position, mDownloads.get(position));
+                // rows move on partial updates, ask the holder where it is now
+                final int current = holder.getAdapterPosition();
+                if (mListener != null && current != RecyclerView.NO_POSITION) {
+                    mListener.onItemClick(v, current, mDownloads.get(current));
                 }
             }
         });
@@ -74,6 +114,37 @@ public class DlMainViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         holder.coverTitle.setTypeface(Util.GetSelfTypeFace(holder.itemView.getContext(), 5));
     }
 
+    private static class DlfileDiff extends DiffUtil.Callback {
+        private final List<Dlfile> mOld;
+        private final List<Dlfile> mNew;
+
+        DlfileDiff(List<Dlfile> oldList, List<Dlfile> newList) {
+            mOld = oldList;
+            mNew = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return CatalogDiff.sameDlfile(mOld.get(oldItemPosition), mNew.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            // the row shows cover and title, the title is part of the identity
+            return CatalogDiff.sameDlfileContents(mOld.get(oldItemPosition), mNew.get(newItemPosition));
+        }
+    }
+
     public static final class AppViewHolder extends RecyclerView.ViewHolder {
         public final ImageView ivIcon;
         public final TextView coverTitle;
@@ -29,6 +29,7 @@ import fragments.download.service.DownloadService;
 import fragments.download.util.PackageDelete;
 import mt.karimi.ronevis.ApplicationLoader;
 import mt.karimi.ronevis.R;
+import mt.karimi.ronevis.startup.Startup;
 import multithreaddownload.DownloadInfo;
 import multithreaddownload.DownloadManager;
 
@@ -82,6 +83,8 @@ public class DlFilesListFragment extends Fragment implements OnItemClickListener
         filesDBManager = null;
         Bundle bundle = getArguments();
         mDlfile = (Dlfile) bundle.getSerializable("EXTRA_PACKINFO");
+        Startup.getInstance().require(ApplicationLoader.TASK_BUNDLED_PACKS);
+        Startup.getInstance().require(ApplicationLoader.TASK_DOWNLOADS);
         filesDBManager = FilesDBManager.getInstance(getContext());
         mAdapter = DlFilesListAdapter.newInstance();
         mAdapter.setAdapter(filesDBManager, mDlfile.getType());
@@ -48,10 +48,18 @@ public class DlMainViewFragment extends Fragment implements OnItemClickListener<
             @Override
             public void onSuccess(Response<Download> response) {
                 Download user = response.body();
-                recyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
-                recyclerView.setAdapter(mAdapter);
-                mAdapter.setData(user);
-                checkAdapterIsEmpty();
+                if (user == null) {
+                    return;
+                }
+                // called again when a newer catalog arrives, the adapter applies the difference
+                mAdapter.setData(user, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (recyclerView != null) {
+                            checkAdapterIsEmpty();
+                        }
+                    }
+                });
             }
 
             @Override
@@ -68,6 +76,8 @@ public class DlMainViewFragment extends Fragment implements OnItemClickListener<
         mLoadingFace = (LoadingFace) view.findViewById(R.id.lv_circularSmile);
         mLoadingFace.setVisibility(View.VISIBLE);
         mLoadingFace.startAnim();
+        recyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
+        recyclerView.setAdapter(mAdapter);
         return view;
     }
 
@@ -0,0 +1,118 @@
+package fragments.download.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compares two store catalogs, a {@link Dlfile} by type and title, a {@link Pack} by id and version.
+ * <p>
+ * {@link #merge} builds the new catalog from the old one's instances wherever nothing changed, so an
+ * adapter comparing items sees unchanged rows as the same object and the diff stays cheap for a
+ * catalog of thousands of packs.
+ */
+public class CatalogDiff {
+    private final Download mCatalog;
+    private final boolean mUnchanged;
+
+    private CatalogDiff(Download catalog, boolean unchanged) {
+        mCatalog = catalog;
+        mUnchanged = unchanged;
+    }
+
+    /**
+     * @param old   the persisted catalog, may be null
+     * @param fresh the catalog just fetched
+     */
+    public static CatalogDiff merge(Download old, Download fresh) {
+        Map<String, Dlfile> oldFiles = new HashMap<>();
+        Map<String, Pack> oldPacks = new HashMap<>();
+        if (old != null) {
+            for (Dlfile dlfile : old.getDlfile()) {
+                oldFiles.put(key(dlfile), dlfile);
+                for (Pack pack : dlfile.getPacks()) {
+                    oldPacks.put(key(pack), pack);
+                }
+            }
+        }
+        ArrayList<Dlfile> merged = new ArrayList<>(fresh.getDlfile().size());
+        for (Dlfile dlfile : fresh.getDlfile()) {
+            List<Pack> packs = new ArrayList<>(dlfile.getPacks().size());
+            for (Pack pack : dlfile.getPacks()) {
+                Pack oldPack = oldPacks.get(key(pack));
+                packs.add(oldPack != null && samePackContents(oldPack, pack) ? oldPack : pack);
+            }
+            Dlfile oldFile = oldFiles.get(key(dlfile));
+            if (oldFile != null && Objects.equals(oldFile.getCover(), dlfile.getCover())
+                    && samePacks(oldFile.getPacks(), packs)) {
+                merged.add(oldFile);
+            } else {
+                dlfile.setPacks(packs);
+                merged.add(dlfile);
+            }
+        }
+        boolean unchanged = old != null && old.getDlfile().size() == merged.size();
+        for (int i = 0; unchanged && i < merged.size(); i++) {
+            unchanged = old.getDlfile().get(i) == merged.get(i);
+        }
+        return new CatalogDiff(unchanged ? old : new Download(merged), unchanged);
+    }
+
+    public static boolean sameDlfile(Dlfile a, Dlfile b) {
+        return key(a).equals(key(b));
+    }
+
+    public static boolean sameDlfileContents(Dlfile a, Dlfile b) {
+        return a == b || (Objects.equals(a.getCover(), b.getCover()) && samePacks(a.getPacks(), b.getPacks()));
+    }
+
+    public static boolean samePack(Pack a, Pack b) {
+        return key(a).equals(key(b));
+    }
+
+    public static boolean samePackContents(Pack a, Pack b) {
+        return a == b || (a.getVersion() == b.getVersion()
+                && Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getName_fa(), b.getName_fa())
+                && Objects.equals(a.getImage(), b.getImage())
+                && Objects.equals(a.getUrl(), b.getUrl())
+                && Objects.equals(a.getSubcat(), b.getSubcat()));
+    }
+
+    private static boolean samePacks(List<Pack> a, List<Pack> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!samePack(a.get(i), b.get(i)) || !samePackContents(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String key(Dlfile dlfile) {
+        return dlfile.getType() + '/' + dlfile.getTitle();
+    }
+
+    /**
+     * the id, or the url for catalogs without ids
+     */
+    private static String key(Pack pack) {
+        return pack.getId() != null && !pack.getId().isEmpty() ? pack.getId() : String.valueOf(pack.getUrl());
+    }
+
+    public Download getCatalog() {
+        return mCatalog;
+    }
+
+    /**
+     * @return true when every group and pack is the old one, in the old order
+     */
+    public boolean isEmpty() {
+        return mUnchanged;
+    }
+}
@@ -1,5 +1,6 @@
 package fragments.download.model;
 
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.GET;
 import retrofit2.http.Headers;
@@ -11,9 +12,13 @@ import retrofit2.http.Headers;
  * email me at mtk.irib@gmail.com
  */
 public interface DownloadAPI {
-    @Headers("Cache-Control: no-cache")
+    /**
+     * the raw catalog, parsed by the caller only when it is not a 304. max-age=0 makes OkHttp revalidate
+     * its cached copy, no-cache would skip the cache and send no validators
+     */
+    @Headers("Cache-Control: max-age=0")
     @GET("/file.txt")
-    Call<Download> dlfile();
+    Call<ResponseBody> dlfile();
 
     @GET("/file.txt")
     Call<FileObject> dlfiles();
@@ -12,6 +12,10 @@ public class Pack implements Serializable {
     private String name_fa;
     private String image;
     private String url;
+    /**
+     * bumped by the server when the pack's files change, 0 when the catalog has none
+     */
+    private int version;
 
     /**
      * No args constructor for use in serialization
@@ -161,4 +165,18 @@ public class Pack implements Serializable {
     public void setUrl(String url) {
         this.url = url;
     }
+
+    /**
+     * @return The version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @param version The version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
 }
@@ -11,10 +11,12 @@ import java.io.File;
 
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import fragments.db.dl.FilesInfo;
+import fragments.download.util.PackStager;
 import fragments.download.util.PackageInstall;
 import fragments.download.util.Utils;
 import mt.karimi.ronevis.ApplicationLoader;
 import mt.karimi.ronevis.R;
+import mt.karimi.ronevis.startup.Startup;
 import multithreaddownload.CallBack;
 import multithreaddownload.DownloadException;
 import multithreaddownload.DownloadManager;
@@ -31,6 +33,7 @@ public class DownloadService extends Service {
     public static final String EXTRA_TAG = "extra_tag";
     public static final String EXTRA_FRAGMENT_TAG = "extra_fragment_tag";
     public static final String EXTRA_APP_INFO = "extra_app_info";
+    public static final String EXTRA_PRIORITY = "extra_priority";
     private static final String TAG = DownloadService.class.getSimpleName();
     static Context context;
     private File mDownloadDir;
@@ -43,12 +46,21 @@ public class DownloadService extends Service {
     }
 
     public static void intentDownload(Context context, int position, String tag, String fragmenttag, FilesInfo info) {
+        // started by a tap, goes before prefetches
+        intentDownload(context, position, tag, fragmenttag, info, DownloadRequest.PRIORITY_VISIBLE);
+    }
+
+    /**
+     * @param priority one of the DownloadRequest PRIORITY_ constants
+     */
+    public static void intentDownload(Context context, int position, String tag, String fragmenttag, FilesInfo info, int priority) {
         Intent intent = new Intent(context, DownloadService.class);
         intent.setAction(ACTION_DOWNLOAD);
         intent.putExtra(EXTRA_POSITION, position);
         intent.putExtra(EXTRA_TAG, tag);
         intent.putExtra(EXTRA_FRAGMENT_TAG, fragmenttag);
         intent.putExtra(EXTRA_APP_INFO, info);
+        intent.putExtra(EXTRA_PRIORITY, priority);
         context.startService(intent);
     }
 
@@ -83,9 +95,10 @@ public class DownloadService extends Service {
             FilesInfo appInfo = (FilesInfo) intent.getSerializableExtra(EXTRA_APP_INFO);
             String tag = intent.getStringExtra(EXTRA_TAG);
             String fragmenttag = intent.getStringExtra(EXTRA_FRAGMENT_TAG);
+            int priority = intent.getIntExtra(EXTRA_PRIORITY, DownloadRequest.PRIORITY_NORMAL);
             switch (action) {
                 case ACTION_DOWNLOAD:
-                    download(position, appInfo, tag, fragmenttag);
+                    download(position, appInfo, tag, fragmenttag, priority);
                     break;
                 case ACTION_PAUSE:
                     pause(tag);
@@ -104,13 +117,17 @@ public class DownloadService extends Service {
         return super.onStartCommand(intent, flags, startId);
     }
 
-    private void download(final int position, final FilesInfo appInfo, String tag, String fragmenttag) {
+    private void download(final int position, final FilesInfo appInfo, String tag, String fragmenttag, int priority) {
+        DownloadCallBack callBack = new DownloadCallBack(position, appInfo, mNotificationManager, getApplicationContext(), fragmenttag);
         final DownloadRequest request = new DownloadRequest.Builder()
                 .setName(appInfo.getName())
                 .setUri(appInfo.getUrl())
                 .setFolder(mDownloadDir)
+                .setPriority(priority)
+                // only used when the server can't resume, a ranged download is installed in onCompleted
+                .setStreamConsumer(callBack.getPackStager())
                 .build();
-        mDownloadManager.download(request, tag, new DownloadCallBack(position, appInfo, mNotificationManager, getApplicationContext(), fragmenttag));
+        mDownloadManager.download(request, tag, callBack);
     }
 
     private void pause(String tag) {
@@ -133,6 +150,7 @@ public class DownloadService extends Service {
     public void onCreate() {
         super.onCreate();
         context = this;
+        Startup.getInstance().require(ApplicationLoader.TASK_DOWNLOADS);
         mDownloadManager = DownloadManager.getInstance();
         mNotificationManager = NotificationManagerCompat.from(getApplicationContext());
 //        mDownloadDir = new File(Environment.getExternalStorageDirectory(), "Download");
@@ -149,13 +167,16 @@ public class DownloadService extends Service {
         private final File mDownloadDir = new File(ApplicationLoader.appInstance().getCacheDir(), "Download");
         public int notifNum = 1000;
         PackageInstall packageInstall;
+        /**
+         * unzips the pack while it downloads, null for files that are no pack
+         */
+        private PackStager mPackStager;
         private int mPosition;
         private FilesInfo mFilesInfo;
         private String mfragmenttag;
         private LocalBroadcastManager mLocalBroadcastManager;
         private NotificationCompat.Builder mBuilder;
         private NotificationManagerCompat mNotificationManager;
-        private long mLastTime;
 
         public DownloadCallBack(int position, FilesInfo appInfo, NotificationManagerCompat notificationManager, Context context, String fragmenttag) {
             mPosition = position;
@@ -194,22 +215,17 @@ public class DownloadService extends Service {
         }
 
         @Override
-        public void onProgress(long finished, long total, int progress) {
-            if (mLastTime == 0) {
-                mLastTime = System.currentTimeMillis();
-            }
+        public void onProgress(long finished, long total, int progress, long speed, long eta) {
+            // already coalesced to one call per ProgressTracker.REPORT_INTERVAL
             mFilesInfo.setStatus(FilesInfo.STATUS_DOWNLOADING);
             mFilesInfo.setProgress(progress);
             mFilesInfo.setDownloadPerSize(Utils.getDownloadPerSize(finished, total));
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - mLastTime > 300) {
-                mBuilder.setContentText(
-                        ApplicationLoader.appInstance().getString(R.string.STATUS_DOWNLOADING));
-                mBuilder.setProgress(100, progress, false);
-                updateNotification();
-                sendBroadCast(mFilesInfo);
-                mLastTime = currentTime;
-            }
+            mBuilder.setContentText(
+                    ApplicationLoader.appInstance().getString(R.string.STATUS_DOWNLOADING));
+            mBuilder.setSubText(Utils.getDownloadSpeed(speed, eta));
+            mBuilder.setProgress(100, progress, false);
+            updateNotification();
+            sendBroadCast(mFilesInfo);
         }
 
         @Override
@@ -230,7 +246,8 @@ public class DownloadService extends Service {
             mNotificationManager.cancel(mPosition + notifNum);
             mFilesInfo.setStatus(FilesInfo.STATUS_COMPLETE);
             mFilesInfo.setProgress(100);
-            installPack(mFilesInfo, mPosition);
+            // not committed when the pack came in ranges, PackageInstall extracts the zip then
+            installPack(mFilesInfo, mPosition, mPackStager != null && mPackStager.isCommitted());
             sendBroadCast(mFilesInfo);
         }
 
@@ -297,32 +314,51 @@ public class DownloadService extends Service {
             mLocalBroadcastManager.sendBroadcast(intent);
         }
 
-        public void installPack(FilesInfo filesInfo, int position) {
+        /**
+         * @return the stager for a pack download, created on first use, null for other files
+         */
+        public PackStager getPackStager() {
+            if (mPackStager == null) {
+                File destination = getInstallDir(mFilesInfo);
+                if (destination != null) {
+                    mPackStager = new PackStager(destination, mFilesInfo.getSubcat());
+                }
+            }
+            return mPackStager;
+        }
+
+        /**
+         * @param extracted true when the pack was unzipped while downloading
+         */
+        public void installPack(FilesInfo filesInfo, int position, boolean extracted) {
             try {
-                if (filesInfo.getName().startsWith("back")) {
-                    packageInstall = new PackageInstall(new File(mDownloadDir, filesInfo.getName()),
-                            ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisPathBackGrounds) + "/"), context, filesInfo, position);
-                    packageInstall.execute();
-                } else if (filesInfo.getName().startsWith("sticker")) {
-                    packageInstall = new PackageInstall(new File(mDownloadDir, filesInfo.getName()),
-                            ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisPathStickers) + "/"), context, filesInfo, position);
-                    packageInstall.execute();
-                } else if (filesInfo.getName().startsWith("font_fa")) {
-                    packageInstall = new PackageInstall(new File(mDownloadDir, filesInfo.getName()),
-                            ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisPathFontsFa) + "/"), context, filesInfo, position);
-                    packageInstall.execute();
-                } else if (filesInfo.getName().startsWith("font_en")) {
-                    packageInstall = new PackageInstall(new File(mDownloadDir, filesInfo.getName()),
-                            ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisPathFontsEn) + "/"), context, filesInfo, position);
-                    packageInstall.execute();
-                } else if (filesInfo.getName().startsWith("Pattern")) {
-                    packageInstall = new PackageInstall(new File(mDownloadDir, filesInfo.getName()),
-                            ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisPathTexture) + "/"), context, filesInfo, position);
+                File destination = getInstallDir(filesInfo);
+                if (destination != null) {
+                    packageInstall = new PackageInstall(new File(mDownloadDir, filesInfo.getName()), destination, context, filesInfo, position);
+                    packageInstall.extracted = extracted;
                     packageInstall.execute();
                 }
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
         }
+
+        private static File getInstallDir(FilesInfo filesInfo) {
+            final int path;
+            if (filesInfo.getName().startsWith("back")) {
+                path = R.string.ronevisPathBackGrounds;
+            } else if (filesInfo.getName().startsWith("sticker")) {
+                path = R.string.ronevisPathStickers;
+            } else if (filesInfo.getName().startsWith("font_fa")) {
+                path = R.string.ronevisPathFontsFa;
+            } else if (filesInfo.getName().startsWith("font_en")) {
+                path = R.string.ronevisPathFontsEn;
+            } else if (filesInfo.getName().startsWith("Pattern")) {
+                path = R.string.ronevisPathTexture;
+            } else {
+                return null;
+            }
+            return ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(path) + "/");
+        }
     }
 }
@@ -0,0 +1,148 @@
+package fragments.download.util;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import mt.karimi.ronevis.ApplicationLoader;
+
+/**
+ * What one installed pack put on storage: path, size and CRC-32 of every file.
+ * <p>
+ * Kept as a small JSON file per pack in the app's private files, written after the files were moved
+ * into place, so deleting a pack or asking whether it is installed reads one file instead of scanning
+ * the pack folders.
+ */
+public class PackManifest {
+    private static final String DIR = "pack_manifests";
+    private final String mPackId;
+    private final List<Entry> mEntries;
+
+    public PackManifest(String packId, List<Entry> entries) {
+        mPackId = packId;
+        mEntries = entries;
+    }
+
+    public String getPackId() {
+        return mPackId;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(mEntries);
+    }
+
+    public static boolean isInstalled(String packId) {
+        return getFile(packId).exists();
+    }
+
+    /**
+     * @return null when the pack has no manifest, e.g. it was installed by an older version
+     */
+    public static PackManifest read(String packId) {
+        File file = getFile(packId);
+        if (!file.exists()) {
+            return null;
+        }
+        List<Entry> entries = new ArrayList<>();
+        try {
+            JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)));
+            try {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String path = null;
+                    long size = 0;
+                    long crc = 0;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if (name.equals("path")) {
+                            path = reader.nextString();
+                        } else if (name.equals("size")) {
+                            size = reader.nextLong();
+                        } else if (name.equals("crc")) {
+                            crc = reader.nextLong();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    if (path != null) {
+                        entries.add(new Entry(path, size, crc));
+                    }
+                }
+                reader.endArray();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | IllegalStateException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return new PackManifest(packId, entries);
+    }
+
+    /**
+     * replaces the manifest through a temp file, a crash leaves the old one or none
+     */
+    public void write() throws IOException {
+        File file = getFile(mPackId);
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)));
+        try {
+            writer.beginArray();
+            for (Entry entry : mEntries) {
+                writer.beginObject();
+                writer.name("path").value(entry.path);
+                writer.name("size").value(entry.size);
+                writer.name("crc").value(entry.crc);
+                writer.endObject();
+            }
+            writer.endArray();
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("could not replace " + file.getAbsolutePath());
+        }
+    }
+
+    public static boolean delete(String packId) {
+        return getFile(packId).delete();
+    }
+
+    private static File getFile(String packId) {
+        return new File(new File(ApplicationLoader.appInstance().getFilesDir(), DIR), packId + ".json");
+    }
+
+    public static class Entry {
+        /**
+         * absolute path of the installed file
+         */
+        public final String path;
+        public final long size;
+        public final long crc;
+
+        public Entry(String path, long size, long crc) {
+            this.path = path;
+            this.size = size;
+            this.crc = crc;
+        }
+    }
+}
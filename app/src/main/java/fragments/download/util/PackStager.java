@@ -0,0 +1,327 @@
+package fragments.download.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import multithreaddownload.StreamConsumer;
+
+/**
+ * Extracts a pack zip into a staging folder next to its destination and moves the files in only
+ * once the whole zip was read, so a broken download or install leaves no half pack behind. A move
+ * that fails halfway puts back what was there before.
+ * <p>
+ * As a {@link StreamConsumer} it unzips the response body while it downloads, for servers that don't
+ * accept ranges, the zip never gets written to the download folder. A zip downloaded in ranges is
+ * installed once complete, read through its central directory with its entries inflated in parallel on
+ * a small pool. Either way every file is checked against its CRC-32, entries that point outside the
+ * folder are refused, and a {@link PackManifest} is written once the files are in place. Staging sits
+ * on the same storage as the destination, moving in is one rename per file.
+ */
+public class PackStager implements StreamConsumer {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_THREADS = 4;
+    private final File mDestination;
+    private final File mStaging;
+    /**
+     * older copies the pack replaces, kept until the commit is through
+     */
+    private final File mReplaced;
+    private final String mPackId;
+    private final List<Staged> mStaged = Collections.synchronizedList(new ArrayList<Staged>());
+    private volatile boolean mCommitted;
+    private ProgressListener mProgressListener;
+
+    /**
+     * @param destination the pack folder, e.g. the fonts folder
+     * @param packId      names the staging folder and the manifest, one per pack
+     */
+    public PackStager(File destination, String packId) {
+        mDestination = destination;
+        mPackId = packId;
+        mStaging = new File(destination.getParentFile(), "." + destination.getName() + "_staging_" + packId);
+        mReplaced = new File(destination.getParentFile(), "." + destination.getName() + "_replaced_" + packId);
+    }
+
+    public PackStager setProgressListener(ProgressListener progressListener) {
+        mProgressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * @return true once the files of the last download are in the destination
+     */
+    public boolean isCommitted() {
+        return mCommitted;
+    }
+
+    @Override
+    public void consume(InputStream in, long length) throws IOException {
+        prepare();
+        ZipInputStream zin = new ZipInputStream(in);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        ZipEntry entry;
+        while ((entry = zin.getNextEntry()) != null) {
+            File target = resolve(entry);
+            if (entry.isDirectory()) {
+                target.mkdirs();
+            } else {
+                // ZipInputStream checks the CRC itself when the entry ends
+                mStaged.add(new Staged(entry.getName(), extract(zin, target, buffer, null)));
+            }
+            zin.closeEntry();
+        }
+    }
+
+    /**
+     * extracts an already downloaded zip and moves it in
+     */
+    public void install(File zip) throws IOException {
+        try {
+            extractParallel(zip);
+            commit();
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    private void extractParallel(File zip) throws IOException {
+        prepare();
+        final ZipFile zipFile = new ZipFile(zip);
+        final int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            long total = 0;
+            List<ZipEntry> files = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File target = resolve(entry);
+                if (entry.isDirectory()) {
+                    target.mkdirs();
+                } else {
+                    files.add(entry);
+                    total += Math.max(0, entry.getSize());
+                }
+            }
+            final Progress progress = new Progress(total);
+            List<Future<?>> futures = new ArrayList<>(files.size());
+            for (final ZipEntry entry : files) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        InputStream in = zipFile.getInputStream(entry);
+                        try {
+                            Staged staged = new Staged(entry.getName(), extract(in, resolve(entry), new byte[BUFFER_SIZE], progress));
+                            if (entry.getCrc() != -1 && staged.mCrc != entry.getCrc()) {
+                                throw new ZipException("CRC mismatch in " + entry.getName());
+                            }
+                            mStaged.add(staged);
+                        } finally {
+                            in.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            pool.shutdownNow();
+            zipFile.close();
+        }
+    }
+
+    /**
+     * @return size and CRC-32 of what was written
+     */
+    private static long[] extract(InputStream in, File target, byte[] buffer, Progress progress) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        CRC32 crc = new CRC32();
+        long size = 0;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(target), BUFFER_SIZE);
+        try {
+            int read;
+            while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+                out.write(buffer, 0, read);
+                crc.update(buffer, 0, read);
+                size += read;
+                if (progress != null) {
+                    progress.add(read);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        return new long[]{size, crc.getValue()};
+    }
+
+    private void prepare() throws IOException {
+        mCommitted = false;
+        mStaged.clear();
+        // left over by an earlier attempt
+        deleteRecursive(mStaging);
+        if (!mStaging.mkdirs()) {
+            throw new IOException("can't create " + mStaging);
+        }
+    }
+
+    /**
+     * refuses names like "../../x" that would land outside the staging folder
+     */
+    private File resolve(ZipEntry entry) throws IOException {
+        File target = new File(mStaging, entry.getName());
+        String root = mStaging.getCanonicalPath() + File.separator;
+        if (!target.getCanonicalPath().startsWith(root)) {
+            throw new ZipException("entry outside the pack: " + entry.getName());
+        }
+        return target;
+    }
+
+    /**
+     * moves the staged files in and writes the manifest, when either fails the files moved so far are
+     * taken out again and the copies they replaced put back
+     */
+    @Override
+    public void commit() throws IOException {
+        if (!mDestination.exists() && !mDestination.mkdirs()) {
+            throw new IOException("can't create " + mDestination);
+        }
+        deleteRecursive(mReplaced);
+        List<PackManifest.Entry> manifest = new ArrayList<>();
+        List<String> moved = new ArrayList<>();
+        try {
+            synchronized (mStaged) {
+                for (Staged staged : mStaged) {
+                    File target = new File(mDestination, staged.mName);
+                    File parent = target.getParentFile();
+                    if (parent != null && !parent.exists()) {
+                        parent.mkdirs();
+                    }
+                    if (target.exists()) {
+                        File old = new File(mReplaced, staged.mName);
+                        old.getParentFile().mkdirs();
+                        if (!target.renameTo(old)) {
+                            throw new IOException("can't move aside " + staged.mName);
+                        }
+                    }
+                    moved.add(staged.mName);
+                    if (!new File(mStaging, staged.mName).renameTo(target)) {
+                        throw new IOException("can't move " + staged.mName);
+                    }
+                    manifest.add(new PackManifest.Entry(target.getAbsolutePath(), staged.mSize, staged.mCrc));
+                }
+            }
+            new PackManifest(mPackId, manifest).write();
+        } catch (IOException e) {
+            rollback(moved);
+            throw e;
+        }
+        deleteRecursive(mStaging);
+        deleteRecursive(mReplaced);
+        mCommitted = true;
+    }
+
+    private void rollback(List<String> moved) {
+        for (String name : moved) {
+            File target = new File(mDestination, name);
+            target.delete();
+            File old = new File(mReplaced, name);
+            if (old.exists()) {
+                old.renameTo(target);
+            }
+        }
+        deleteRecursive(mReplaced);
+    }
+
+    @Override
+    public void abort() {
+        mCommitted = false;
+        mStaged.clear();
+        deleteRecursive(mStaging);
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+
+    public interface ProgressListener {
+        /**
+         * @param percent of the uncompressed bytes written, on an extracting thread
+         */
+        void onProgress(int percent);
+    }
+
+    private static class Staged {
+        final String mName;
+        final long mSize;
+        final long mCrc;
+
+        Staged(String name, long[] sizeAndCrc) {
+            mName = name;
+            mSize = sizeAndCrc[0];
+            mCrc = sizeAndCrc[1];
+        }
+    }
+
+    /**
+     * uncompressed bytes written by all threads, reports each whole percent once
+     */
+    private class Progress {
+        private final long mTotal;
+        private final AtomicLong mDone = new AtomicLong();
+        private volatile int mLastPercent = -1;
+
+        Progress(long total) {
+            mTotal = total;
+        }
+
+        void add(int bytes) {
+            if (mProgressListener == null || mTotal <= 0) {
+                return;
+            }
+            int percent = (int) Math.min(100, mDone.addAndGet(bytes) * 100 / mTotal);
+            if (percent != mLastPercent) {
+                mLastPercent = percent;
+                mProgressListener.onProgress(percent);
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ import fragments.db.dl.FilesInfo;
 import fragments.download.adapter.DlFilesListAdapter;
 import fragments.download.fragment.DlFilesListFragment;
 import fragments.tool.RegexFileFilter;
+import fragments.tool.Typefaces;
 import fragments.tool.Util;
 import mt.karimi.ronevis.ApplicationLoader;
 import mt.karimi.ronevis.R;
@@ -97,11 +98,24 @@ public class PackageDelete extends
 
     @Override
     protected Void doInBackground(Integer... param) {
+        PackManifest manifest = PackManifest.read(filesInfo.getSubcat());
+        if (manifest != null) {
+            // the manifest lists what the install wrote, no folder scan
+            List<PackManifest.Entry> entries = manifest.getEntries();
+            for (int i = 0; i < entries.size(); i++) {
+                Typefaces.removeAll(entries.get(i).path);
+                new File(entries.get(i).path).delete();
+                publishProgress(0, 100 * (i + 1) / entries.size());
+            }
+            PackManifest.delete(filesInfo.getSubcat());
+            return null;
+        }
         displayDirectoryContents(PackageDir);
         int fileCount = filesAll.size() - 1;
         if (fileCount != 0) {
             for (int i = 0; i <= fileCount; i++) {
                 if (filesAll.get(i).exists()) {
+                    Typefaces.removeAll(filesAll.get(i).getAbsolutePath());
                     filesAll.get(i).delete();
                     int progress = 100 * i / fileCount;
                     publishProgress(0, progress);
@@ -8,13 +8,8 @@ import com.google.firebase.crash.FirebaseCrash;
 
 import org.acra.sender.AcraLSender;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import activities.AppDetailActivity;
 import fragments.db.dl.FilesDBManager;
@@ -43,6 +38,10 @@ public class PackageInstall extends
     public DlFilesListAdapter.AppViewHolder holder = null;
     public DlFilesListFragment sourceObjectType = null;
     public Activity activity = null;
+    /**
+     * set when the pack was unzipped while downloading, only the bookkeeping is left
+     */
+    public boolean extracted = false;
 
     public PackageInstall(File mfile, File mdestination, Context mcontext, FilesInfo mfilesInfo, int mposition) throws IOException {
         file = mfile;
@@ -62,7 +61,7 @@ public class PackageInstall extends
 
     @Override
     protected void onPreExecute() {
-        if (!FileUtils.isMemorySizeAvailableAndroid(file.length(), true)) {
+        if (!extracted && !FileUtils.isMemorySizeAvailableAndroid(file.length(), true)) {
             cancleBarcodeWorker();
         }
         if (filesDBManager == null) {
@@ -83,36 +82,17 @@ public class PackageInstall extends
 
     @Override
     protected Void doInBackground(Integer... param) {
+        if (extracted) {
+            return null;
+        }
         try {
-            ZipInputStream zin = new ZipInputStream(new FileInputStream(file));
-            String workingDir = destination.getAbsolutePath() + '/';
-            byte buffer[] = new byte[1024 * 8];
-            int bytesRead;
-            ZipEntry entry;
-            int ff = 0;
-            while ((entry = zin.getNextEntry()) != null) {
-                if (entry.isDirectory()) {
-                    File dir = new File(workingDir, entry.getName());
-                    if (!dir.exists()) {
-                        dir.mkdir();
-                    }
-                } else {
-                    FileOutputStream fos = new FileOutputStream(workingDir + entry.getName());
-                    BufferedOutputStream bufout = new BufferedOutputStream(fos, buffer.length);
-                    while ((bytesRead = zin.read(buffer, 0, buffer.length)) != -1) {
-                        bufout.write(buffer, 0, bytesRead);
-                    }
-                    zin.closeEntry();
-                    bufout.flush();
-                    bufout.close();
-                    fos.flush();
-                    fos.close();
+            // staged first, a broken zip leaves the pack folder as it was
+            new PackStager(destination, filesInfo.getSubcat()).setProgressListener(new PackStager.ProgressListener() {
+                @Override
+                public void onProgress(int percent) {
+                    publishProgress(0, percent);
                 }
-                ff += entry.getCompressedSize();
-                final int percent = Math.round((float) ff / file.length() * 100f);
-                publishProgress(0, percent);
-            }
-            zin.close();
+            }).install(file);
             if (file.exists()) {
                 file.delete();
             }
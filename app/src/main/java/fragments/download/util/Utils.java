@@ -22,6 +22,21 @@ public class Utils {
         return DF.format((float) finished / (1024 * 1024)) + "M/" + DF.format((float) total / (1024 * 1024)) + "M";
     }
 
+    /**
+     * @param speed bytes per second, nothing is shown while it is negative
+     * @param eta   milliseconds left, left out while it is negative
+     */
+    public static String getDownloadSpeed(long speed, long eta) {
+        if (speed < 0) {
+            return "";
+        }
+        String text = DF.format((float) speed / 1024) + "K/s";
+        if (eta >= 0) {
+            text += " " + ((eta + 999) / 1000) + "s";
+        }
+        return text;
+    }
+
     public static void installApp(Context context, File file) {
         Intent intent = new Intent(Intent.ACTION_VIEW);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
@@ -0,0 +1,508 @@
+package fragments.imageHelper;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Point;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fragments.views.BitmapLruCache;
+import fragments.views.BitmapPool;
+import fragments.views.CacheableBitmapDrawable;
+import mt.karimi.ronevis.ApplicationLoader;
+import mt.karimi.ronevis.BuildConfig;
+
+/**
+ * The one place images are decoded, for files on storage and for paths inside the assets.
+ * <p>
+ * Every decode is sized for where the bitmap is shown: the file's bounds are read first and it is
+ * decoded with the biggest power of two sample size that still covers the requested width and height.
+ * {@link #get} and {@link #load} return bitmaps shared through a {@link BitmapLruCache} keyed by path
+ * and requested size, so callers must never recycle them; a second request for a bitmap that is still
+ * being decoded waits for that decode instead of starting another. {@link #load} runs on a small pool
+ * ordered by priority and a {@link Request} that is cancelled before its turn is never decoded.
+ * {@link #decode} is for callers that own the bitmap, it skips the cache but is counted in the same
+ * hit rate and decode time stats, logged on debug builds. Those callers hand it back through
+ * {@link #recycle} and every decode first tries to reuse the memory of one of them from a
+ * {@link BitmapPool}.
+ */
+public class BitmapLoader {
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+    private static final String TAG = "BitmapLoader";
+    private static final int THREADS = 2;
+    private static final int LOG_EVERY = 20;
+    private static final int POOL_HEAP_RATIO = 16;
+    private static BitmapLoader sInstance;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final AssetManager mAssets;
+    private final DisplayMetrics mDisplay;
+    private final BitmapLruCache mCache;
+    private final BitmapPool mPool;
+    private final ThreadPoolExecutor mExecutor;
+    // decodes queued or running, by cache key
+    private final Map<String, Job> mJobs = new HashMap<>();
+    private final AtomicLong mSequence = new AtomicLong();
+    private final AtomicInteger mHits = new AtomicInteger();
+    private final AtomicInteger mMisses = new AtomicInteger();
+    private final AtomicInteger mJoined = new AtomicInteger();
+    private final AtomicInteger mCancelled = new AtomicInteger();
+    private final AtomicInteger mDecodes = new AtomicInteger();
+    private final AtomicLong mDecodeNanos = new AtomicLong();
+    private final AtomicLong mAllocatedBytes = new AtomicLong();
+    private final AtomicLong mReusedBytes = new AtomicLong();
+
+    private BitmapLoader(Context context) {
+        mAssets = context.getAssets();
+        mDisplay = context.getResources().getDisplayMetrics();
+        mCache = new BitmapLruCache.Builder(context)
+                .setMemoryCacheEnabled(true)
+                .setMemoryCacheMaxSizeUsingHeapSize()
+                .setDiskCacheEnabled(false)
+                .build();
+        mPool = new BitmapPool((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / POOL_HEAP_RATIO));
+        mExecutor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private int mCount;
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "bitmap-loader-" + (++mCount));
+            }
+        });
+    }
+
+    public static synchronized BitmapLoader getInstance() {
+        if (sInstance == null) {
+            sInstance = new BitmapLoader(ApplicationLoader.appInstance());
+        }
+        return sInstance;
+    }
+
+    /**
+     * frees cached and pooled bitmaps as far as level asks, when the loader was ever used
+     *
+     * @param level as passed to {@link android.content.ComponentCallbacks2#onTrimMemory}
+     */
+    public static void trimMemory(int level) {
+        BitmapLoader loader;
+        synchronized (BitmapLoader.class) {
+            loader = sInstance;
+        }
+        if (loader == null) {
+            return;
+        }
+        loader.mPool.trimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            loader.mCache.trimMemory();
+        }
+    }
+
+    /**
+     * the largest power of two that keeps the decoded image at least reqWidth by reqHeight, 1 when
+     * either is not positive
+     */
+    public static int sampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return sampleSize;
+        }
+        while ((width / (sampleSize * 2)) >= reqWidth && (height / (sampleSize * 2)) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * the size view shows a bitmap at, its layout size before it is laid out and the screen when it
+     * has neither
+     */
+    public Point targetSize(View view) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (width <= 0 && params != null) {
+            width = params.width;
+        }
+        if (height <= 0 && params != null) {
+            height = params.height;
+        }
+        return new Point(width > 0 ? width : mDisplay.widthPixels, height > 0 ? height : mDisplay.heightPixels);
+    }
+
+    /**
+     * the shared bitmap of path sized for reqWidth by reqHeight, decoded on this thread unless it is
+     * cached or already being decoded, 0 for either size decodes the full image
+     */
+    public Bitmap get(String path, int reqWidth, int reqHeight) {
+        String key = key(path, reqWidth, reqHeight);
+        Bitmap cached = fromCache(key);
+        if (cached != null) {
+            return cached;
+        }
+        Job job;
+        boolean own = false;
+        synchronized (this) {
+            job = mJobs.get(key);
+            if (job == null) {
+                job = new Job(key, path, reqWidth, reqHeight, PRIORITY_HIGH, false);
+                mJobs.put(key, job);
+                own = true;
+            } else {
+                mJoined.incrementAndGet();
+            }
+            job.mWaiters++;
+        }
+        // a job still in the queue is taken over instead of waited for
+        if (own || mExecutor.remove(job)) {
+            job.run();
+        }
+        try {
+            job.mDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return job.mResult;
+    }
+
+    /**
+     * decodes the shared bitmap of path in the background and calls callback with it on the main
+     * thread, or with null when it can't be decoded, right away when it is cached
+     */
+    public Request load(String path, int reqWidth, int reqHeight, int priority, Callback callback) {
+        String key = key(path, reqWidth, reqHeight);
+        Request request = new Request(callback);
+        Bitmap cached = fromCache(key);
+        if (cached != null) {
+            callback.onLoaded(cached);
+            return request;
+        }
+        synchronized (this) {
+            Job job = mJobs.get(key);
+            if (job == null) {
+                job = new Job(key, path, reqWidth, reqHeight, priority, false);
+                mJobs.put(key, job);
+                job.mRequests.add(request);
+                request.mJob = job;
+                mExecutor.execute(job);
+                return request;
+            }
+            mJoined.incrementAndGet();
+            job.mRequests.add(request);
+            request.mJob = job;
+            if (priority > job.mPriority && mExecutor.remove(job)) {
+                // queued again to move up
+                job.mPriority = priority;
+                mExecutor.execute(job);
+            }
+        }
+        return request;
+    }
+
+    /**
+     * decodes a bitmap for callback alone in the background, for views that show it until they are
+     * rebound and then hand it back through {@link #recycle}, a cancelled request's bitmap goes
+     * straight back to the pool
+     */
+    public Request loadOwned(String path, int reqWidth, int reqHeight, int priority, Callback callback) {
+        Request request = new Request(callback);
+        Job job = new Job(key(path, reqWidth, reqHeight), path, reqWidth, reqHeight, priority, true);
+        synchronized (this) {
+            job.mRequests.add(request);
+            request.mJob = job;
+        }
+        mExecutor.execute(job);
+        return request;
+    }
+
+    /**
+     * decodes path sized for reqWidth by reqHeight into a bitmap the caller owns and may recycle, 0
+     * for either size decodes the full image
+     */
+    public Bitmap decode(String path, int reqWidth, int reqHeight) {
+        mMisses.incrementAndGet();
+        return decodeSized(path, reqWidth, reqHeight);
+    }
+
+    /**
+     * decodes path with opts as set by the caller, counted in the stats
+     */
+    public Bitmap decode(String path, BitmapFactory.Options opts) {
+        if (path == null) {
+            return null;
+        }
+        if (opts.inJustDecodeBounds) {
+            return decodeFrom(path, opts);
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        // with the bounds known the decode can go into a pooled bitmap
+        boolean reused = opts.inBitmap == null && opts.outWidth > 0 && mPool.addInBitmapOptions(opts);
+        Bitmap bitmap;
+        try {
+            bitmap = decodeFrom(path, opts);
+        } catch (IllegalArgumentException e) {
+            if (!reused) {
+                throw e;
+            }
+            bitmap = null;
+        }
+        if (bitmap == null && reused) {
+            // the pooled bitmap didn't fit after all, decodeFile only logs that
+            mPool.put(opts.inBitmap);
+            opts.inBitmap = null;
+            reused = false;
+            bitmap = decodeFrom(path, opts);
+        }
+        mDecodeNanos.addAndGet(SystemClock.elapsedRealtimeNanos() - start);
+        if (bitmap != null) {
+            (reused ? mReusedBytes : mAllocatedBytes).addAndGet(bitmap.getAllocationByteCount());
+        }
+        if (mDecodes.incrementAndGet() % LOG_EVERY == 0 && BuildConfig.DEBUG) {
+            Log.i(TAG, getStats());
+        }
+        return bitmap;
+    }
+
+    /**
+     * hands a bitmap from {@link #decode} back when the caller is done with it, to be decoded into
+     * again, it is recycled when the pool can't take it
+     */
+    public void recycle(Bitmap bitmap) {
+        if (bitmap != null && !mPool.put(bitmap)) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * bytes decoded into new bitmaps and into pooled ones, since the app started
+     */
+    public long getAllocatedBytes() {
+        return mAllocatedBytes.get();
+    }
+
+    public long getReusedBytes() {
+        return mReusedBytes.get();
+    }
+
+    /**
+     * share of the requests served from the cache or from a decode already running
+     */
+    public float getHitRate() {
+        int hits = mHits.get() + mJoined.get();
+        int total = hits + mMisses.get();
+        return total == 0 ? 0 : hits / (float) total;
+    }
+
+    public float getAverageDecodeMillis() {
+        int decodes = mDecodes.get();
+        return decodes == 0 ? 0 : mDecodeNanos.get() / (float) decodes / 1000000f;
+    }
+
+    public String getStats() {
+        return String.format(Locale.US, "hits=%d joined=%d misses=%d cancelled=%d hitRate=%.2f decodes=%d avg=%.1fms"
+                        + " allocated=%dKB reused=%dKB %s",
+                mHits.get(), mJoined.get(), mMisses.get(), mCancelled.get(), getHitRate(), mDecodes.get(),
+                getAverageDecodeMillis(), mAllocatedBytes.get() / 1024, mReusedBytes.get() / 1024, mPool.getStats());
+    }
+
+    private Bitmap decodeSized(String path, int reqWidth, int reqHeight) {
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inJustDecodeBounds = true;
+        decode(path, opts);
+        if (opts.outWidth <= 0 || opts.outHeight <= 0) {
+            return null;
+        }
+        opts.inJustDecodeBounds = false;
+        opts.inSampleSize = sampleSize(opts.outWidth, opts.outHeight, reqWidth, reqHeight);
+        return decode(path, opts);
+    }
+
+    private Bitmap decodeFrom(String path, BitmapFactory.Options opts) {
+        try {
+            if (path.startsWith("/")) {
+                return BitmapFactory.decodeFile(path, opts);
+            }
+            InputStream in = mAssets.open(path);
+            try {
+                return BitmapFactory.decodeStream(in, null, opts);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "can't open " + path, e);
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "out of memory decoding " + path, e);
+            mCache.trimMemory();
+            mPool.clear();
+        }
+        return null;
+    }
+
+    private Bitmap fromCache(String key) {
+        CacheableBitmapDrawable cached = mCache.getFromMemoryCache(key);
+        if (cached != null) {
+            mHits.incrementAndGet();
+            return cached.getBitmap();
+        }
+        return null;
+    }
+
+    private static String key(String path, int reqWidth, int reqHeight) {
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return path;
+        }
+        return path + '|' + reqWidth + 'x' + reqHeight;
+    }
+
+    private void cancel(Request request) {
+        synchronized (this) {
+            request.mCancelled = true;
+            Job job = request.mJob;
+            if (job == null) {
+                return;
+            }
+            job.mRequests.remove(request);
+            if (job.mStarted || !job.mRequests.isEmpty() || job.mWaiters > 0) {
+                return;
+            }
+            mExecutor.remove(job);
+            if (mJobs.get(job.mKey) == job) {
+                mJobs.remove(job.mKey);
+            }
+        }
+        mCancelled.incrementAndGet();
+    }
+
+    public interface Callback {
+        /**
+         * @param bitmap shared from {@link #load}, owned from {@link #loadOwned}, null when it could
+         *               not be decoded
+         */
+        void onLoaded(Bitmap bitmap);
+    }
+
+    /**
+     * a pending {@link #load}, cancelled on the main thread when its target goes away
+     */
+    public class Request {
+        private final Callback mCallback;
+        private Job mJob;
+        private boolean mCancelled;
+
+        private Request(Callback callback) {
+            mCallback = callback;
+        }
+
+        public void cancel() {
+            BitmapLoader.this.cancel(this);
+        }
+    }
+
+    private class Job implements Runnable, Comparable<Job> {
+        final String mKey;
+        final String mPath;
+        final int mWidth;
+        final int mHeight;
+        final long mOrder = mSequence.incrementAndGet();
+        final CountDownLatch mDone = new CountDownLatch(1);
+        final List<Request> mRequests = new ArrayList<>();
+        // decoded for its one request alone, without the cache
+        final boolean mOwned;
+        int mPriority;
+        int mWaiters;
+        boolean mStarted;
+        Bitmap mResult;
+
+        Job(String key, String path, int width, int height, int priority, boolean owned) {
+            mKey = key;
+            mPath = path;
+            mWidth = width;
+            mHeight = height;
+            mPriority = priority;
+            mOwned = owned;
+        }
+
+        @Override
+        public void run() {
+            synchronized (BitmapLoader.this) {
+                if (mStarted) {
+                    return;
+                }
+                mStarted = true;
+            }
+            mMisses.incrementAndGet();
+            Bitmap bitmap = decodeSized(mPath, mWidth, mHeight);
+            if (bitmap != null && !mOwned) {
+                mCache.put(mKey, bitmap);
+            }
+            final List<Request> requests;
+            synchronized (BitmapLoader.this) {
+                mResult = bitmap;
+                if (mJobs.get(mKey) == this) {
+                    mJobs.remove(mKey);
+                }
+                requests = new ArrayList<>(mRequests);
+            }
+            mDone.countDown();
+            if (requests.isEmpty()) {
+                if (mOwned) {
+                    recycle(bitmap);
+                }
+                return;
+            }
+            final Bitmap result = bitmap;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (Request request : requests) {
+                        if (!request.mCancelled) {
+                            request.mCallback.onLoaded(result);
+                        } else if (mOwned) {
+                            recycle(result);
+                        }
+                    }
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (mPriority != other.mPriority) {
+                return mPriority > other.mPriority ? -1 : 1;
+            }
+            return mOrder < other.mOrder ? -1 : (mOrder == other.mOrder ? 0 : 1);
+        }
+    }
+}
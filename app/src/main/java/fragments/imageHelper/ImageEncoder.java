@@ -0,0 +1,212 @@
+package fragments.imageHelper;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * One place to turn a bitmap into PNG, JPEG or WebP bytes, over {@link Bitmap#compress} and
+ * {@link webPHelper}. Pick a {@link Preset} or set quality and lossless yourself; with a target size
+ * the lossy quality is binary searched so the output is the best that fits.
+ * Each encode returns a {@link Result} with its bytes, quality, attempts and timing.
+ * <p>
+ * PNG, and JPEG without a target size, compress straight into the file when given one, so the encoder
+ * never holds a second copy of the image; WebP and the quality search need the bytes first.
+ */
+public class ImageEncoder {
+    public static final int FORMAT_PNG = 0;
+    public static final int FORMAT_WEBP = 1;
+    public static final int FORMAT_JPEG = 2;
+    private static final int MIN_QUALITY = 10;
+    private static final int MAX_QUALITY = 100;
+    private final int mFormat;
+    private int mQuality = MAX_QUALITY;
+    private boolean mLossless;
+    private long mTargetBytes;
+
+    public ImageEncoder(int format) {
+        mFormat = format;
+    }
+
+    public static ImageEncoder preset(int format, Preset preset) {
+        return new ImageEncoder(format)
+                .setQuality(preset.quality)
+                .setLossless(preset.lossless);
+    }
+
+    public int getFormat() {
+        return mFormat;
+    }
+
+    public String getExtension() {
+        switch (mFormat) {
+            case FORMAT_WEBP:
+                return ".webp";
+            case FORMAT_JPEG:
+                return ".jpg";
+            default:
+                return ".png";
+        }
+    }
+
+    public ImageEncoder setQuality(int quality) {
+        mQuality = Math.max(MIN_QUALITY, Math.min(MAX_QUALITY, quality));
+        return this;
+    }
+
+    /**
+     * only WebP has a lossless mode, PNG always is and JPEG never is
+     */
+    public ImageEncoder setLossless(boolean lossless) {
+        mLossless = lossless;
+        return this;
+    }
+
+    /**
+     * @param targetBytes largest wanted output for lossy formats, 0 to encode at the set quality
+     */
+    public ImageEncoder setTargetBytes(long targetBytes) {
+        mTargetBytes = targetBytes;
+        return this;
+    }
+
+    private boolean isLossy() {
+        return mFormat == FORMAT_JPEG || (mFormat == FORMAT_WEBP && !mLossless);
+    }
+
+    public Result encode(Bitmap bitmap) {
+        long start = SystemClock.elapsedRealtime();
+        if (!isLossy() || mTargetBytes <= 0) {
+            byte[] data = encode(bitmap, mQuality);
+            return new Result(data, mQuality, 1, SystemClock.elapsedRealtime() - start);
+        }
+        byte[] best = null;
+        int bestQuality = 0;
+        int attempts = 0;
+        int low = MIN_QUALITY;
+        int high = mQuality;
+        while (low <= high) {
+            int quality = (low + high) >>> 1;
+            byte[] data = encode(bitmap, quality);
+            attempts++;
+            if (data != null && data.length <= mTargetBytes) {
+                best = data;
+                bestQuality = quality;
+                low = quality + 1;
+            } else {
+                high = quality - 1;
+            }
+        }
+        if (best == null) {
+            // nothing fits, the smallest we can make is still the closest
+            best = encode(bitmap, MIN_QUALITY);
+            bestQuality = MIN_QUALITY;
+            attempts++;
+        }
+        return new Result(best, bestQuality, attempts, SystemClock.elapsedRealtime() - start);
+    }
+
+    /**
+     * @return the result of the encode, its data null when it was compressed straight into target
+     */
+    public Result encode(Bitmap bitmap, File target) throws IOException {
+        if (mFormat != FORMAT_WEBP && (!isLossy() || mTargetBytes <= 0)) {
+            return compress(bitmap, target);
+        }
+        Result result = encode(bitmap);
+        if (result.data == null) {
+            throw new IOException("could not encode " + target.getName());
+        }
+        webPHelper.writeFileFromByteArray(target, result.data);
+        if (!target.exists() || target.length() != result.data.length) {
+            throw new IOException("could not write " + target.getAbsolutePath());
+        }
+        return result;
+    }
+
+    private Result compress(Bitmap bitmap, File target) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        boolean compressed;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(target), 64 * 1024);
+        try {
+            compressed = bitmap.compress(getCompressFormat(), mQuality, out);
+        } finally {
+            out.close();
+        }
+        if (!compressed) {
+            throw new IOException("could not encode " + target.getName());
+        }
+        return new Result(null, target.length(), mQuality, 1, SystemClock.elapsedRealtime() - start);
+    }
+
+    private byte[] encode(Bitmap bitmap, int quality) {
+        if (mFormat == FORMAT_WEBP) {
+            return webPHelper.bitmapToWebp(bitmap, quality, mLossless);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bitmap.getByteCount() / 4);
+        return bitmap.compress(getCompressFormat(), quality, out) ? out.toByteArray() : null;
+    }
+
+    private Bitmap.CompressFormat getCompressFormat() {
+        return mFormat == FORMAT_JPEG ? Bitmap.CompressFormat.JPEG : Bitmap.CompressFormat.PNG;
+    }
+
+    public enum Preset {
+        /**
+         * small files that upload quickly from a phone
+         */
+        FAST_SHARE(75, false),
+        BALANCED(90, false),
+        /**
+         * keeps every pixel, lossless WebP or quality 100
+         */
+        ARCHIVAL(100, true);
+
+        final int quality;
+        final boolean lossless;
+
+        Preset(int quality, boolean lossless) {
+            this.quality = quality;
+            this.lossless = lossless;
+        }
+    }
+
+    public static class Result {
+        /**
+         * the encoded bytes, null when they went straight into a file
+         */
+        public final byte[] data;
+        public final long size;
+        public final int quality;
+        public final int attempts;
+        public final long millis;
+
+        Result(byte[] data, int quality, int attempts, long millis) {
+            this(data, data == null ? 0 : data.length, quality, attempts, millis);
+        }
+
+        Result(byte[] data, long size, int quality, int attempts, long millis) {
+            this.data = data;
+            this.size = size;
+            this.quality = quality;
+            this.attempts = attempts;
+            this.millis = millis;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "encoded %d bytes at quality %d in %d ms (%d attempts)", getSize(), quality, millis, attempts);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package fragments.imageHelper;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
 import android.graphics.Point;
 import android.media.ExifInterface;
@@ -38,29 +37,15 @@ public class ImageLoader {
     public static Bitmap scaleAndRotateImage(String path, int orientation) {
         Bitmap bitmap = null;
         try {
-            final BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inJustDecodeBounds = true;
-            BitmapFactory.decodeFile(path, options);
-            int sourceWidth, sourceHeight;
-            if (orientation == 90 || orientation == 270) {
-                sourceWidth = options.outHeight;
-                sourceHeight = options.outWidth;
-            } else {
-                sourceWidth = options.outWidth;
-                sourceHeight = options.outHeight;
-            }
             int targetWidth = MainActivity.CanvasSize.x;
             int targetHeight = MainActivity.CanvasSize.y;
-            if (sourceWidth > targetWidth || sourceHeight > targetHeight) {
-                float widthRatio = (float) sourceWidth / (float) targetWidth;
-                float heightRatio = (float) sourceHeight / (float) targetHeight;
-                float maxRatio = Math.max(widthRatio, heightRatio);
-                options.inJustDecodeBounds = false;
-                options.inSampleSize = (int) maxRatio;
-                bitmap = BitmapFactory.decodeFile(path, options);
+            // decoded before the rotation, a quarter turn swaps the size it has to cover
+            if (orientation == 90 || orientation == 270) {
+                bitmap = BitmapLoader.getInstance().decode(path, targetHeight, targetWidth);
             } else {
-                bitmap = BitmapFactory.decodeFile(path);
+                bitmap = BitmapLoader.getInstance().decode(path, targetWidth, targetHeight);
             }
+            int sourceWidth, sourceHeight;
             int orientationInDegrees = exifToDegrees(orientation);
             if (orientation > 0) {
                 Matrix matrix = new Matrix();
@@ -0,0 +1,402 @@
+package fragments.imageHelper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.Point;
+import android.media.ExifInterface;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import mt.karimi.ronevis.ApplicationLoader;
+
+/**
+ * Size, orientation, mime type and dominant color of images, read without decoding their pixels.
+ * <p>
+ * {@link #get} reads only the image header through {@link BitmapLoader} and, for JPEGs on storage,
+ * the EXIF orientation, which is folded into the size so it is the size the image is shown at.
+ * {@link #indexPack} keeps the metadata of every file of an installed pack in an index in the app's
+ * files, with the dominant color from a tiny sampled decode, so opening the pack again reads one
+ * small file instead of every image. {@link #indexPack} and {@link #get} check entries against the
+ * file's length and modification time and probe again when either changed, {@link #peek} answers from
+ * memory only.
+ */
+public class ImageMetadata {
+    private static final String TAG = "ImageMetadata";
+    private static final String INDEX_DIR = "image_index";
+    // 2 added the mirror flag, indexes from before lack it and had mirrored images turned the wrong way
+    private static final int INDEX_VERSION = 2;
+    // pixels per side of the decode the dominant color comes from
+    private static final int COLOR_SAMPLE = 16;
+    private static ImageMetadata sInstance;
+    private final File mIndexDir;
+    private final Executor mExecutor;
+    private final Map<String, Info> mInfos = new HashMap<>();
+
+    private ImageMetadata(Context context) {
+        mIndexDir = new File(context.getFilesDir(), INDEX_DIR);
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "image-metadata");
+            }
+        });
+    }
+
+    public static synchronized ImageMetadata getInstance() {
+        if (sInstance == null) {
+            sInstance = new ImageMetadata(ApplicationLoader.appInstance());
+        }
+        return sInstance;
+    }
+
+    /**
+     * the metadata of the file or asset at path, from the index or read from its header, null when
+     * it is no image
+     */
+    public Info get(String path) {
+        Info info = peek(path);
+        if (info != null && (!path.startsWith("/") || info.isCurrent(new File(path)))) {
+            return info;
+        }
+        info = probe(path, false);
+        if (info != null) {
+            synchronized (mInfos) {
+                mInfos.put(path, info);
+            }
+        }
+        return info;
+    }
+
+    /**
+     * the metadata of path when it is already known, as of the last {@link #indexPack} or {@link #get},
+     * never touches storage so it can run while a row binds
+     */
+    public Info peek(String path) {
+        synchronized (mInfos) {
+            return mInfos.get(path);
+        }
+    }
+
+    /**
+     * loads the index of pack and brings it up to date with files in the background
+     *
+     * @param pack the pack's id, the index file is named after it
+     */
+    public void indexPack(final String pack, final List<File> files) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                index(pack, files);
+            }
+        });
+    }
+
+    private void index(String pack, List<File> files) {
+        long start = SystemClock.elapsedRealtime();
+        File indexFile = new File(mIndexDir, pack + ".json");
+        Map<String, Info> indexed = readIndex(indexFile);
+        Map<String, Info> current = new HashMap<>();
+        int probed = 0;
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            Info info = indexed.get(path);
+            if (info == null || !info.isCurrent(file)) {
+                info = probe(path, true);
+                probed++;
+            }
+            if (info != null) {
+                current.put(path, info);
+            }
+        }
+        synchronized (mInfos) {
+            mInfos.putAll(current);
+        }
+        if (probed > 0 || current.size() != indexed.size()) {
+            writeIndex(indexFile, current);
+        }
+        Log.i(TAG, pack + ": probed " + probed + " of " + files.size() + " in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    private static Info probe(String path, boolean withColor) {
+        BitmapLoader loader = BitmapLoader.getInstance();
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inJustDecodeBounds = true;
+        loader.decode(path, opts);
+        if (opts.outWidth <= 0 || opts.outHeight <= 0) {
+            return null;
+        }
+        int orientation = ExifInterface.ORIENTATION_NORMAL;
+        if ("image/jpeg".equals(opts.outMimeType) && path.startsWith("/")) {
+            orientation = readOrientation(path);
+        }
+        int color = Color.TRANSPARENT;
+        if (withColor) {
+            Bitmap sample = loader.decode(path, COLOR_SAMPLE, COLOR_SAMPLE);
+            if (sample != null) {
+                color = dominantColor(sample);
+                loader.recycle(sample);
+            }
+        }
+        File file = new File(path);
+        boolean flipped = orientation == ExifInterface.ORIENTATION_FLIP_HORIZONTAL
+                || orientation == ExifInterface.ORIENTATION_FLIP_VERTICAL
+                || orientation == ExifInterface.ORIENTATION_TRANSPOSE
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE;
+        return new Info(opts.outWidth, opts.outHeight, rotationOf(orientation), flipped, opts.outMimeType, color,
+                file.length(), file.lastModified());
+    }
+
+    private static int readOrientation(String path) {
+        try {
+            return new ExifInterface(path).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * the clockwise turn after the mirror, the mirrored orientations are a mirror plus a turn
+     */
+    private static int rotationOf(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * the average of the mostly opaque pixels, transparent when there are none
+     */
+    private static int dominantColor(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        int count = 0;
+        for (int pixel : pixels) {
+            if (Color.alpha(pixel) < 128) {
+                continue;
+            }
+            red += Color.red(pixel);
+            green += Color.green(pixel);
+            blue += Color.blue(pixel);
+            count++;
+        }
+        if (count == 0) {
+            return Color.TRANSPARENT;
+        }
+        return Color.rgb((int) (red / count), (int) (green / count), (int) (blue / count));
+    }
+
+    private static Map<String, Info> readIndex(File indexFile) {
+        Map<String, Info> indexed = new HashMap<>();
+        if (!indexFile.exists()) {
+            return indexed;
+        }
+        try {
+            JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8)));
+            try {
+                int version = -1;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("version")) {
+                        version = reader.nextInt();
+                    } else if (name.equals("images") && version == INDEX_VERSION) {
+                        readImages(reader, indexed);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // the pack is probed again and the index rewritten
+            e.printStackTrace();
+            indexed.clear();
+        }
+        return indexed;
+    }
+
+    private static void readImages(JsonReader reader, Map<String, Info> indexed) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String path = reader.nextName();
+            int width = 0;
+            int height = 0;
+            int rotation = 0;
+            boolean flipped = false;
+            String mime = null;
+            int color = Color.TRANSPARENT;
+            long length = -1;
+            long modified = -1;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("width")) {
+                    width = reader.nextInt();
+                } else if (name.equals("height")) {
+                    height = reader.nextInt();
+                } else if (name.equals("rotation")) {
+                    rotation = reader.nextInt();
+                } else if (name.equals("flipped")) {
+                    flipped = reader.nextBoolean();
+                } else if (name.equals("mime")) {
+                    mime = reader.nextString();
+                } else if (name.equals("color")) {
+                    color = reader.nextInt();
+                } else if (name.equals("length")) {
+                    length = reader.nextLong();
+                } else if (name.equals("modified")) {
+                    modified = reader.nextLong();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            indexed.put(path, new Info(width, height, rotation, flipped, mime, color, length, modified));
+        }
+        reader.endObject();
+    }
+
+    private void writeIndex(File indexFile, Map<String, Info> infos) {
+        if (!mIndexDir.exists()) {
+            mIndexDir.mkdirs();
+        }
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try {
+            JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)));
+            try {
+                writer.beginObject();
+                writer.name("version").value(INDEX_VERSION);
+                writer.name("images").beginObject();
+                for (Map.Entry<String, Info> entry : infos.entrySet()) {
+                    Info info = entry.getValue();
+                    writer.name(entry.getKey()).beginObject();
+                    writer.name("width").value(info.mWidth);
+                    writer.name("height").value(info.mHeight);
+                    writer.name("rotation").value(info.mRotation);
+                    writer.name("flipped").value(info.mFlipped);
+                    if (info.mMime != null) {
+                        writer.name("mime").value(info.mMime);
+                    }
+                    writer.name("color").value(info.mColor);
+                    writer.name("length").value(info.mLength);
+                    writer.name("modified").value(info.mModified);
+                    writer.endObject();
+                }
+                writer.endObject();
+                writer.endObject();
+            } finally {
+                writer.close();
+            }
+            if (!temp.renameTo(indexFile)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+        }
+    }
+
+    public static final class Info {
+        private final int mWidth;
+        private final int mHeight;
+        private final int mRotation;
+        private final boolean mFlipped;
+        private final String mMime;
+        private final int mColor;
+        private final long mLength;
+        private final long mModified;
+
+        Info(int width, int height, int rotation, boolean flipped, String mime, int color, long length, long modified) {
+            mWidth = width;
+            mHeight = height;
+            mRotation = rotation;
+            mFlipped = flipped;
+            mMime = mime;
+            mColor = color;
+            mLength = length;
+            mModified = modified;
+        }
+
+        /**
+         * the size the image is shown at, width and height swapped when it is turned a quarter
+         */
+        public Point getSize() {
+            return mRotation == 90 || mRotation == 270 ? new Point(mHeight, mWidth) : new Point(mWidth, mHeight);
+        }
+
+        /**
+         * clockwise degrees the stored pixels are turned by to show the image upright
+         */
+        public int getRotation() {
+            return mRotation;
+        }
+
+        /**
+         * true when the stored pixels are mirrored left to right before {@link #getRotation()} turns them
+         */
+        public boolean isFlipped() {
+            return mFlipped;
+        }
+
+        public String getMime() {
+            return mMime;
+        }
+
+        /**
+         * the average color of the opaque pixels, transparent when the pack wasn't indexed yet
+         */
+        public int getColor() {
+            return mColor;
+        }
+
+        boolean isCurrent(File file) {
+            return file.length() == mLength && file.lastModified() == mModified;
+        }
+    }
+}
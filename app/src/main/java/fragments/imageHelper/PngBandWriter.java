@@ -0,0 +1,168 @@
+package fragments.imageHelper;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a truecolor + alpha PNG one horizontal band at a time, so the whole image never has to be
+ * in memory. Bands are written top to bottom with {@link #writeBand(Bitmap, int)} and the file is
+ * finished with {@link #close()}, or given up with {@link #abort()}. Rows use the Sub filter, pixels are taken unpremultiplied.
+ */
+public class PngBandWriter {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IDAT_SIZE = 64 * 1024;
+    private final OutputStream mOut;
+    private final int mWidth;
+    private final int mHeight;
+    private final DeflaterOutputStream mDeflater;
+    private final Deflater mDeflaterImpl;
+    private final IdatOutputStream mIdat;
+    private final int[] mPixels;
+    private final byte[] mRow;
+    private int mRowsWritten;
+
+    public PngBandWriter(OutputStream out, int width, int height) throws IOException {
+        mOut = out;
+        mWidth = width;
+        mHeight = height;
+        mPixels = new int[width];
+        mRow = new byte[1 + width * 4];
+        mOut.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // bit depth
+        header[9] = 6; // RGBA
+        writeChunk(mOut, "IHDR", header, header.length);
+        mDeflaterImpl = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        mIdat = new IdatOutputStream();
+        mDeflater = new DeflaterOutputStream(mIdat, mDeflaterImpl, IDAT_SIZE);
+    }
+
+    /**
+     * @param rows rows of band to write, starting at its top, band must be as wide as the image
+     */
+    public void writeBand(Bitmap band, int rows) throws IOException {
+        if (band.getWidth() != mWidth || rows > band.getHeight() || mRowsWritten + rows > mHeight) {
+            throw new IllegalArgumentException("band does not fit the image");
+        }
+        for (int y = 0; y < rows; y++) {
+            band.getPixels(mPixels, 0, mWidth, 0, y, mWidth, 1);
+            mRow[0] = 1; // Sub filter
+            int prevR = 0, prevG = 0, prevB = 0, prevA = 0;
+            for (int x = 0, i = 1; x < mWidth; x++, i += 4) {
+                int c = mPixels[x];
+                int r = (c >> 16) & 0xFF;
+                int g = (c >> 8) & 0xFF;
+                int b = c & 0xFF;
+                int a = c >>> 24;
+                mRow[i] = (byte) (r - prevR);
+                mRow[i + 1] = (byte) (g - prevG);
+                mRow[i + 2] = (byte) (b - prevB);
+                mRow[i + 3] = (byte) (a - prevA);
+                prevR = r;
+                prevG = g;
+                prevB = b;
+                prevA = a;
+            }
+            mDeflater.write(mRow);
+        }
+        mRowsWritten += rows;
+    }
+
+    /**
+     * finishes the image data and writes the end chunk, does not close the underlying stream
+     */
+    public void close() throws IOException {
+        try {
+            if (mRowsWritten != mHeight) {
+                throw new IOException("only " + mRowsWritten + " of " + mHeight + " rows written");
+            }
+            mDeflater.finish();
+            mIdat.flush();
+        } finally {
+            mDeflaterImpl.end();
+        }
+        writeChunk(mOut, "IEND", new byte[0], 0);
+        mOut.flush();
+    }
+
+    /**
+     * frees the native deflater of an image that won't be finished, the output is left incomplete,
+     * does nothing after {@link #close()}
+     */
+    public void abort() {
+        mDeflaterImpl.end();
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] head = new byte[8];
+        putInt(head, 0, length);
+        for (int i = 0; i < 4; i++) {
+            head[4 + i] = (byte) type.charAt(i);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(head, 4, 4);
+        crc.update(data, 0, length);
+        byte[] tail = new byte[4];
+        putInt(tail, 0, (int) crc.getValue());
+        out.write(head);
+        out.write(data, 0, length);
+        out.write(tail);
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    /**
+     * collects deflated bytes and writes them as IDAT chunks
+     */
+    private class IdatOutputStream extends OutputStream {
+        private final byte[] mBuffer = new byte[IDAT_SIZE];
+        private int mCount;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (mCount == mBuffer.length) {
+                flush();
+            }
+            mBuffer[mCount++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (mCount == mBuffer.length) {
+                    flush();
+                }
+                int n = Math.min(len, mBuffer.length - mCount);
+                System.arraycopy(b, off, mBuffer, mCount, n);
+                mCount += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (mCount > 0) {
+                writeChunk(mOut, "IDAT", mBuffer, mCount);
+                mCount = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
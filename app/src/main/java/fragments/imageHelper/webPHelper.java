@@ -1,7 +1,6 @@
 package fragments.imageHelper;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 
 import com.google.webp.libwebp;
 
@@ -18,54 +17,88 @@ import java.nio.ByteBuffer;
  * email me at mtk.irib@gmail.com
  */
 public class webPHelper {
+    private static final float QUALITY = 100;
+    private static boolean nativeBitmap;
+
+    static {
+        try {
+            System.loadLibrary("webp");
+            nativeBitmap = true;
+        } catch (UnsatisfiedLinkError e) {
+            nativeBitmap = false;
+        }
+    }
+
+    /**
+     * encodes the locked pixels of an ARGB_8888 bitmap in native code, null when the bitmap can not be locked
+     */
+    private static native byte[] nativeEncodeBitmap(Bitmap bitmap, float quality, boolean lossless);
+
     public static byte[] bitmapToWebp(String filePath) {
-        Bitmap bitmap = BitmapFactory.decodeFile(filePath);
-        int bytes = bitmap.getByteCount();
-        ByteBuffer buffer = ByteBuffer.allocate(bytes);
-        bitmap.copyPixelsToBuffer(buffer);
-        byte[] pixels = buffer.array();
-        int height = bitmap.getHeight();
-        int width = bitmap.getWidth();
-        int stride = width * 4;
-        int quality = 100;
-        byte[] rgb = new byte[3];
-        for (int y = 0; y < height * 4; y++) {
-            for (int x = 0; x < width; x += 4) {
-                for (int i = 0; i < 3; i++) {
-                    rgb[i] = pixels[x + y * width + i];
-                }
-                for (int i = 0; i < 3; i++) {
-                    pixels[x + y * width + 2 - i] = rgb[i];
+        Bitmap bitmap = BitmapLoader.getInstance().decode(filePath, 0, 0);
+        try {
+            return bitmapToWebp(bitmap);
+        } finally {
+            BitmapLoader.getInstance().recycle(bitmap);
+        }
+    }
+
+    public static byte[] bitmapToWebp(Bitmap bitmap) {
+        return bitmapToWebp(bitmap, QUALITY, false);
+    }
+
+    /**
+     * ARGB_8888 pixels are stored as R, G, B, A bytes, so they go to the RGBA entry points without a
+     * swizzle. They are premultiplied and libwebp wants straight alpha, so both paths unpremultiply:
+     * the native one into a scratch buffer, the fallback through {@link Bitmap#getPixels}.
+     */
+    public static byte[] bitmapToWebp(Bitmap bitmap, float quality, boolean lossless) {
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            Bitmap copy = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+            try {
+                return bitmapToWebp(copy, quality, lossless);
+            } finally {
+                copy.recycle();
+            }
+        }
+        if (nativeBitmap) {
+            try {
+                byte[] encoded = nativeEncodeBitmap(bitmap, quality, lossless);
+                if (encoded != null) {
+                    return encoded;
                 }
+            } catch (UnsatisfiedLinkError e) {
+                nativeBitmap = false;
             }
         }
-        byte[] encoded = libwebp.WebPEncodeBGRA(pixels, width, height, stride, quality);
-        return encoded;
+        return encodeThroughJava(bitmap, quality, lossless);
     }
 
-    public static byte[] bitmapToWebp(Bitmap bitmap) {
-        int bytes = bitmap.getByteCount();
-        ByteBuffer buffer = ByteBuffer.allocate(bytes);
-        bitmap.copyPixelsToBuffer(buffer);
-        byte[] pixels = buffer.array();
-        int height = bitmap.getHeight();
+    /**
+     * the fallback when the native encoder isn't loaded, copies the straight alpha pixels row by row
+     * into one RGBA array for the SWIG binding
+     */
+    static byte[] encodeThroughJava(Bitmap bitmap, float quality, boolean lossless) {
         int width = bitmap.getWidth();
-//        Logger.d("height " + height + " width " + width);
+        int height = bitmap.getHeight();
         int stride = width * 4;
-        int quality = 100;
-        byte[] rgb = new byte[3];
-        for (int y = 0; y < height * 4; y++) {
-            for (int x = 0; x < width; x += 4) {
-                for (int i = 0; i < 3; i++) {
-                    rgb[i] = pixels[x + y * width + i];
-                }
-                for (int i = 0; i < 3; i++) {
-                    pixels[x + y * width + 2 - i] = rgb[i];
-                }
+        byte[] pixels = new byte[stride * height];
+        int[] row = new int[width];
+        for (int y = 0, i = 0; y < height; y++) {
+            // getPixels unpremultiplies
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++, i += 4) {
+                int c = row[x];
+                pixels[i] = (byte) (c >> 16);
+                pixels[i + 1] = (byte) (c >> 8);
+                pixels[i + 2] = (byte) c;
+                pixels[i + 3] = (byte) (c >>> 24);
             }
         }
-        byte[] encoded = libwebp.WebPEncodeBGRA(pixels, width, height, stride, quality);
-        return encoded;
+        if (lossless) {
+            return libwebp.WebPEncodeLosslessRGBA(pixels, width, height, stride);
+        }
+        return libwebp.WebPEncodeRGBA(pixels, width, height, stride, quality);
     }
 
     public static void writeFileFromByteArray(String filePath, byte[] data) {
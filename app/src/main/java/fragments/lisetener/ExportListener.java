@@ -0,0 +1,14 @@
+package fragments.lisetener;
+
+import java.io.File;
+
+/**
+ * Callbacks of {@link fragments.objectHelper.ExportTask}, all of them run on the UI thread.
+ */
+public interface ExportListener {
+    void onProgress(int percent);
+
+    void onExported(File file);
+
+    void onFail(boolean cancelled);
+}
@@ -1,23 +1,22 @@
 package fragments.objectHelper;
 
 import android.annotation.TargetApi;
-import android.content.res.AssetManager;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Point;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.util.DisplayMetrics;
 import android.view.Gravity;
 import android.widget.ImageView;
 import android.widget.RelativeLayout;
 
 import com.commit451.nativestackblur.NativeStackBlur;
 
-import java.io.InputStream;
-
 import activities.MainActivity;
+import fragments.imageHelper.BitmapLoader;
 import fragments.tool.Util;
 import fragments.views.MTFrameLayout;
 
@@ -160,23 +159,23 @@ public class BackGroundHelper {
         return bitmap;
     }
 
+    /**
+     * the background sized for the canvas it is shown on, the screen before the canvas is laid out
+     */
     public static Bitmap GetBitmap(String ImagePath) {
-        Bitmap bitmapLoad = null;
-        BitmapFactory.Options bmOptions = new BitmapFactory.Options();
-        bmOptions.inScaled = false;
-        if (ImagePath.startsWith("/storage") || ImagePath.startsWith("/data")) {
-            bitmapLoad = BitmapFactory.decodeFile(ImagePath, bmOptions);
-        } else {
-            AssetManager assetManager = MainActivity.mainInstance().getAssets();
-            InputStream istr;
-            try {
-                istr = assetManager.open(ImagePath);
-                bitmapLoad = BitmapFactory.decodeStream(istr);
-                istr.close();
-            } catch (Exception ignored) {
-            }
+        Point size = MainActivity.CanvasSize;
+        if (size.x <= 0 || size.y <= 0) {
+            DisplayMetrics metrics = Resources.getSystem().getDisplayMetrics();
+            return GetBitmap(ImagePath, metrics.widthPixels, metrics.heightPixels);
         }
-        return bitmapLoad;
+        return GetBitmap(ImagePath, size.x, size.y);
+    }
+
+    /**
+     * the background sized for width by height, an owned bitmap the caller recycles
+     */
+    public static Bitmap GetBitmap(String ImagePath, int width, int height) {
+        return BitmapLoader.getInstance().decode(ImagePath, width, height);
     }
 
     public static void BlurBackGround(final int progress) {
@@ -0,0 +1,257 @@
+package fragments.objectHelper;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.view.View;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import fragments.FireHelper;
+import fragments.imageHelper.ImageEncoder;
+import fragments.imageHelper.PngBandWriter;
+import fragments.lisetener.ExportListener;
+import mt.karimi.ronevis.ApplicationLoader;
+
+/**
+ * Exports the composition in three stages so the UI thread only does the cheap part:
+ * <ol>
+ * <li>snapshot: draws the export root into an offscreen ARGB_8888 bitmap on the UI thread,
+ * or takes a {@link SceneRenderer} of the project model when exporting at a scale</li>
+ * <li>render: renders the model into the offscreen bitmap on a worker, nothing to do for a view export</li>
+ * <li>encode: compresses, writes the file and registers it in the gallery on the worker</li>
+ * </ol>
+ * The views are drawn rather than recorded into a {@link android.graphics.Picture}: the text views
+ * are software layers, whose drawing caches a recording only references, and they recycle those
+ * caches on their next redraw, before a worker could play the recording back.
+ * Encoding goes through {@link ImageEncoder}: PNG, or WebP at quality 100 unless
+ * {@link #setEncoder(ImageEncoder)} picks a preset or size target. A cancelled export deletes its partial file.
+ * <p>
+ * In tiled mode a PNG export of the project model renders and encodes one horizontal band at a time
+ * through {@link PngBandWriter}, so peak memory is one band instead of the full frame. A view export
+ * always draws the full frame.
+ * WebP needs the whole picture for libwebp and is always rendered in one piece.
+ */
+public class ExportTask extends AsyncTask<Void, Integer, File> {
+    public static final int FORMAT_PNG = ImageEncoder.FORMAT_PNG;
+    public static final int FORMAT_WEBP = ImageEncoder.FORMAT_WEBP;
+    public static final int FORMAT_JPEG = ImageEncoder.FORMAT_JPEG;
+    private static final int PROGRESS_SNAPSHOT = 10;
+    private static final int PROGRESS_RENDER = 40;
+    private static final int PROGRESS_ENCODE = 90;
+    private static final int PROGRESS_DONE = 100;
+    private static final int BAND_BYTES = 4 * 1024 * 1024;
+    private final View mRoot;
+    private final File mTarget;
+    private ImageEncoder mEncoder;
+    private final String mGalleryType;
+    private final ExportListener mListener;
+    private final float mScale;
+    private Bitmap mSnapshot;
+    private SceneRenderer mScene;
+    private boolean mTiled;
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * @param galleryType image type passed to the MediaStore entry, null to skip the gallery
+     */
+    public ExportTask(View root, File target, int format, String galleryType, ExportListener listener) {
+        mRoot = root;
+        mTarget = target;
+        mEncoder = new ImageEncoder(format);
+        mGalleryType = galleryType;
+        mListener = listener;
+        mScale = 1f;
+    }
+
+    /**
+     * renders the project model instead of the views, so the output can be larger than the screen
+     *
+     * @param scale output size relative to the export root
+     */
+    public ExportTask(float scale, File target, int format, String galleryType, ExportListener listener) {
+        mRoot = null;
+        mTarget = target;
+        mEncoder = new ImageEncoder(format);
+        mGalleryType = galleryType;
+        mListener = listener;
+        mScale = scale;
+    }
+
+    /**
+     * exports a scene that was not taken from the open project, doInBackground can run it directly
+     */
+    ExportTask(SceneRenderer scene, float scale, File target, int format, ExportListener listener) {
+        this(scale, target, format, null, listener);
+        mScene = scene;
+        mWidth = Math.round(scene.getSceneWidth() * scale);
+        mHeight = Math.round(scene.getSceneHeight() * scale);
+    }
+
+    public ExportTask setEncoder(ImageEncoder encoder) {
+        mEncoder = encoder;
+        return this;
+    }
+
+    /**
+     * encodes band by band, only for PNG exports of the project model
+     */
+    public ExportTask setTiled(boolean tiled) {
+        mTiled = tiled;
+        return this;
+    }
+
+    @Override
+    protected void onPreExecute() {
+        if (mRoot == null) {
+            if (mScene == null) {
+                mScene = SceneRenderer.fromProject();
+            }
+            mWidth = Math.round(mScene.getSceneWidth() * mScale);
+            mHeight = Math.round(mScene.getSceneHeight() * mScale);
+            if (mWidth <= 0 || mHeight <= 0) {
+                mScene = null;
+            } else if (mListener != null) {
+                mListener.onProgress(PROGRESS_SNAPSHOT);
+            }
+            return;
+        }
+        mWidth = mRoot.getWidth();
+        mHeight = mRoot.getHeight();
+        if (mWidth <= 0 || mHeight <= 0) {
+            return;
+        }
+        try {
+            mSnapshot = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            FireHelper fireHelper = new FireHelper();
+            fireHelper.SendReport(e);
+            return;
+        }
+        Canvas canvas = new Canvas(mSnapshot);
+        canvas.translate(-mRoot.getScrollX(), -mRoot.getScrollY());
+        mRoot.draw(canvas);
+        if (mListener != null) {
+            mListener.onProgress(PROGRESS_SNAPSHOT);
+        }
+    }
+
+    @Override
+    protected File doInBackground(Void... params) {
+        if (mSnapshot == null && mScene == null) {
+            return null;
+        }
+        Bitmap bitmap = mSnapshot;
+        try {
+            if (mTiled && mScene != null && mEncoder.getFormat() == FORMAT_PNG) {
+                if (!encodeBands()) {
+                    return null;
+                }
+            } else {
+                if (bitmap == null) {
+                    bitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+                    mScene.render(new Canvas(bitmap), mWidth, mHeight);
+                }
+                publishProgress(PROGRESS_RENDER);
+                if (isCancelled()) {
+                    return null;
+                }
+                ImageEncoder.Result result = mEncoder.encode(bitmap, mTarget);
+                FireHelper fireHelper = new FireHelper();
+                fireHelper.SendLog("export " + mWidth + "x" + mHeight + " " + mTarget.getName() + ": " + result);
+            }
+            publishProgress(PROGRESS_ENCODE);
+            if (isCancelled()) {
+                return null;
+            }
+            if (mGalleryType != null) {
+                SaveImage.addImageToGallery(ApplicationLoader.appInstance().getContentResolver(), mGalleryType, mTarget);
+            }
+            publishProgress(PROGRESS_DONE);
+            return mTarget;
+        } catch (Exception | OutOfMemoryError e) {
+            FireHelper fireHelper = new FireHelper();
+            fireHelper.SendReport(e);
+            return null;
+        } finally {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            if (mScene != null) {
+                mScene.release();
+            }
+            mScene = null;
+            mSnapshot = null;
+        }
+    }
+
+    private boolean encodeBands() throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        int bandHeight = Math.max(1, Math.min(mHeight, BAND_BYTES / (mWidth * 4)));
+        Bitmap band = Bitmap.createBitmap(mWidth, bandHeight, Bitmap.Config.ARGB_8888);
+        FileOutputStream fos = new FileOutputStream(mTarget);
+        PngBandWriter writer = null;
+        try {
+            writer = new PngBandWriter(new BufferedOutputStream(fos, 64 * 1024), mWidth, mHeight);
+            Canvas canvas = new Canvas(band);
+            for (int top = 0; top < mHeight; top += bandHeight) {
+                if (isCancelled()) {
+                    return false;
+                }
+                int rows = Math.min(bandHeight, mHeight - top);
+                band.eraseColor(Color.TRANSPARENT);
+                canvas.save();
+                canvas.translate(0, -top);
+                mScene.render(canvas, mWidth, mHeight);
+                canvas.restore();
+                writer.writeBand(band, rows);
+                publishProgress(PROGRESS_SNAPSHOT + (PROGRESS_ENCODE - PROGRESS_SNAPSHOT) * (top + rows) / mHeight);
+            }
+            writer.close();
+            FireHelper fireHelper = new FireHelper();
+            fireHelper.SendLog("export " + mWidth + "x" + mHeight + " " + mTarget.getName() + ": tiled " + mTarget.length()
+                    + " bytes in " + (SystemClock.elapsedRealtime() - start) + " ms");
+            return true;
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+            band.recycle();
+            fos.close();
+        }
+    }
+
+    @Override
+    protected void onProgressUpdate(Integer... values) {
+        if (mListener != null) {
+            mListener.onProgress(values[0]);
+        }
+    }
+
+    @Override
+    protected void onPostExecute(File file) {
+        if (mListener == null) {
+            return;
+        }
+        if (file != null) {
+            mListener.onExported(file);
+        } else {
+            mTarget.delete();
+            mListener.onFail(false);
+        }
+    }
+
+    @Override
+    protected void onCancelled(File file) {
+        mTarget.delete();
+        if (mListener != null) {
+            mListener.onFail(true);
+        }
+    }
+}
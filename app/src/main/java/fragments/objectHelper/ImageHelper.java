@@ -2,7 +2,6 @@ package fragments.objectHelper;
 
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
@@ -19,52 +18,43 @@ import android.widget.ImageView;
 import org.acra.sender.AcraLSender;
 
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 
-import activities.MainActivity;
-import fragments.FireHelper;
+import fragments.imageHelper.BitmapLoader;
+import fragments.imageHelper.ImageMetadata;
 import fragments.tool.Util;
 import mt.karimi.ronevis.ApplicationLoader;
 
 public class ImageHelper {
     public static Point GetBitmapSize(String ImagePath) {
-        Bitmap bitmapLoad = null;
-        BitmapFactory.Options bmOptions = new BitmapFactory.Options();
-        if (ImagePath.startsWith("/storage")) {
-            bitmapLoad = BitmapFactory.decodeFile(ImagePath, bmOptions);
-        } else {
-            AssetManager assetManager = MainActivity.mainInstance().getAssets();
-            InputStream istr;
-            try {
-                istr = assetManager.open(ImagePath);
-                bitmapLoad = BitmapFactory.decodeStream(istr);
-                istr.close();
-            } catch (Exception ignored) {
-                FireHelper fireHelper = new FireHelper();
-                fireHelper.SendReport(ignored);
-            }
-        }
-        return new Point(bitmapLoad != null ? bitmapLoad.getWidth() : 0, bitmapLoad != null ? bitmapLoad.getHeight() : 0);
+        ImageMetadata.Info info = ImageMetadata.getInstance().get(ImagePath);
+        return info != null ? info.getSize() : new Point(0, 0);
     }
 
     public static Bitmap GetImageBitmap(String ImagePath, int newWidth, int newHeight) {
-        Bitmap b = null;
-        BitmapFactory.Options bmOptions = new BitmapFactory.Options();
-        if (ImagePath.startsWith("/storage")) {
-            Bitmap bitmapLoad = BitmapFactory.decodeFile(ImagePath, bmOptions);
+        ImageMetadata.Info info = ImageMetadata.getInstance().get(ImagePath);
+        int rotation = info != null ? info.getRotation() : 0;
+        boolean flipped = info != null && info.isFlipped();
+        boolean quarter = rotation == 90 || rotation == 270;
+        Bitmap bitmapLoad = quarter ? BitmapLoader.getInstance().decode(ImagePath, newHeight, newWidth)
+                : BitmapLoader.getInstance().decode(ImagePath, newWidth, newHeight);
+        if (bitmapLoad == null) {
+            return null;
+        }
+        Bitmap b;
+        if (rotation == 0 && !flipped) {
             b = Bitmap.createScaledBitmap(bitmapLoad, newWidth, newHeight, true);
         } else {
-            AssetManager assetManager = MainActivity.mainInstance().getAssets();
-            InputStream istr;
-            try {
-                istr = assetManager.open(ImagePath);
-                Bitmap bitmapLoad = BitmapFactory.decodeStream(istr, null, bmOptions);
-                b = Bitmap.createScaledBitmap(bitmapLoad, newWidth, newHeight, true);
-                istr.close();
-            } catch (Exception ignored) {
-                FireHelper fireHelper = new FireHelper();
-                fireHelper.SendReport(ignored);
-            }
+            // mirrored first, then turned, as the EXIF orientation describes it
+            Matrix matrix = new Matrix();
+            matrix.setScale(flipped ? -1 : 1, 1);
+            matrix.postRotate(rotation);
+            int width = quarter ? bitmapLoad.getHeight() : bitmapLoad.getWidth();
+            int height = quarter ? bitmapLoad.getWidth() : bitmapLoad.getHeight();
+            matrix.postScale(newWidth / (float) width, newHeight / (float) height);
+            b = Bitmap.createBitmap(bitmapLoad, 0, 0, bitmapLoad.getWidth(), bitmapLoad.getHeight(), matrix, true);
+        }
+        if (b != bitmapLoad) {
+            BitmapLoader.getInstance().recycle(bitmapLoad);
         }
         return b;
     }
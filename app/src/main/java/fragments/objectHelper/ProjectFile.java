@@ -0,0 +1,126 @@
+package fragments.objectHelper;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+
+import fragments.objects.BackGroundProperties;
+import fragments.objects.ImageProperties;
+import fragments.objects.TextProperties;
+import fragments.tool.GZIPCompression;
+import mt.karimi.ronevis.ApplicationLoader;
+import mt.karimi.ronevis.R;
+
+/**
+ * Reads and writes .rsv project files as a stream.
+ * <p>
+ * Version 2 is one gzipped JSON object: a {@value #VERSION_KEY} number and the text, image and
+ * background maps as nested objects, written layer by layer with {@link JsonWriter}.
+ * Version 1 files stored each map as a JSON string inside that object; when a map value is a string
+ * it is parsed the old way, so both versions open.
+ */
+public class ProjectFile {
+    public static final int VERSION = 2;
+    private static final String VERSION_KEY = "RONEVIS_VERSION";
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final Type TEXT_TYPE = new TypeToken<Map<Integer, TextProperties>>() {
+    }.getType();
+    private static final Type IMAGE_TYPE = new TypeToken<Map<Integer, ImageProperties>>() {
+    }.getType();
+    private static final Type BACK_TYPE = new TypeToken<Map<Integer, BackGroundProperties>>() {
+    }.getType();
+    private static final Gson gson = new GsonBuilder().enableComplexMapKeySerialization().create();
+
+    public static void write(File file, Map<Integer, TextProperties> texts, Map<Integer, ImageProperties> images,
+                             Map<Integer, BackGroundProperties> backGrounds) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        JsonWriter writer = new JsonWriter(GZIPCompression.newWriter(
+                new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE), GZIPCompression.LEVEL_DEFAULT));
+        try {
+            try {
+                writer.beginObject();
+                writer.name(VERSION_KEY).value(VERSION);
+                writer.name(key(R.string.ronevisTextJson));
+                gson.toJson(texts, TEXT_TYPE, writer);
+                writer.name(key(R.string.ronevisImageJson));
+                gson.toJson(images, IMAGE_TYPE, writer);
+                writer.name(key(R.string.ronevisBackJson));
+                gson.toJson(backGrounds, BACK_TYPE, writer);
+                writer.endObject();
+            } finally {
+                writer.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        // renameTo replaces the old project in one step, when it fails the old one is untouched and
+        // the new one stays next to it
+        if (!temp.renameTo(file)) {
+            throw new IOException("could not replace " + file.getAbsolutePath() + ", saved as " + temp.getName());
+        }
+    }
+
+    public static Content read(File file) throws IOException {
+        JsonReader reader = new JsonReader(GZIPCompression.newReader(new FileInputStream(file)));
+        Content content = new Content();
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(VERSION_KEY)) {
+                    content.version = reader.nextInt();
+                } else if (name.equals(key(R.string.ronevisTextJson))) {
+                    content.texts = readMap(reader, TEXT_TYPE, content.texts);
+                } else if (name.equals(key(R.string.ronevisImageJson))) {
+                    content.images = readMap(reader, IMAGE_TYPE, content.images);
+                } else if (name.equals(key(R.string.ronevisBackJson))) {
+                    content.backGrounds = readMap(reader, BACK_TYPE, content.backGrounds);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+        return content;
+    }
+
+    private static <V> Map<Integer, V> readMap(JsonReader reader, Type type, Map<Integer, V> empty) throws IOException {
+        Map<Integer, V> map;
+        if (reader.peek() == JsonToken.STRING) {
+            // version 1, the map is a JSON document of its own
+            map = gson.fromJson(reader.nextString(), type);
+        } else if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            map = null;
+        } else {
+            map = gson.fromJson(reader, type);
+        }
+        return map == null ? empty : map;
+    }
+
+    private static String key(int resId) {
+        return ApplicationLoader.appInstance().getString(resId);
+    }
+
+    public static class Content {
+        public int version = 1;
+        public Map<Integer, TextProperties> texts = new HashMap<>();
+        public Map<Integer, ImageProperties> images = new HashMap<>();
+        public Map<Integer, BackGroundProperties> backGrounds = new HashMap<>();
+    }
+}
@@ -2,7 +2,6 @@ package fragments.objectHelper;
 
 import android.app.Activity;
 import android.content.DialogInterface;
-import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
@@ -15,10 +14,6 @@ import android.widget.RadioGroup;
 import android.widget.Spinner;
 import android.widget.Toast;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 
 import java.io.File;
 import java.io.IOException;
@@ -29,11 +24,10 @@ import java.util.Map;
 import activities.BaseActivityPermission;
 import activities.MainActivity;
 import fragments.FireHelper;
+import fragments.imageHelper.BitmapLoader;
 import fragments.objects.AddViews;
 import fragments.objects.BackGroundProperties;
 import fragments.objects.ImageProperties;
-import fragments.objects.TextProperties;
-import fragments.tool.GZIPCompression;
 import fragments.tool.InputEnglishText;
 import fragments.tool.Util;
 import fragments.views.BGImageView;
@@ -157,16 +151,10 @@ public class RonevisHelper {
     private static void OpenProjectFile(String ProjectName) {
         try {
             NewProject(MainActivity.mainInstance());
-            byte[] compressed = GZIPCompression.getFileBytes(ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisTemplatePathFolder), ProjectName));
-            String json = GZIPCompression.decompress(compressed);
-            JsonParser jsonParser = new JsonParser();
-            JsonObject obj = jsonParser.parse(json).getAsJsonObject();
-            Map<Integer, TextProperties> TextViewMapOpen = GsonParser.jsonToMapText(obj.get(ApplicationLoader.appInstance().getString(R.string.ronevisTextJson)).getAsString());
-            AddViews.TextViews(TextViewMapOpen);
-            Map<Integer, ImageProperties> ImageViewMapOpen = GsonParser.jsonToMapImage(obj.get(ApplicationLoader.appInstance().getString(R.string.ronevisImageJson)).getAsString());
-            AddViews.ImageViews(ImageViewMapOpen);
-            Map<Integer, BackGroundProperties> BackGroundMapOpen = GsonParser.jsonToMapBackGround(obj.get(ApplicationLoader.appInstance().getString(R.string.ronevisBackJson)).getAsString());
-            AddViews.BackGroundViews(BackGroundMapOpen);
+            ProjectFile.Content content = ProjectFile.read(ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisTemplatePathFolder), ProjectName));
+            AddViews.TextViews(content.texts);
+            AddViews.ImageViews(content.images);
+            AddViews.BackGroundViews(content.backGrounds);
         } catch (Exception ignored) {
             FireHelper fireHelper = new FireHelper();
             fireHelper.SendReport(ignored);
@@ -229,11 +217,9 @@ public class RonevisHelper {
     }
 
     private static void SaveProjectFile(Boolean isfull) {
-        Gson gson1 = new GsonBuilder().enableComplexMapKeySerialization().setPrettyPrinting().create();
-        JsonObject obj1 = new JsonObject();
         if (isfull) {
             for (Map.Entry<Integer, ImageProperties> entry : MainActivity.mainInstance().ImageViewMap.entrySet()) {
-                entry.getValue().setImageViewBitmap(BitmapFactory.decodeFile(entry.getValue().getImageViewSrc()));
+                entry.getValue().setImageViewBitmap(BitmapLoader.getInstance().decode(entry.getValue().getImageViewSrc(), 0, 0));
             }
         } else {
             for (Map.Entry<Integer, ImageProperties> entry : MainActivity.mainInstance().ImageViewMap.entrySet()) {
@@ -241,13 +227,13 @@ public class RonevisHelper {
             }
             MainActivity.mainInstance().backGroundProperties.setBackGroundBitmap(null);
         }
-        obj1.addProperty(ApplicationLoader.appInstance().getString(R.string.ronevisTextJson), gson1.toJson(MainActivity.mainInstance().TextViewMap));
-        obj1.addProperty(ApplicationLoader.appInstance().getString(R.string.ronevisImageJson), gson1.toJson(MainActivity.mainInstance().ImageViewMap));
-        obj1.addProperty(ApplicationLoader.appInstance().getString(R.string.ronevisBackJson), gson1.toJson(MainActivity.mainInstance().BackGroundMap));
         try {
-            byte[] compressed = GZIPCompression.compress(obj1.toString());
-            ApplicationLoader.appInstance().storage.createFile(ApplicationLoader.appInstance().getString(R.string.ronevisTemplatePathFolder), value + ApplicationLoader.appInstance().getString(R.string.ronevisProjectSimple), compressed);
+            ApplicationLoader.appInstance().storage.createDirectory(ApplicationLoader.appInstance().getString(R.string.ronevisTemplatePathFolder), false);
+            ProjectFile.write(ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisTemplatePathFolder), value + ApplicationLoader.appInstance().getString(R.string.ronevisProjectSimple)),
+                    MainActivity.mainInstance().TextViewMap, MainActivity.mainInstance().ImageViewMap, MainActivity.mainInstance().BackGroundMap);
         } catch (IOException ignored) {
+            FireHelper fireHelper = new FireHelper();
+            fireHelper.SendReport(ignored);
         }
     }
 
@@ -4,15 +4,13 @@ import android.app.Activity;
 import android.app.Dialog;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
-import android.app.ProgressDialog;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Environment;
 import android.provider.MediaStore;
 import androidx.annotation.NonNull;
@@ -34,7 +32,9 @@ import java.util.Locale;
 
 import activities.MainActivity;
 import fragments.FireHelper;
-import fragments.imageHelper.webPHelper;
+import fragments.imageHelper.BitmapLoader;
+import fragments.imageHelper.ImageEncoder;
+import fragments.lisetener.ExportListener;
 import fragments.tool.Util;
 import fragments.views.TextButton;
 import fragments.views.mtDialog;
@@ -49,10 +49,14 @@ import mt.karimi.ronevis.R;
  */
 public class SaveImage {
     private static final int DOWNLOAD_NOTIFICATION_ID_DONE = 911;
+    // the expanded notification crops the picture to about 2:1, a few hundred pixels high
+    private static final int NOTIFICATION_PICTURE_WIDTH = 1024;
+    private static final int NOTIFICATION_PICTURE_HEIGHT = 512;
+    // long side of a print size export, A4 at 300 dpi
+    private static final int PRINT_LONG_SIDE = 3508;
     static Activity msActivity;
     private static String value;
     private static String formatType;
-    private static Bitmap.CompressFormat bmpCompress;
     Thread saveArt;
 
     private static int getNotificationIcon() {
@@ -68,7 +72,7 @@ public class SaveImage {
         intent.setDataAndType(photoURI, "image/*");
         Bitmap remote_picture = null;
         try {
-            remote_picture = BitmapFactory.decodeFile(file.getAbsolutePath());
+            remote_picture = BitmapLoader.getInstance().decode(file.getAbsolutePath(), NOTIFICATION_PICTURE_WIDTH, NOTIFICATION_PICTURE_HEIGHT);
         } catch (Exception ignored) {
             FireHelper fireHelper = new FireHelper();
             fireHelper.SendReport(ignored);
@@ -98,6 +102,7 @@ public class SaveImage {
             @Override
             public void prepare(@Nullable View view, final Dialog dDialog) {
                 TextButton btn_png = (TextButton) view.findViewById(R.id.btn_png);
+                TextButton btn_png_print = (TextButton) view.findViewById(R.id.btn_png_print);
                 TextButton btn_webp = (TextButton) view.findViewById(R.id.btn_webp);
                 TextButton btn_project = (TextButton) view.findViewById(R.id.btn_project);
                 final ProgressBar progressBar = (ProgressBar) view.findViewById(R.id.progressBar);
@@ -106,43 +111,56 @@ public class SaveImage {
                     @Override
                     public void onClick(View view) {
                         progressBar.setVisibility(View.VISIBLE);
-                        progressBar.setIndeterminate(true);
-                        saveArtToFile(activity, dDialog);
-                        dDialog.dismiss();
+                        progressBar.setIndeterminate(false);
+                        saveArtToFile(activity, dDialog, progressBar);
+                    }
+                });
+                btn_png_print.setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View view) {
+                        progressBar.setVisibility(View.VISIBLE);
+                        progressBar.setIndeterminate(false);
+                        saveArtToFile(activity, dDialog, progressBar, printScale());
                     }
                 });
                 btn_webp.setOnClickListener(new View.OnClickListener() {
                     @Override
                     public void onClick(View view) {
                         progressBar.setVisibility(View.VISIBLE);
-                        progressBar.setIndeterminate(true);
+                        progressBar.setIndeterminate(false);
                         formatType = ".webp";
-                        bmpCompress = Bitmap.CompressFormat.WEBP;
-                        MainActivity.mainInstance()._exportroot.setDrawingCacheEnabled(false);
-                        MainActivity.mainInstance()._exportroot.setDrawingCacheEnabled(true);
-                        MainActivity.mainInstance()._exportroot.buildDrawingCache(true);
-                        Bitmap bm = MainActivity.mainInstance()._exportroot.getDrawingCache();
                         File file = ApplicationLoader.appInstance().storage.getFile(ApplicationLoader.appInstance().getString(R.string.ronevisPathTemp));
                         if (file.exists()) {
                             file.delete();
                         }
                         File storedImagePath = new File(file, "Sticker_" + System.currentTimeMillis() + formatType);
-                        try {
-                            byte[] webpData = webPHelper.bitmapToWebp(bm);
-                            webPHelper.writeFileFromByteArray(storedImagePath, webpData);
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-//                        compressAndSaveImage(storedImagePath, bm);
+                        final ExportTask exportTask = new ExportTask(MainActivity.mainInstance()._exportroot, storedImagePath, ExportTask.FORMAT_WEBP, null, new ExportListener() {
+                            @Override
+                            public void onProgress(int percent) {
+                                progressBar.setProgress(percent);
+                            }
+
+                            @Override
+                            public void onExported(File exported) {
 //                            addImageToGallery(ApplicationLoader.appInstance().getContentResolver(), formatType, storedImagePath);
-                        Intent share = new Intent(Intent.ACTION_SEND);
-                        share.setType("image/*");
+                                Intent share = new Intent(Intent.ACTION_SEND);
+                                share.setType("image/*");
 //                share.putExtra(Intent.EXTRA_SUBJECT, "Made by ronevis");
 //                share.putExtra(Intent.EXTRA_TEXT, "#ronevis");
-                        share.putExtra(Intent.EXTRA_STREAM, Uri.fromFile(storedImagePath));
-                        MainActivity.mainInstance().startActivity(Intent.createChooser(share, Util.Persian(activity, R.string.dsBtnShare)));
+                                share.putExtra(Intent.EXTRA_STREAM, Uri.fromFile(exported));
+                                MainActivity.mainInstance().startActivity(Intent.createChooser(share, Util.Persian(activity, R.string.dsBtnShare)));
 //                saveFile(activity,storedImagePath.getAbsolutePath());
-                        dDialog.dismiss();
+                                dDialog.dismiss();
+                            }
+
+                            @Override
+                            public void onFail(boolean cancelled) {
+                                dDialog.dismiss();
+                            }
+                        });
+                        exportTask.setEncoder(ImageEncoder.preset(ExportTask.FORMAT_WEBP, ImageEncoder.Preset.FAST_SHARE));
+                        cancelOnDismiss(dDialog, exportTask);
+                        exportTask.execute();
                     }
                 });
                 btn_project.setOnClickListener(new View.OnClickListener() {
@@ -161,9 +179,67 @@ public class SaveImage {
                 .show();
     }
 
-    public static void saveArtToFile(Activity activity, Dialog dDialog) {
+    public static void saveArtToFile(final Activity activity, final Dialog dDialog, final ProgressBar progressBar) {
+        saveArtToFile(activity, dDialog, progressBar, 1f);
+    }
+
+    /**
+     * @param scale output size relative to the export root, other than 1 renders the project model
+     *              band by band instead of drawing the views
+     */
+    public static void saveArtToFile(final Activity activity, final Dialog dDialog, final ProgressBar progressBar, float scale) {
         msActivity = activity;
-        new SaveArtToFile(activity, dDialog).execute();
+        formatType = ".png";
+        long time = System.currentTimeMillis();
+        value = "ronevis_" + time;
+        ExportListener listener = new ExportListener() {
+            @Override
+            public void onProgress(int percent) {
+                if (progressBar != null) {
+                    progressBar.setProgress(percent);
+                }
+            }
+
+            @Override
+            public void onExported(File storedImagePath) {
+                SavedDialog.bgBitmap(activity, storedImagePath.getAbsolutePath());
+                showNotification(storedImagePath);
+                dDialog.dismiss();
+            }
+
+            @Override
+            public void onFail(boolean cancelled) {
+                dDialog.dismiss();
+            }
+        };
+        File target = generateImagePath(value, formatType);
+        ExportTask exportTask;
+        View root = MainActivity.mainInstance()._exportroot;
+        if (scale == 1f) {
+            exportTask = new ExportTask(root, target, ExportTask.FORMAT_PNG, formatType, listener);
+        } else {
+            exportTask = new ExportTask(scale, target, ExportTask.FORMAT_PNG, formatType, listener).setTiled(true);
+        }
+        cancelOnDismiss(dDialog, exportTask);
+        exportTask.execute();
+    }
+
+    /**
+     * the scale that makes the long side of the export root {@link #PRINT_LONG_SIDE}, never below 1
+     */
+    private static float printScale() {
+        View root = MainActivity.mainInstance()._exportroot;
+        int longSide = Math.max(root.getWidth(), root.getHeight());
+        return longSide > 0 ? Math.max(1f, PRINT_LONG_SIDE / (float) longSide) : 1f;
+    }
+
+    private static void cancelOnDismiss(Dialog dDialog, final ExportTask exportTask) {
+        dDialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
+            @Override
+            public void onCancel(DialogInterface dialogInterface) {
+                exportTask.cancel(false);
+            }
+        });
     }
 
     private static File getImagesDirectory() {
@@ -181,21 +257,7 @@ public class SaveImage {
         return new File(getImagesDirectory(), title + imgType);
     }
 
-    private static boolean compressAndSaveImage(File file, Bitmap bitmap) {
-        boolean result = false;
-        try {
-            FileOutputStream fos = new FileOutputStream(file);
-            if ((result = bitmap.compress(bmpCompress, 100, fos))) {
-            }
-            fos.close();
-        } catch (IOException ignored) {
-            FireHelper fireHelper = new FireHelper();
-            fireHelper.SendReport(ignored);
-        }
-        return result;
-    }
-
-    private static Uri addImageToGallery(ContentResolver cr, String imgType, File filepath) {
+    static Uri addImageToGallery(ContentResolver cr, String imgType, File filepath) {
         ContentValues values = new ContentValues();
         values.put(MediaStore.Images.Media.TITLE, "#ronevis");
         values.put(MediaStore.Images.Media.DISPLAY_NAME, "Made by ronevis App");
@@ -233,64 +295,4 @@ public class SaveImage {
         outStream.close();
         showNotification(saveFile);
     }
-
-    static class SaveArtToFile extends AsyncTask<String, Void, Bitmap> {
-        private final Activity mActivity;
-        private final Dialog mDialog;
-        private ProgressDialog dialog;
-        private File storedImagePath;
-        private Bitmap bm;
-
-        public SaveArtToFile(Activity activity, Dialog dDialog) {
-            this.mActivity = activity;
-            this.mDialog = dDialog;
-        }
-
-        @Override
-        protected void onPreExecute() {
-//            dialog = ProgressDialog.show(mActivity, "MyTitle", "Loading .....", true);
-        }
-//        @Override
-//        public void destroy() {
-//            stopAutoBlurUpdate();
-//            blurAlgorithm.destroy();
-//            if (internalBitmap != null) {
-//                internalBitmap.recycle();
-//            }
-//        }
-
-        @Override
-        protected Bitmap doInBackground(String... regIds) {
-            formatType = ".png";
-            bmpCompress = Bitmap.CompressFormat.PNG;
-            long time = System.currentTimeMillis();
-            value = "ronevis_" + time;
-            MainActivity.mainInstance().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    MainActivity.mainInstance()._exportroot.setDrawingCacheEnabled(false);
-                    MainActivity.mainInstance()._exportroot.setDrawingCacheEnabled(true);
-                    MainActivity.mainInstance()._exportroot.setDrawingCacheQuality(View.DRAWING_CACHE_QUALITY_HIGH);
-                    MainActivity.mainInstance()._exportroot.buildDrawingCache(true);
-                    bm = MainActivity.mainInstance()._exportroot.getDrawingCache();
-                    if (bm != null) {
-                        storedImagePath = generateImagePath(value, formatType);
-                        compressAndSaveImage(storedImagePath, bm);
-                        addImageToGallery(ApplicationLoader.appInstance().getContentResolver(), formatType, storedImagePath);
-                        MainActivity.mainInstance()._exportroot.setDrawingCacheEnabled(false);
-                    }
-                }
-            });
-            return null;
-        }
-
-        @Override
-        protected void onPostExecute(Bitmap response) {
-            SavedDialog.bgBitmap(mActivity, storedImagePath.getAbsolutePath());
-            showNotification(storedImagePath);
-//            if( dialog!=null)
-//                 dialog.dismiss();
-            mDialog.dismiss();
-        }
-    }
 }
@@ -6,7 +6,6 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.net.Uri;
@@ -29,6 +28,7 @@ import java.io.IOException;
 
 import activities.MainActivity;
 import fragments.FireHelper;
+import fragments.imageHelper.BitmapLoader;
 import fragments.tool.IntentConstants;
 import fragments.tool.ResizeCalculator;
 import fragments.tool.Util;
@@ -181,11 +181,10 @@ public class SavedDialog {
 //                }
 //            });
             Bitmap[] arr = new Bitmap[2];
-            arr[0] = BitmapFactory.decodeFile(mPictureUrl);
-            BitmapFactory.Options o = new BitmapFactory.Options();
-            o.inSampleSize = 8;
-            o.inDither = true;
-            Bitmap drawable = BitmapFactory.decodeFile(mPictureUrl, o);
+            DisplayMetrics displayMetrics = mActivity.getResources().getDisplayMetrics();
+            arr[0] = BitmapLoader.getInstance().decode(mPictureUrl, displayMetrics.widthPixels, displayMetrics.heightPixels);
+            // processs shrinks it to an eighth of the screen anyway
+            Bitmap drawable = BitmapLoader.getInstance().decode(mPictureUrl, displayMetrics.widthPixels / 8, displayMetrics.heightPixels / 8);
             arr[1] = processs(drawable);
             return arr;
         }
@@ -0,0 +1,368 @@
+package fragments.objectHelper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Camera;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.commit451.nativestackblur.NativeStackBlur;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import activities.MainActivity;
+import fragments.imageHelper.BitmapLoader;
+import fragments.objects.BackGroundProperties;
+import fragments.objects.ImageProperties;
+import fragments.objects.TextProperties;
+import fragments.views.MTextView;
+
+/**
+ * Renders the whole composition from the project model ({@link BackGroundProperties},
+ * {@link ImageProperties} and {@link TextProperties}) onto any canvas, at any resolution,
+ * without inflating or laying out views.
+ * Layers are stacked in the child order of the export root, the order the screen draws them in.
+ * The background is what the editor shows: a copy of the export root's own background drawable
+ * (color, gradient or texture), then the background image where its view places it, so its scale
+ * type and gravity carry over.
+ * Model coordinates are the pixels of the export root the layers were placed in;
+ * {@link #render(Canvas, int, int)} scales them to the requested size, and every bitmap is decoded at
+ * that size rather than at its size on screen. Layers outside the canvas clip are skipped, so
+ * rendering band by band only prepares what the bands show. What a render prepares, the background,
+ * the decoded images and the text painters, is kept for the next calls at the same size until
+ * {@link #release()}, so each is prepared once per export however many bands it spans. Bands go top
+ * to bottom: an image that ends above the next band is freed right away, so the decoded images held
+ * at once are the ones a single band crosses.
+ */
+public class SceneRenderer {
+    /**
+     * the largest radius the stack blur takes
+     */
+    private static final int MAX_BLUR_RADIUS = 254;
+    private final Context mContext;
+    private final int mSceneWidth;
+    private final int mSceneHeight;
+    private final Drawable mRootBackGround;
+    private final BackGroundProperties mBackGround;
+    private final BackGroundImage mBackGroundImage;
+    private final List<Object> mLayers;
+    /**
+     * per layer, prepared by the first render that showed it
+     */
+    private final TextLayerPainter[] mPainters;
+    private final Bitmap[] mImages;
+    private final RectF[] mImageBounds;
+    private final Rect mClipBounds = new Rect();
+    private final Paint mBitmapPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+    private final Camera mCamera = new Camera();
+    private final Matrix mMatrix = new Matrix();
+    private Bitmap mBackGroundBitmap;
+    private boolean mBackGroundOwned;
+    /**
+     * the scale the prepared bitmaps were decoded for
+     */
+    private float mPreparedScale;
+
+    /**
+     * @param rootBackGround  drawn over the whole scene first, null for none
+     * @param backGroundImage where the background image is drawn, null without one
+     * @param layers          {@link TextProperties} and {@link ImageProperties}, bottom to top
+     */
+    SceneRenderer(Context context, int sceneWidth, int sceneHeight, Drawable rootBackGround,
+                  BackGroundProperties backGround, BackGroundImage backGroundImage, List<Object> layers) {
+        mContext = context.getApplicationContext();
+        mSceneWidth = sceneWidth;
+        mSceneHeight = sceneHeight;
+        mRootBackGround = rootBackGround;
+        mBackGround = backGround;
+        mBackGroundImage = backGroundImage;
+        mLayers = layers;
+        mPainters = new TextLayerPainter[layers.size()];
+        mImages = new Bitmap[layers.size()];
+        mImageBounds = new RectF[layers.size()];
+    }
+
+    /**
+     * takes the layers of the open project in the order the export root stacks their views, call it
+     * on the UI thread
+     */
+    public static SceneRenderer fromProject() {
+        MainActivity main = MainActivity.mainInstance();
+        ViewGroup root = main._exportroot;
+        List<Object> layers = new ArrayList<>();
+        for (int i = 0; i < root.getChildCount(); i++) {
+            View child = root.getChildAt(i);
+            if (child == main.MainImageBG || child.getVisibility() != View.VISIBLE) {
+                continue;
+            }
+            Object layer = child instanceof MTextView ? main.TextViewMap.get(child.getId()) : main.ImageViewMap.get(child.getId());
+            if (layer != null) {
+                layers.add(layer);
+            }
+        }
+        // a copy with its own paint and bounds, the worker draws it while the screen keeps the original
+        Drawable rootBackGround = null;
+        Drawable.ConstantState state = root.getBackground() != null ? root.getBackground().getConstantState() : null;
+        if (state != null) {
+            rootBackGround = state.newDrawable().mutate();
+            rootBackGround.setBounds(0, 0, root.getWidth(), root.getHeight());
+        }
+        return new SceneRenderer(main, root.getWidth(), root.getHeight(), rootBackGround, main.backGroundProperties,
+                BackGroundImage.of(main.MainImageBG, main.backGroundProperties), layers);
+    }
+
+    public int getSceneWidth() {
+        return mSceneWidth;
+    }
+
+    public int getSceneHeight() {
+        return mSceneHeight;
+    }
+
+    public Bitmap render(int targetWidth, int targetHeight) {
+        Bitmap bitmap = Bitmap.createBitmap(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+        render(new Canvas(bitmap), targetWidth, targetHeight);
+        return bitmap;
+    }
+
+    public void render(Canvas canvas, int targetWidth, int targetHeight) {
+        if (mSceneWidth <= 0 || mSceneHeight <= 0) {
+            return;
+        }
+        float scale = targetWidth / (float) mSceneWidth;
+        if (scale != mPreparedScale) {
+            release();
+            mPreparedScale = scale;
+        }
+        canvas.save();
+        canvas.scale(scale, targetHeight / (float) mSceneHeight);
+        drawBackGround(canvas, scale);
+        for (int i = 0; i < mLayers.size(); i++) {
+            Object layer = mLayers.get(i);
+            if (layer instanceof TextProperties) {
+                drawText(canvas, (TextProperties) layer, i);
+            } else {
+                drawImage(canvas, (ImageProperties) layer, i, scale);
+            }
+        }
+        canvas.getClipBounds(mClipBounds);
+        for (int i = 0; i < mImages.length; i++) {
+            if (mImages[i] != null && mImageBounds[i].bottom <= mClipBounds.bottom) {
+                BitmapLoader.getInstance().recycle(mImages[i]);
+                mImages[i] = null;
+            }
+        }
+        canvas.restore();
+    }
+
+    private void drawBackGround(Canvas canvas, float scale) {
+        if (mRootBackGround != null) {
+            mRootBackGround.draw(canvas);
+        }
+        if (mBackGroundImage == null || canvas.quickReject(mBackGroundImage.mClip, Canvas.EdgeType.AA)) {
+            return;
+        }
+        Bitmap bitmap = prepareBackGround(scale);
+        if (bitmap == null) {
+            return;
+        }
+        canvas.save();
+        canvas.clipRect(mBackGroundImage.mClip);
+        mBitmapPaint.setAlpha(mBackGroundImage.mAlpha);
+        canvas.drawBitmap(bitmap, null, mBackGroundImage.mRect, mBitmapPaint);
+        mBitmapPaint.setAlpha(255);
+        canvas.restore();
+    }
+
+    /**
+     * decodes the background source at the size it is drawn at in the output, blurred like the editor
+     * blurred its own smaller copy
+     */
+    private Bitmap prepareBackGround(float scale) {
+        if (mBackGroundBitmap != null) {
+            return mBackGroundBitmap;
+        }
+        int width = Math.max(1, Math.round(mBackGroundImage.mRect.width() * scale));
+        int height = Math.max(1, Math.round(mBackGroundImage.mRect.height() * scale));
+        Bitmap bitmap = BackGroundHelper.GetBitmap(mBackGround.getBackGroundSrc(), width, height);
+        boolean owned = bitmap != null;
+        if (bitmap == null) {
+            // no source left on storage, the editor's copy at least keeps the export whole
+            bitmap = mBackGround.getBackGroundBitmap();
+            if (bitmap == null || bitmap.isRecycled()) {
+                return null;
+            }
+        }
+        if (mBackGround.getBackGroundBlur() && mBackGround.getBackGroundBlurRatio() > 0) {
+            float ratio = mBackGroundImage.mEditorWidth > 0 ? bitmap.getWidth() / (float) mBackGroundImage.mEditorWidth : 1f;
+            int radius = Math.max(1, Math.min(MAX_BLUR_RADIUS, Math.round(mBackGround.getBackGroundBlurRatio() * ratio)));
+            Bitmap blurred = NativeStackBlur.process(bitmap, radius);
+            if (owned) {
+                BitmapLoader.getInstance().recycle(bitmap);
+            }
+            bitmap = blurred;
+            owned = true;
+        }
+        mBackGroundBitmap = bitmap;
+        mBackGroundOwned = owned;
+        return bitmap;
+    }
+
+    /**
+     * frees the background, images and painters prepared by the renders so far
+     */
+    public void release() {
+        if (mBackGroundOwned && mBackGroundBitmap != null) {
+            BitmapLoader.getInstance().recycle(mBackGroundBitmap);
+        }
+        mBackGroundBitmap = null;
+        mBackGroundOwned = false;
+        for (int i = 0; i < mImages.length; i++) {
+            if (mImages[i] != null) {
+                BitmapLoader.getInstance().recycle(mImages[i]);
+                mImages[i] = null;
+            }
+            mPainters[i] = null;
+        }
+        mPreparedScale = 0;
+    }
+
+    private void drawText(Canvas canvas, TextProperties text, int index) {
+        TextLayerPainter painter = mPainters[index];
+        if (painter == null) {
+            painter = new TextLayerPainter(mContext, text);
+            mPainters[index] = painter;
+        }
+        int width = painter.getWidth();
+        int height = painter.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        Point position = text.getTextPosition();
+        canvas.save();
+        canvas.translate(position.x, position.y);
+        applyViewTransform(canvas, width, height, text.getTextRotateX(), text.getTextRotateY(), text.getTextRotateZ());
+        if (canvas.quickReject(0, 0, width, height, Canvas.EdgeType.AA)) {
+            canvas.restore();
+            return;
+        }
+        // a layer of its own keeps the SRC xfermode of the text paints inside the text, like the software layer of MTextView
+        canvas.saveLayerAlpha(0, 0, width, height, Math.max(0, Math.min(255, text.getTextAlpha())));
+        painter.draw(canvas);
+        canvas.restore();
+        canvas.restore();
+    }
+
+    private void drawImage(Canvas canvas, ImageProperties image, int index, float scale) {
+        Point size = image.getImageViewSize();
+        if (size == null || size.x <= 0 || size.y <= 0 || image.getImageViewSrc() == null) {
+            return;
+        }
+        Point position = image.getImageViewPosition();
+        canvas.save();
+        canvas.translate(position.x, position.y);
+        applyViewTransform(canvas, size.x, size.y, 0, 0, image.getImageViewRotate());
+        Bitmap bitmap = null;
+        if (!canvas.quickReject(0, 0, size.x, size.y, Canvas.EdgeType.AA)) {
+            bitmap = mImages[index];
+            if (bitmap == null) {
+                bitmap = ImageHelper.GetImageBitmap(image.getImageViewSrc(), Math.max(1, Math.round(size.x * scale)), Math.max(1, Math.round(size.y * scale)));
+                mImages[index] = bitmap;
+                mImageBounds[index] = sceneBounds(image, size, position);
+            }
+        }
+        if (bitmap == null) {
+            canvas.restore();
+            return;
+        }
+        mBitmapPaint.setAlpha((int) (Math.max(0f, Math.min(1f, image.getImageViewAlpha())) * 255));
+        canvas.drawBitmap(bitmap, null, new RectF(0, 0, size.x, size.y), mBitmapPaint);
+        mBitmapPaint.setAlpha(255);
+        canvas.restore();
+    }
+
+    /**
+     * the rotated image's bounding box in scene pixels
+     */
+    private RectF sceneBounds(ImageProperties image, Point size, Point position) {
+        RectF bounds = new RectF(0, 0, size.x, size.y);
+        mMatrix.setRotate(image.getImageViewRotate(), size.x * 0.5f, size.y * 0.5f);
+        mMatrix.mapRect(bounds);
+        bounds.offset(position.x, position.y);
+        return bounds;
+    }
+
+    /**
+     * same rotations as View#setRotationX/Y and View#setRotation around the view center
+     */
+    private void applyViewTransform(Canvas canvas, int width, int height, float rotateX, float rotateY, float rotateZ) {
+        float pivotX = width * 0.5f;
+        float pivotY = height * 0.5f;
+        if (rotateX != 0 || rotateY != 0) {
+            mCamera.save();
+            mCamera.rotateX(rotateX);
+            mCamera.rotateY(-rotateY);
+            mCamera.getMatrix(mMatrix);
+            mCamera.restore();
+            mMatrix.preTranslate(-pivotX, -pivotY);
+            mMatrix.postTranslate(pivotX, pivotY);
+            canvas.concat(mMatrix);
+        }
+        if (rotateZ != 0) {
+            canvas.rotate(rotateZ, pivotX, pivotY);
+        }
+    }
+
+    /**
+     * where the background image view draws its image, in scene pixels
+     */
+    private static final class BackGroundImage {
+        /**
+         * the image with the view's image matrix applied, how its scale type placed it
+         */
+        final RectF mRect;
+        /**
+         * the view's content area, what shows of the image
+         */
+        final RectF mClip;
+        final int mAlpha;
+        /**
+         * width of the editor's copy, its blur radius was picked for that width
+         */
+        final int mEditorWidth;
+
+        private BackGroundImage(RectF rect, RectF clip, int alpha, int editorWidth) {
+            mRect = rect;
+            mClip = clip;
+            mAlpha = alpha;
+            mEditorWidth = editorWidth;
+        }
+
+        static BackGroundImage of(ImageView view, BackGroundProperties backGround) {
+            Drawable drawable = view.getDrawable();
+            if (!backGround.getBackGroundHaveImage() || drawable == null || view.getVisibility() != View.VISIBLE
+                    || drawable.getBounds().isEmpty()) {
+                return null;
+            }
+            RectF clip = new RectF(view.getLeft() + view.getPaddingLeft(), view.getTop() + view.getPaddingTop(),
+                    view.getRight() - view.getPaddingRight(), view.getBottom() - view.getPaddingBottom());
+            // ImageView sizes the drawable bounds for FIT_XY and maps them through the image matrix otherwise
+            RectF rect = new RectF(drawable.getBounds());
+            view.getImageMatrix().mapRect(rect);
+            rect.offset(clip.left, clip.top);
+            Bitmap editor = backGround.getBackGroundBitmap();
+            int editorWidth = editor != null && !editor.isRecycled() ? editor.getWidth() : drawable.getIntrinsicWidth();
+            int alpha = Math.round(Math.max(0f, Math.min(1f, view.getAlpha())) * view.getImageAlpha());
+            return new BackGroundImage(rect, clip, alpha, editorWidth);
+        }
+    }
+}
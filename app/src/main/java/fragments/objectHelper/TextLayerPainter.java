@@ -0,0 +1,133 @@
+package fragments.objectHelper;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.Typeface;
+
+import fragments.objects.TextProperties;
+import fragments.tool.Typefaces;
+import fragments.views.TextLineLayout;
+import fragments.views.TextureShaderCache;
+
+/**
+ * Draws one text layer straight from its {@link TextProperties}, with the same paints and offsets as
+ * {@link fragments.views.MTextView} and its {@link TextLineLayout}, but without a view.
+ * The layer is drawn at (0, 0) in its own coordinates, {@link #getWidth()} by {@link #getHeight()}.
+ */
+final class TextLayerPainter {
+    private static final PorterDuffXfermode XFERMODE_SRC = new PorterDuffXfermode(PorterDuff.Mode.SRC);
+    private final TextProperties mText;
+    private final Paint textPaint = new Paint();
+    private final Paint textPaint_Stroke = new Paint();
+    private final Paint textPaint_Gradient = new Paint();
+    private final Paint textPaint_Texture = new Paint();
+    private final Paint textPaint_BG = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final TextLineLayout mLayout = new TextLineLayout();
+    private final Rect mPadding = new Rect();
+    private Shader mTextureShader;
+    private int mWidth;
+    private int mHeight;
+
+    TextLayerPainter(Context context, TextProperties text) {
+        mText = text;
+        if (text.getTextShadow() && text.getTextPadding() != null) {
+            mPadding.set(text.getTextPadding());
+        }
+        initPaint(context);
+        measure();
+        initEffects();
+    }
+
+    int getWidth() {
+        return mWidth;
+    }
+
+    int getHeight() {
+        return mHeight;
+    }
+
+    private int shadowD() {
+        return mText.getTextShadow() ? mText.getTextShadowD() : 0;
+    }
+
+    private void initPaint(Context context) {
+        int flags = Paint.ANTI_ALIAS_FLAG
+                | (mText.getTextStrike() ? Paint.STRIKE_THRU_TEXT_FLAG : 0)
+                | (mText.getTextUnderline() ? Paint.UNDERLINE_TEXT_FLAG : 0);
+        int style = Typeface.NORMAL;
+        if (mText.getTextBold()) {
+            style |= Typeface.BOLD;
+        }
+        if (mText.getTextItalic()) {
+            style |= Typeface.ITALIC;
+        }
+        Typeface typeface = Typefaces.getTypeface(context, mText.getTextTypeFacePath());
+        if (style > 0) {
+            typeface = typeface == null ? Typeface.defaultFromStyle(style) : Typeface.create(typeface, style);
+            int need = style & ~(typeface != null ? typeface.getStyle() : 0);
+            textPaint.setTextSkewX((need & Typeface.ITALIC) != 0 ? -0.25f : 0);
+        }
+        textPaint.setFlags(flags);
+        textPaint.setTextSize(mText.getTextSize());
+        textPaint.setTypeface(typeface);
+        textPaint.setStyle(Paint.Style.FILL);
+        textPaint.setColor(Color.parseColor(mText.getTextColor()));
+        textPaint.setXfermode(XFERMODE_SRC);
+        if (mText.getTextShadow()) {
+            textPaint.setShadowLayer(mText.getTextShadowD(), mText.getTextShadowX(), mText.getTextShadowY(), Color.parseColor(mText.getTextShadowColor()));
+        }
+        if (mText.getTextBGColorHave()) {
+            textPaint_BG.setStyle(Paint.Style.FILL);
+            textPaint_BG.setColor(Color.parseColor(mText.getTextBGColor()));
+        }
+        for (Paint paint : new Paint[]{textPaint_Stroke, textPaint_Gradient, textPaint_Texture}) {
+            paint.setFlags(flags);
+            paint.setTextSize(mText.getTextSize());
+            paint.setTextScaleX(1.0f);
+            paint.setTypeface(typeface);
+            paint.setXfermode(XFERMODE_SRC);
+            paint.setStyle(Paint.Style.FILL);
+        }
+        textPaint_Stroke.setStrokeWidth(mText.getTextStrokeWidth());
+        textPaint_Stroke.setStrokeCap(Paint.Cap.ROUND);
+        textPaint_Stroke.setStrokeJoin(Paint.Join.ROUND);
+        textPaint_Stroke.setStyle(Paint.Style.FILL_AND_STROKE);
+        textPaint_Stroke.setColor(Color.parseColor(mText.getTextStrokeColor()));
+    }
+
+    private void measure() {
+        mLayout.measure(mText.getText(), textPaint, mText.getTextLineSpacing());
+        mWidth = mLayout.getWidth() + mPadding.left + Math.abs(mPadding.right) + shadowD() + (int) mText.getTextStrokeWidth() + (int) mText.getTextSizeCrop() + (int) mText.getTextCropX();
+        mHeight = mLayout.getHeight() + mPadding.top + Math.abs(mPadding.bottom) + shadowD() + (int) mText.getTextStrokeWidth() + (int) mText.getTextSizeCrop() + (int) mText.getTextCropY();
+    }
+
+    private void initEffects() {
+        if (mText.getTextGradient()) {
+            mLayout.makeGradients(shadowD(), mText.getTextGradientFColor(), mText.getTextGradientSColor(), mText.getTextGradientTileMode());
+        }
+        if (mText.getTextTexture()) {
+            mTextureShader = TextureShaderCache.get(mText.getTextTexturePath(), mText.getTextTextureTileMode(), mLayout.getWidth(), mLayout.getHeight());
+            textPaint_Texture.setShader(mTextureShader);
+        }
+    }
+
+    void draw(Canvas canvas) {
+        if (mText.getTextBGColorHave()) {
+            canvas.drawRoundRect(new RectF(0, 0, mWidth, mHeight), mText.getTextCropCorner(), mText.getTextCropCorner(), textPaint_BG);
+        }
+        float stroke = (int) (mText.getTextStrokeWidth() * 0.5f);
+        float sizeCrop = (int) mText.getTextSizeCrop() * 0.5f;
+        mLayout.draw(canvas, mText.getTextGravity(), mPadding.left,
+                sizeCrop + stroke + (int) (mText.getTextCropX() * 0.5f),
+                sizeCrop + stroke + (int) (mText.getTextCropY() * 0.5f),
+                shadowD(), mText.getTextStroke() ? textPaint_Stroke : null, textPaint,
+                mText.getTextGradient() ? textPaint_Gradient : null, mTextureShader != null ? textPaint_Texture : null);
+    }
+}
@@ -255,8 +255,9 @@ public class BackGroundProperties {
 
     public BackGroundProperties SetBackGround() {
         if (getBackGroundHaveImage()) {
-            setBackGroundBitmap(BackGroundHelper.GetBitmap(getBackGroundSrc()));
-            BackGroundHelper.ImageViewSetBG(MainActivity.mainInstance().MainImageBG, BackGroundHelper.GetBitmap(getBackGroundSrc()));
+            Bitmap bitmap = BackGroundHelper.GetBitmap(getBackGroundSrc());
+            setBackGroundBitmap(bitmap);
+            BackGroundHelper.ImageViewSetBG(MainActivity.mainInstance().MainImageBG, bitmap);
         }
 //        Tools_bg_setting.chkFixed.setChecked(getBackGroundSizeFixed());
 //        if (getBackGroundSizeFixed()) {
@@ -1,7 +1,6 @@
 package fragments.textEffects;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.BitmapShader;
 import android.graphics.Shader;
 import android.graphics.drawable.Drawable;
@@ -32,6 +31,7 @@ import fragments.BaseFragment;
 import fragments.adapter.RecyclerImageAdapter;
 import fragments.db.dl.FilesInfo;
 import fragments.download.listener.OnItemClickListener;
+import fragments.imageHelper.BitmapLoader;
 import fragments.tool.RegexFileFilter;
 import fragments.tool.Util;
 import fragments.views.SwitchButton;
@@ -44,6 +44,7 @@ public class BGTexture_Loader extends BaseFragment implements OnItemClickListene
     File PackageDir;
     private List<File> Texture;
     private RecyclerImageAdapter mAdapter;
+    private BitmapLoader.Request mTextureRequest;
 
     public BGTexture_Loader() {
         recyclerView = null;
@@ -118,18 +119,30 @@ public class BGTexture_Loader extends BaseFragment implements OnItemClickListene
         switch (v.getId()) {
             case R.id.imgbgsingle:
                 File currentBG = Texture.get(position);
-                MainActivity.mainInstance().backGroundProperties.setBackGroundTexturePath(currentBG.getAbsolutePath());
-                final Bitmap bitmap = BitmapFactory.decodeFile(currentBG.getAbsolutePath());
-                ShapeDrawable.ShaderFactory sf = new ShapeDrawable.ShaderFactory() {
+                final String path = currentBG.getAbsolutePath();
+                MainActivity.mainInstance().backGroundProperties.setBackGroundTexturePath(path);
+                if (mTextureRequest != null) {
+                    mTextureRequest.cancel();
+                }
+                // tiled at its own size, so decoded in full
+                mTextureRequest = BitmapLoader.getInstance().load(path, 0, 0, BitmapLoader.PRIORITY_HIGH, new BitmapLoader.Callback() {
                     @Override
-                    public Shader resize(int width, int height) {
-                        return new BitmapShader(bitmap, MainActivity.mainInstance().backGroundProperties.getBackGroundTextureTileMode(), MainActivity.mainInstance().backGroundProperties.getBackGroundTextureTileMode());
+                    public void onLoaded(final Bitmap bitmap) {
+                        if (bitmap == null || !path.equals(MainActivity.mainInstance().backGroundProperties.getBackGroundTexturePath())) {
+                            return;
+                        }
+                        ShapeDrawable.ShaderFactory sf = new ShapeDrawable.ShaderFactory() {
+                            @Override
+                            public Shader resize(int width, int height) {
+                                return new BitmapShader(bitmap, MainActivity.mainInstance().backGroundProperties.getBackGroundTextureTileMode(), MainActivity.mainInstance().backGroundProperties.getBackGroundTextureTileMode());
+                            }
+                        };
+                        PaintDrawable p = new PaintDrawable();
+                        p.setShape(new RectShape());
+                        p.setShaderFactory(sf);
+                        MainActivity.mainInstance()._exportroot.setBackgroundDrawable((Drawable) p);
                     }
-                };
-                PaintDrawable p = new PaintDrawable();
-                p.setShape(new RectShape());
-                p.setShaderFactory(sf);
-                MainActivity.mainInstance()._exportroot.setBackgroundDrawable((Drawable) p);
+                });
                 break;
             case R.id.singleRowFontDelete:
                 if (appInfo.exists()) {
@@ -28,7 +28,9 @@ import fragments.tool.Util;
 import fragments.tool.preferences.Pref;
 import fragments.views.dragLayout.DargInnerViews;
 import fragments.views.dragLayout.DragLayout;
+import mt.karimi.ronevis.ApplicationLoader;
 import mt.karimi.ronevis.R;
+import mt.karimi.ronevis.startup.Startup;
 
 public class Fonts extends BaseFragment {
     private static Fonts FontsInstance;
@@ -64,6 +66,7 @@ public class Fonts extends BaseFragment {
         DragLayout FontLoaderView = DargInnerViews.DragLayoutLinear(getContext(), false, 184);
         FontLoaderView.addView(DargInnerViews.dragger_handle(getContext(), null));
         FontLoaderView.addView(DargInnerViews.container_Pager(getContext(), null));
+        Startup.getInstance().require(ApplicationLoader.TASK_BUNDLED_PACKS);
         filesDBManager = FilesDBManager.getInstance(getContext());
         List<FilesInfo> filesInfo = filesDBManager.getTypeInfos("font");
         mPageReferenceMap = new HashMap<>();
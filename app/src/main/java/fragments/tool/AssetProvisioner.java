@@ -0,0 +1,362 @@
+package fragments.tool;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import mt.karimi.ronevis.BuildConfig;
+
+/**
+ * Copies files bundled in the assets to storage once, in the background.
+ * <p>
+ * A manifest in the app's files keeps the app version and the SHA-1 and size of every copied asset.
+ * On a start of the same version with every file still in place nothing is read at all; after an
+ * update only assets whose hash changed are copied again. Files are written through a temp file and
+ * renamed, so a reader never sees half a font, and {@link #whenReady} lets a screen wait for just the
+ * files it shows instead of for the whole copy.
+ */
+public class AssetProvisioner {
+    private static final String TAG = "AssetProvisioner";
+    private static final String MANIFEST = "asset_manifest.json";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static AssetProvisioner sInstance;
+    private final Context mContext;
+    private final File mManifestFile;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Executor mExecutor = Executors.newSingleThreadExecutor();
+    // target paths still to be copied, main thread only
+    private final Set<String> mPending = new HashSet<>();
+    private final Map<String, Runnable> mWaiting = new HashMap<>();
+
+    private AssetProvisioner(Context context) {
+        mContext = context;
+        mManifestFile = new File(context.getFilesDir(), MANIFEST);
+    }
+
+    public static synchronized AssetProvisioner getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AssetProvisioner(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * copies the files of an asset folder into target, call on the main thread
+     */
+    public void provision(final String assetDir, final File target) {
+        final String[] names;
+        try {
+            names = mContext.getAssets().list(assetDir);
+        } catch (IOException e) {
+            Log.e(TAG, "can't list " + assetDir, e);
+            return;
+        }
+        if (names == null || names.length == 0) {
+            return;
+        }
+        for (String name : names) {
+            mPending.add(new File(target, name).getAbsolutePath());
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                copy(assetDir, names, target);
+            }
+        });
+    }
+
+    /**
+     * runs ready on the main thread once no file whose path starts with pathPrefix is waiting to be
+     * copied, the run replaces an earlier one waiting on the same prefix
+     *
+     * @return false when nothing had to wait and ready was not kept
+     */
+    public boolean whenReady(String pathPrefix, Runnable ready) {
+        if (!isPending(pathPrefix)) {
+            return false;
+        }
+        mWaiting.put(pathPrefix, ready);
+        return true;
+    }
+
+    private boolean isPending(String pathPrefix) {
+        for (String path : mPending) {
+            if (path.startsWith(pathPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void copy(String assetDir, String[] names, File target) {
+        long start = SystemClock.elapsedRealtime();
+        Map<String, Entry> manifest = new HashMap<>();
+        boolean sameVersion = readManifest(manifest) == BuildConfig.VERSION_CODE;
+        if (!target.exists()) {
+            target.mkdirs();
+        }
+        AssetManager assets = mContext.getAssets();
+        int copied = 0;
+        for (String name : names) {
+            String asset = assetDir + "/" + name;
+            File file = new File(target, name);
+            Entry recorded = manifest.get(asset);
+            try {
+                if (sameVersion && recorded != null && file.length() == recorded.mSize) {
+                    // same apk, same file, nothing to read
+                    ready(file);
+                    continue;
+                }
+                String hash = hash(assets, asset);
+                if (recorded == null || !recorded.mHash.equals(hash) || file.length() != recorded.mSize) {
+                    long size = copyAsset(assets, asset, file);
+                    manifest.put(asset, new Entry(hash, size));
+                    copied++;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "can't copy " + asset, e);
+                manifest.remove(asset);
+            }
+            ready(file);
+        }
+        if (!sameVersion || copied > 0) {
+            writeManifest(manifest);
+        }
+        Log.i(TAG, assetDir + ": copied " + copied + " of " + names.length + " in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    private static String hash(AssetManager assets, String asset) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream in = assets.open(asset, AssetManager.ACCESS_STREAMING);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return the bytes written
+     */
+    private static long copyAsset(AssetManager assets, String asset, File file) throws IOException {
+        File temp = new File(file.getParentFile(), "." + file.getName() + ".tmp");
+        long size;
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            size = transfer(assets, asset, out);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("can't replace " + file);
+        }
+        return size;
+    }
+
+    private static long transfer(AssetManager assets, String asset, FileOutputStream out) throws IOException {
+        AssetFileDescriptor fd = null;
+        try {
+            fd = assets.openFd(asset);
+        } catch (FileNotFoundException compressed) {
+            // only assets stored uncompressed have a descriptor
+        }
+        if (fd != null) {
+            FileInputStream in = fd.createInputStream();
+            try {
+                FileChannel source = in.getChannel();
+                FileChannel sink = out.getChannel();
+                long length = fd.getLength();
+                long done = 0;
+                while (done < length) {
+                    long moved = source.transferTo(fd.getStartOffset() + done, length - done, sink);
+                    if (moved <= 0) {
+                        break;
+                    }
+                    done += moved;
+                }
+                return done;
+            } finally {
+                in.close();
+                fd.close();
+            }
+        }
+        InputStream in = assets.open(asset, AssetManager.ACCESS_STREAMING);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long size = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                size += read;
+            }
+            return size;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void ready(final File file) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mPending.remove(file.getAbsolutePath());
+                List<Runnable> runs = new ArrayList<>();
+                Iterator<Map.Entry<String, Runnable>> waiting = mWaiting.entrySet().iterator();
+                while (waiting.hasNext()) {
+                    Map.Entry<String, Runnable> entry = waiting.next();
+                    if (!isPending(entry.getKey())) {
+                        runs.add(entry.getValue());
+                        waiting.remove();
+                    }
+                }
+                for (Runnable run : runs) {
+                    run.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the app version that wrote the manifest, -1 when there is none
+     */
+    private int readManifest(Map<String, Entry> manifest) {
+        if (!mManifestFile.exists()) {
+            return -1;
+        }
+        int version = -1;
+        try {
+            JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(mManifestFile), StandardCharsets.UTF_8)));
+            try {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("version")) {
+                        version = reader.nextInt();
+                    } else if (name.equals("assets")) {
+                        readAssets(reader, manifest);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // everything is hashed again and the manifest rewritten
+            e.printStackTrace();
+            manifest.clear();
+            return -1;
+        }
+        return version;
+    }
+
+    private static void readAssets(JsonReader reader, Map<String, Entry> manifest) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String asset = reader.nextName();
+            String hash = "";
+            long size = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("hash")) {
+                    hash = reader.nextString();
+                } else if (name.equals("size")) {
+                    size = reader.nextLong();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            manifest.put(asset, new Entry(hash, size));
+        }
+        reader.endObject();
+    }
+
+    private void writeManifest(Map<String, Entry> manifest) {
+        File temp = new File(mManifestFile.getPath() + ".tmp");
+        try {
+            JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)));
+            try {
+                writer.beginObject();
+                writer.name("version").value(BuildConfig.VERSION_CODE);
+                writer.name("assets").beginObject();
+                for (Map.Entry<String, Entry> entry : manifest.entrySet()) {
+                    writer.name(entry.getKey()).beginObject();
+                    writer.name("hash").value(entry.getValue().mHash);
+                    writer.name("size").value(entry.getValue().mSize);
+                    writer.endObject();
+                }
+                writer.endObject();
+                writer.endObject();
+            } finally {
+                writer.close();
+            }
+            if (!temp.renameTo(mManifestFile)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+        }
+    }
+
+    private static class Entry {
+        final String mHash;
+        final long mSize;
+
+        Entry(String hash, long size) {
+            mHash = hash;
+            mSize = size;
+        }
+    }
+}
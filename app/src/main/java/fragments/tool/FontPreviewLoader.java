@@ -0,0 +1,276 @@
+package fragments.tool;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Typeface;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.Gravity;
+import android.widget.TextView;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import fragments.views.BitmapLruCache;
+import mt.karimi.ronevis.ApplicationLoader;
+
+/**
+ * Shows a font's sample text in a list row without parsing the font on the main thread.
+ * <p>
+ * {@link #load} applies a typeface already in {@link Typefaces} right away, otherwise it hides the
+ * text and parses the font on a background thread. With previews on, the sample text is also drawn
+ * once into a small bitmap kept in memory and on disk and shown as the row's background, so opening
+ * the list again shows every row without parsing a single font. A row that gets rebound before its
+ * font is ready cancels the old request, and {@link #prefetch} parses the fonts just outside the
+ * visible rows.
+ */
+public class FontPreviewLoader {
+    private static final int THREADS = 2;
+    private static final int DISK_CACHE_SIZE = 8 * 1024 * 1024;
+    private static final int MEMORY_CACHE_SIZE = 4 * 1024 * 1024;
+    // rows show at most two lines, as font_f_single does
+    private static final int MAX_LINES = 2;
+    private static FontPreviewLoader sInstance;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final WeakHashMap<TextView, Request> mRequests = new WeakHashMap<>();
+    // the row's own text colors, the text is made transparent while a font loads or a preview shows
+    private final WeakHashMap<TextView, ColorStateList> mColors = new WeakHashMap<>();
+    private final Set<String> mPrefetching = new HashSet<>();
+    // font file dates read by the workers, the main thread keys its memory lookups with them
+    private final ConcurrentHashMap<String, Long> mModified = new ConcurrentHashMap<>();
+    private final ExecutorService mExecutor;
+    private final BitmapLruCache mPreviews;
+
+    private FontPreviewLoader(Context context, boolean renderPreviews) {
+        mExecutor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "font-preview");
+            }
+        });
+        BitmapLruCache previews = null;
+        if (renderPreviews) {
+            File dir = new File(context.getCacheDir(), "font_previews");
+            dir.mkdirs();
+            previews = new BitmapLruCache.Builder(context)
+                    .setMemoryCacheEnabled(true)
+                    .setMemoryCacheMaxSize(MEMORY_CACHE_SIZE)
+                    .setDiskCacheEnabled(true)
+                    .setDiskCacheLocation(dir)
+                    .setDiskCacheMaxSize(DISK_CACHE_SIZE)
+                    .build();
+        }
+        mPreviews = previews;
+    }
+
+    /**
+     * call on the main thread
+     */
+    public static FontPreviewLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new FontPreviewLoader(context.getApplicationContext(), true);
+        }
+        return sInstance;
+    }
+
+    /**
+     * shows text in font on target, call on the main thread
+     */
+    public void load(TextView target, String font, CharSequence text) {
+        cancel(target);
+        target.setText(text);
+        Typeface typeface = Typefaces.peek(font);
+        if (typeface != null) {
+            showTypeface(target, typeface);
+            return;
+        }
+        Request request = new Request(target, font, text);
+        // a font whose date no worker has read yet goes to the worker, it checks the disk cache too
+        Long modified = request.mBaseKey != null ? mModified.get(font) : null;
+        Drawable preview = modified != null ? mPreviews.getFromMemoryCache(request.key(modified)) : null;
+        if (preview != null) {
+            showPreview(target, preview);
+            return;
+        }
+        // keeps the row's height while the font loads
+        target.setBackground(null);
+        target.setTextColor(colorsOf(target).withAlpha(0));
+        request.mFuture = mExecutor.submit(request);
+        mRequests.put(target, request);
+    }
+
+    /**
+     * drops the pending request of a recycled row and shows its text again
+     */
+    public void cancel(TextView target) {
+        Request request = mRequests.remove(target);
+        if (request != null) {
+            request.mFuture.cancel(false);
+        }
+        if (mColors.containsKey(target)) {
+            target.setBackground(null);
+            target.setTextColor(mColors.get(target));
+        }
+    }
+
+    /**
+     * parses fonts the list is about to show, ones already cached or queued are skipped
+     */
+    public void prefetch(List<String> fonts) {
+        for (final String font : fonts) {
+            if (font == null || Typefaces.peek(font) != null || !mPrefetching.add(font)) {
+                continue;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Typefaces.getTypeface(ApplicationLoader.appInstance(), font);
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mPrefetching.remove(font);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    private ColorStateList colorsOf(TextView target) {
+        ColorStateList colors = mColors.get(target);
+        if (colors == null) {
+            colors = target.getTextColors();
+            mColors.put(target, colors);
+        }
+        return colors;
+    }
+
+    private void showTypeface(TextView target, Typeface typeface) {
+        target.setBackground(null);
+        target.setTypeface(typeface);
+        target.setTextColor(colorsOf(target));
+    }
+
+    private void showPreview(TextView target, Drawable preview) {
+        // drawn centered at its own size, the text stays for accessibility and the layout
+        if (preview instanceof BitmapDrawable) {
+            ((BitmapDrawable) preview).setGravity(Gravity.CENTER);
+        }
+        target.setTextColor(colorsOf(target).withAlpha(0));
+        target.setBackground(preview);
+    }
+
+    private void deliver(final Request request, final Typeface typeface, final Drawable preview) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                TextView target = request.mTarget;
+                if (mRequests.get(target) != request) {
+                    // rebound or canceled meanwhile
+                    return;
+                }
+                mRequests.remove(target);
+                if (preview != null) {
+                    showPreview(target, preview);
+                } else if (typeface != null) {
+                    showTypeface(target, typeface);
+                } else {
+                    showTypeface(target, Typeface.DEFAULT);
+                }
+            }
+        });
+    }
+
+    /**
+     * what the background thread needs from the row, read on the main thread at bind time
+     */
+    private class Request implements Runnable {
+        final TextView mTarget;
+        final String mFont;
+        final CharSequence mText;
+        final TextPaint mPaint;
+        final int mWidth;
+        // the key without the font file's date, which is read on the worker
+        final String mBaseKey;
+        volatile Future<?> mFuture;
+
+        Request(TextView target, String font, CharSequence text) {
+            mTarget = target;
+            mFont = font;
+            mText = text;
+            mPaint = new TextPaint(target.getPaint());
+            mPaint.setColor(colorsOf(target).getDefaultColor());
+            mWidth = target.getWidth() - target.getTotalPaddingLeft() - target.getTotalPaddingRight();
+            // unmeasured rows (first layout) get the typeface only
+            if (mPreviews != null && mWidth > 0 && font != null) {
+                mBaseKey = font + '|' + text + '|' + mPaint.getTextSize() + '|' + mPaint.getColor() + '|' + mWidth;
+            } else {
+                mBaseKey = null;
+            }
+        }
+
+        String key(long modified) {
+            return mBaseKey + '|' + modified;
+        }
+
+        @Override
+        public void run() {
+            Drawable preview = null;
+            String key = null;
+            if (mBaseKey != null) {
+                long modified = new File(mFont).lastModified();
+                mModified.put(mFont, modified);
+                key = key(modified);
+                preview = mPreviews.get(key);
+                if (preview != null) {
+                    deliver(this, null, preview);
+                    return;
+                }
+            }
+            Typeface typeface = Typefaces.getTypeface(ApplicationLoader.appInstance(), mFont);
+            if (typeface != null && key != null && !isCancelled()) {
+                preview = mPreviews.put(key, render(typeface));
+            }
+            deliver(this, typeface, preview);
+        }
+
+        private boolean isCancelled() {
+            Future<?> future = mFuture;
+            return future != null && future.isCancelled();
+        }
+
+        private Bitmap render(Typeface typeface) {
+            mPaint.setTypeface(typeface);
+            StaticLayout layout = new StaticLayout(mText, mPaint, mWidth, Layout.Alignment.ALIGN_CENTER, 1f, 0f, false);
+            int lines = Math.min(MAX_LINES, layout.getLineCount());
+            int height = Math.max(1, layout.getLineBottom(lines - 1));
+            Bitmap bitmap = Bitmap.createBitmap(mWidth, height, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            canvas.clipRect(0, 0, mWidth, height);
+            layout.draw(canvas);
+            return bitmap;
+        }
+    }
+}
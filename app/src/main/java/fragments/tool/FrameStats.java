@@ -0,0 +1,106 @@
+package fragments.tool;
+
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+
+import fragments.imageHelper.BitmapLoader;
+import mt.karimi.ronevis.BuildConfig;
+
+/**
+ * Frame times while a list scrolls, logged on debug builds when the scroll stops.
+ * <p>
+ * A frame counts as janky when it took longer than one and a half vsyncs at 60Hz. The log also
+ * has the rate of heap allocation during the scroll, from API 23, and the bitmap memory the
+ * {@link BitmapLoader} decoded into new and into pooled bitmaps meanwhile.
+ */
+public class FrameStats implements Choreographer.FrameCallback {
+    private static final String TAG = "FrameStats";
+    private static final long FRAME_NANOS = 1000000000L / 60;
+    private static final long JANK_NANOS = FRAME_NANOS * 3 / 2;
+    private final String mName;
+    private boolean mRunning;
+    private long mLastFrame;
+    private int mFrames;
+    private int mJanky;
+    private long mWorst;
+    private long mTotal;
+    private long mStartTime;
+    private long mHeapStart;
+    private long mAllocatedStart;
+    private long mReusedStart;
+
+    public FrameStats(String name) {
+        mName = name;
+    }
+
+    public void start() {
+        if (!BuildConfig.DEBUG || mRunning) {
+            return;
+        }
+        mRunning = true;
+        mLastFrame = 0;
+        mStartTime = SystemClock.elapsedRealtime();
+        mHeapStart = heapAllocated();
+        mAllocatedStart = BitmapLoader.getInstance().getAllocatedBytes();
+        mReusedStart = BitmapLoader.getInstance().getReusedBytes();
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    public void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+        if (mFrames > 0) {
+            float elapsed = Math.max(1, SystemClock.elapsedRealtime() - mStartTime) / 1000f;
+            long heap = heapAllocated();
+            BitmapLoader loader = BitmapLoader.getInstance();
+            Log.i(TAG, mName + ": frames=" + mFrames + " janky=" + mJanky
+                    + " avg=" + (mTotal / mFrames / 1000000f) + "ms worst=" + (mWorst / 1000000f) + "ms"
+                    + (heap >= 0 && mHeapStart >= 0 ? " heap=" + ((heap - mHeapStart) / 1024 / elapsed) + "KB/s" : "")
+                    + " bitmaps new=" + ((loader.getAllocatedBytes() - mAllocatedStart) / 1024)
+                    + "KB pooled=" + ((loader.getReusedBytes() - mReusedStart) / 1024) + "KB");
+        }
+        mFrames = 0;
+        mJanky = 0;
+        mWorst = 0;
+        mTotal = 0;
+    }
+
+    /**
+     * bytes the runtime allocated since the process started, -1 before API 23
+     */
+    private static long heapAllocated() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return -1;
+        }
+        String bytes = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        try {
+            return bytes != null ? Long.parseLong(bytes) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        if (mLastFrame != 0) {
+            long took = frameTimeNanos - mLastFrame;
+            mFrames++;
+            mTotal += took;
+            mWorst = Math.max(mWorst, took);
+            if (took > JANK_NANOS) {
+                mJanky++;
+            }
+        }
+        mLastFrame = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
@@ -1,5 +1,6 @@
 package fragments.tool;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -8,66 +9,143 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+/**
+ * Gzip helpers that work on streams, always in UTF-8.
+ * Input is sniffed for the gzip magic, so plain files read through the same calls.
+ * {@link #LEVEL_FAST} trades some size for much quicker compression of large bundles.
+ */
 public class GZIPCompression {
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+    public static final int LEVEL_DEFAULT = Deflater.DEFAULT_COMPRESSION;
+    public static final int LEVEL_FAST = Deflater.BEST_SPEED;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_INITIAL_CHARS = 1 << 20;
+    private static final int POOL_SIZE = 4;
+    private static final ArrayDeque<byte[]> bufferPool = new ArrayDeque<>(POOL_SIZE);
+
     public static byte[] compress(final String str) throws IOException {
         if ((str == null) || (str.length() == 0)) {
             return null;
         }
-        ByteArrayOutputStream obj = new ByteArrayOutputStream();
-        GZIPOutputStream gzip = new GZIPOutputStream(obj);
-        gzip.write(str.getBytes());
-        gzip.close();
+        ByteArrayOutputStream obj = new ByteArrayOutputStream(Math.max(32, str.length() / 4));
+        Writer writer = newWriter(obj, LEVEL_DEFAULT);
+        writer.write(str);
+        writer.close();
         return obj.toByteArray();
     }
 
     public static String decompress(final byte[] compressed) throws IOException {
-        String outStr = "";
         if ((compressed == null) || (compressed.length == 0)) {
             return "";
         }
-        if (isCompressed(compressed)) {
-            GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(compressed));
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(gis));
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                outStr += line;
+        Reader reader = newReader(new ByteArrayInputStream(compressed));
+        try {
+            // a guess the builder grows past, bounded since the input may be plain text of any size
+            StringBuilder out = new StringBuilder((int) Math.min(compressed.length * 2L, MAX_INITIAL_CHARS));
+            char[] chars = new char[BUFFER_SIZE / 2];
+            int read;
+            while ((read = reader.read(chars)) != -1) {
+                out.append(chars, 0, read);
             }
-            return outStr;
-        } else {
-            outStr = new String(compressed);
+            return out.toString();
+        } finally {
+            reader.close();
         }
-        return outStr;
     }
 
-    private static boolean isCompressed(final byte[] compressed) {
-        return (compressed[0] == (byte) (GZIPInputStream.GZIP_MAGIC)) && (compressed[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8));
+    /**
+     * @return a stream of the decompressed bytes, or of the bytes as they are when in is not gzip
+     */
+    public static InputStream openInputStream(InputStream in) throws IOException {
+        BufferedInputStream buffered = in instanceof BufferedInputStream ? (BufferedInputStream) in : new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xFF) && second == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        return buffered;
     }
 
-    public static byte[] getFileBytes(File file) throws IOException {
-        ByteArrayOutputStream ous = null;
-        InputStream ios = null;
+    /**
+     * @param level {@link #LEVEL_DEFAULT}, {@link #LEVEL_FAST} or a {@link Deflater} level
+     */
+    public static OutputStream openOutputStream(OutputStream out, final int level) throws IOException {
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    public static Reader newReader(InputStream in) throws IOException {
+        return new BufferedReader(new InputStreamReader(openInputStream(in), UTF_8), BUFFER_SIZE / 2);
+    }
+
+    public static Writer newWriter(OutputStream out, int level) throws IOException {
+        return new OutputStreamWriter(openOutputStream(out, level), UTF_8);
+    }
+
+    /**
+     * copies in to out with a pooled buffer, neither stream is closed
+     *
+     * @return bytes copied
+     */
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = obtainBuffer();
         try {
-            byte[] buffer = new byte[4096];
-            ous = new ByteArrayOutputStream();
-            ios = new FileInputStream(file);
+            long total = 0;
             int read;
-            while ((read = ios.read(buffer)) != -1)
-                ous.write(buffer, 0, read);
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                total += read;
+            }
+            return total;
         } finally {
-            try {
-                if (ous != null)
-                    ous.close();
-            } catch (IOException e) {
+            releaseBuffer(buffer);
+        }
+    }
+
+    public static byte[] obtainBuffer() {
+        synchronized (bufferPool) {
+            byte[] buffer = bufferPool.poll();
+            if (buffer != null) {
+                return buffer;
             }
-            try {
-                if (ios != null)
-                    ios.close();
-            } catch (IOException e) {
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    public static void releaseBuffer(byte[] buffer) {
+        if (buffer == null || buffer.length != BUFFER_SIZE) {
+            return;
+        }
+        synchronized (bufferPool) {
+            if (bufferPool.size() < POOL_SIZE) {
+                bufferPool.push(buffer);
             }
         }
-        return ous.toByteArray();
     }
-}
\ No newline at end of file
+
+    public static byte[] getFileBytes(File file) throws IOException {
+        InputStream ios = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream ous = new ByteArrayOutputStream((int) Math.max(32, Math.min(file.length(), Integer.MAX_VALUE - 8)));
+            copy(ios, ous);
+            return ous.toByteArray();
+        } finally {
+            ios.close();
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package fragments.tool;
 
-import android.graphics.BitmapFactory;
+import android.graphics.Point;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
@@ -8,6 +8,8 @@ import android.view.ViewGroup;
 
 import java.lang.ref.WeakReference;
 
+import fragments.imageHelper.BitmapLoader;
+
 /**
  * Created by mt.karimi on 6/25/2016.
  * if you decompiled my application for any reason
@@ -17,10 +19,12 @@ import java.lang.ref.WeakReference;
 public class LoadBG extends AsyncTask<Object, Void, Drawable> {
     private final WeakReference<ViewGroup> imageViewReference;
     private String path;
+    private Point size;
 
     public LoadBG(ViewGroup imv, String path) {
         this.path = path;
         imageViewReference = new WeakReference<>(imv);
+        size = BitmapLoader.getInstance().targetSize(imv);
     }
 
     @Override
@@ -29,7 +33,7 @@ public class LoadBG extends AsyncTask<Object, Void, Drawable> {
 
     @Override
     protected Drawable doInBackground(Object... params) {
-        return new BitmapDrawable(BitmapFactory.decodeFile(path));
+        return new BitmapDrawable(BitmapLoader.getInstance().get(path, size.x, size.y));
     }
 
     @Override
@@ -1,12 +1,13 @@
 package fragments.tool;
 
-import android.graphics.BitmapFactory;
+import android.graphics.Point;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.TransitionDrawable;
 import android.os.AsyncTask;
 import android.widget.ImageView;
 
+import fragments.imageHelper.BitmapLoader;
 import mt.karimi.ronevis.R;
 
 /**
@@ -22,11 +23,13 @@ public class LoadFont extends AsyncTask<Object, Void, Drawable> {
     private ImageView imv;
     private String path;
     private boolean isBacks;
+    private Point size;
 
     public LoadFont(ImageView imv, String path, boolean isBacks) {
         this.imv = imv;
         this.path = path;
         this.isBacks = isBacks;
+        this.size = BitmapLoader.getInstance().targetSize(imv);
     }
 
     @Override
@@ -37,11 +40,7 @@ public class LoadFont extends AsyncTask<Object, Void, Drawable> {
 
     @Override
     protected Drawable doInBackground(Object... params) {
-        BitmapFactory.Options o = new BitmapFactory.Options();
-        o.inSampleSize = isBacks ? 3 : 2;
-        o.inDither = true;
-        //        return BitmapFactory.decodeFile(path, o);
-        return drawable = new BitmapDrawable(BitmapFactory.decodeFile(path, o));
+        return drawable = new BitmapDrawable(BitmapLoader.getInstance().get(path, size.x, size.y));
     }
 
     @Override
@@ -1,6 +1,6 @@
 package fragments.tool;
 
-import android.graphics.BitmapFactory;
+import android.graphics.Point;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.TransitionDrawable;
@@ -9,6 +9,7 @@ import android.widget.ImageView;
 
 import java.lang.ref.WeakReference;
 
+import fragments.imageHelper.BitmapLoader;
 import mt.karimi.ronevis.R;
 
 /**
@@ -26,13 +27,14 @@ public class LoadImage extends AsyncTask<Object, Void, Drawable> {
     private String path;
     private boolean isBacks;
     private boolean running = true;
+    private Point size;
 
     public LoadImage(ImageView imv, String path, boolean isBacks, String tag) {
         this.tag = tag;
         this.path = path;
         this.isBacks = isBacks;
         imageViewReference = new WeakReference<>(imv);
-        ImageView imageView = imageViewReference.get();
+        size = BitmapLoader.getInstance().targetSize(imv);
     }
 
     @Override
@@ -47,10 +49,7 @@ public class LoadImage extends AsyncTask<Object, Void, Drawable> {
     @Override
     protected Drawable doInBackground(Object... params) {
         if (running) {
-            BitmapFactory.Options o = new BitmapFactory.Options();
-            o.inSampleSize = isBacks ? 3 : 2;
-            o.inDither = true;
-            return drawable = new BitmapDrawable(BitmapFactory.decodeFile(path, o));
+            return drawable = new BitmapDrawable(BitmapLoader.getInstance().get(path, size.x, size.y));
         } else {
             return null;
         }
@@ -1,15 +1,16 @@
 package fragments.tool;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.graphics.Typeface;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.util.HashMap;
-import java.util.Hashtable;
+import java.io.File;
 import java.util.Map;
 
+import androidx.collection.LruCache;
 import fragments.views.TextIcon;
 
 /**
@@ -20,44 +21,40 @@ import fragments.views.TextIcon;
  */
 public class Typefaces {
     private static final String TAG = "Typefaces";
-    //    public static Typeface get(Context c, String fontPath) {
-//        Typeface t = null;
-//        synchronized (cache) {
-//            if (!cache.containsKey(fontPath)) {
-//                try {
-//                    if (fontPath.startsWith("self")) {
-//                        t = Typeface.createFromAsset(c.getAssets(), fontPath);
-//                    } else if (fontPath.startsWith("/storage")) {
-//                        t = Typeface.createFromFile(fontPath);
-//                    }
-//                    cache.put(fontPath, t);
-//                } catch (Exception ignored ) {
-//                    AcraLSender acraLSender = new AcraLSender();
-//                    acraLSender.TrySend(ApplicationLoader.appInstance(), ignored, "Typefaces_40");
-//                    return null;
-//                }
-//            }
-//            return cache.get(fontPath);
-//        }
-//    }
-    private static final Map<String, Typeface> CACHE = new HashMap<>();
-    private static final Hashtable<String, Typeface> cache = new Hashtable<>();
+    // budget for parsed fonts, measured by the size of the font file behind each one
+    private static final int MAX_CACHE_BYTES = 16 * 1024 * 1024;
+    // used when the real size of an asset font can not be read (compressed assets)
+    private static final int DEFAULT_FONT_BYTES = 128 * 1024;
+    private static final LruCache<String, CachedTypeface> CACHE = new LruCache<String, CachedTypeface>(MAX_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, CachedTypeface value) {
+            return value.size;
+        }
+    };
 
     public static Typeface getTypeface(Context context, String font) {
         try {
             if (null == font) {
                 return null;
             }
-            Typeface typeface = null;
-            if (null == typeface) {
+            CachedTypeface cached = CACHE.get(font);
+            if (null == cached) {
+                Typeface typeface;
+                int size;
                 if (font.startsWith("self")) {
                     typeface = Typeface.createFromAsset(context.getAssets(), font);
+                    size = assetSize(context, font);
                 } else {
                     typeface = Typeface.createFromFile(font);
+                    size = (int) Math.min(new File(font).length(), MAX_CACHE_BYTES);
+                }
+                if (null == typeface) {
+                    return null;
                 }
-                CACHE.put(font, typeface);
+                cached = new CachedTypeface(typeface, size);
+                CACHE.put(font, cached);
             }
-            return typeface;
+            return cached.typeface;
         } catch (Exception ignored) {
 //            AcraLSender acraLSender = new AcraLSender();
 //            acraLSender.TrySend(ApplicationLoader.appInstance(), ignored, "Typefaces_40");
@@ -65,21 +62,87 @@ public class Typefaces {
         }
     }
 
+    /**
+     * the cached typeface of a font, without parsing it when it is not cached
+     */
+    public static Typeface peek(String font) {
+        if (null == font) {
+            return null;
+        }
+        CachedTypeface cached = CACHE.get(font);
+        return null == cached ? null : cached.typeface;
+    }
+
     public static Typeface get(Context c, String assetPath) {
-        synchronized (cache) {
-            if (!cache.containsKey(assetPath)) {
+        Typeface typeface = getTypeface(c, assetPath);
+        if (null == typeface) {
+            Log.e(TAG, "Could not get typeface '" + assetPath + "'");
+        }
+        return typeface;
+    }
+
+    /**
+     * drops the cached typeface of a font file, call it when the file is deleted
+     */
+    public static void remove(String font) {
+        if (null != font) {
+            CACHE.remove(font);
+        }
+    }
+
+    /**
+     * drops every cached typeface whose file lives under the given folder or
+     * whose name starts with the given prefix, used when a font package is deleted
+     */
+    public static void removeAll(String pathPrefix) {
+        if (null == pathPrefix) {
+            return;
+        }
+        for (Map.Entry<String, CachedTypeface> entry : CACHE.snapshot().entrySet()) {
+            if (entry.getKey().startsWith(pathPrefix)) {
+                CACHE.remove(entry.getKey());
+            }
+        }
+    }
+
+    public static void clear() {
+        CACHE.evictAll();
+    }
+
+    public static int hitCount() {
+        return CACHE.hitCount();
+    }
+
+    public static int missCount() {
+        return CACHE.missCount();
+    }
+
+    public static int evictionCount() {
+        return CACHE.evictionCount();
+    }
+
+    public static int size() {
+        return CACHE.size();
+    }
+
+    public static String stats() {
+        return CACHE.toString();
+    }
+
+    private static int assetSize(Context context, String font) {
+        AssetFileDescriptor fd = null;
+        try {
+            fd = context.getAssets().openFd(font);
+            return (int) Math.min(fd.getLength(), MAX_CACHE_BYTES);
+        } catch (Exception e) {
+            return DEFAULT_FONT_BYTES;
+        } finally {
+            if (fd != null) {
                 try {
-                    Typeface t = Typeface.createFromAsset(c.getAssets(),
-                            assetPath);
-                    cache.put(assetPath, t);
-                    Log.e(TAG, "Loaded '" + assetPath);
-                } catch (Exception e) {
-                    Log.e(TAG, "Could not get typeface '" + assetPath
-                            + "' because " + e.getMessage());
-                    return null;
+                    fd.close();
+                } catch (Exception ignored) {
                 }
             }
-            return cache.get(assetPath);
         }
     }
 
@@ -94,4 +157,14 @@ public class Typefaces {
             ((TextIcon) v).setTypeface(typeface);
         }
     }
-}
\ No newline at end of file
+
+    private static final class CachedTypeface {
+        final Typeface typeface;
+        final int size;
+
+        CachedTypeface(Typeface typeface, int size) {
+            this.typeface = typeface;
+            this.size = Math.max(1, size);
+        }
+    }
+}
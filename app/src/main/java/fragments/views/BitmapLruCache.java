@@ -115,7 +115,7 @@ public class BitmapLruCache {
         return result;
     }
 
-    private CacheableBitmapDrawable getFromMemoryCache(final String url) {
+    public CacheableBitmapDrawable getFromMemoryCache(final String url) {
         CacheableBitmapDrawable result = null;
         if (null != mMemoryCache) {
             synchronized (mMemoryCache) {
@@ -234,6 +234,12 @@ public class BitmapLruCache {
         }
     }
 
+    public void trimMemory(int level) {
+        if (null != mMemoryCache) {
+            mMemoryCache.trimMemory(level);
+        }
+    }
+
     private synchronized void setDiskCache(DiskLruCache diskCache) {
         mDiskCache = diskCache;
         if (null != diskCache) {
@@ -274,19 +280,29 @@ public class BitmapLruCache {
         InputStream is = null;
         int source = CacheableBitmapDrawable.SOURCE_NEW;
         try {
-            if (mRecyclePolicy.canInBitmap()) {
+            if (mRecyclePolicy.canInBitmap() && null != mMemoryCache.getPool()) {
                 if (opts == null) {
                     opts = new BitmapFactory.Options();
                 }
-                if (opts.inSampleSize <= 1) {
-                    opts.inSampleSize = 1;
-                    if (addInBitmapOptions(ip, opts)) {
-                        source = CacheableBitmapDrawable.SOURCE_INBITMAP;
-                    }
+                if (addInBitmapOptions(ip, opts)) {
+                    source = CacheableBitmapDrawable.SOURCE_INBITMAP;
                 }
             }
             is = ip.getInputStream();
-            bm = BitmapFactory.decodeStream(is, null, opts);
+            try {
+                bm = BitmapFactory.decodeStream(is, null, opts);
+            } catch (IllegalArgumentException e) {
+                if (source != CacheableBitmapDrawable.SOURCE_INBITMAP) {
+                    throw e;
+                }
+                // the pooled bitmap didn't fit after all
+                mMemoryCache.getPool().put(opts.inBitmap);
+                opts.inBitmap = null;
+                source = CacheableBitmapDrawable.SOURCE_NEW;
+                IoUtils.closeStream(is);
+                is = ip.getInputStream();
+                bm = BitmapFactory.decodeStream(is, null, opts);
+            }
         } catch (Exception e) {
             Log.e(Constants.LOG_TAG, "Unable to decode stream", e);
         } finally {
@@ -305,13 +321,10 @@ public class BitmapLruCache {
         BitmapFactory.decodeStream(is, null, opts);
         IoUtils.closeStream(is);
         opts.inJustDecodeBounds = false;
-        opts.inMutable = true;
-        Bitmap reusableBm = mMemoryCache.getBitmapFromRemoved(opts.outWidth, opts.outHeight);
-        if (reusableBm != null) {
+        if (mMemoryCache.getPool().addInBitmapOptions(opts)) {
             if (Constants.DEBUG) {
                 Log.i(Constants.LOG_TAG, "Using inBitmap");
             }
-            addInBitmapOption(opts, reusableBm);
             return true;
         }
         return false;
@@ -1,26 +1,20 @@
 package fragments.views;
 
-import android.graphics.Bitmap;
-
-import java.lang.ref.SoftReference;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import androidx.collection.LruCache;
 
 final class BitmapMemoryLruCache extends LruCache<String, CacheableBitmapDrawable> {
-    private final Set<SoftReference<CacheableBitmapDrawable>> mRemovedEntries;
+    // share of the cache's budget kept in the pool
+    private static final int POOL_RATIO = 4;
+    private final BitmapPool mPool;
     private final BitmapLruCache.RecyclePolicy mRecyclePolicy;
 
     BitmapMemoryLruCache(int maxSize, BitmapLruCache.RecyclePolicy policy) {
         super(maxSize);
         mRecyclePolicy = policy;
-        mRemovedEntries = policy.canInBitmap()
-                ? Collections.synchronizedSet(new HashSet<SoftReference<CacheableBitmapDrawable>>())
-                : null;
+        mPool = policy.canInBitmap() ? new BitmapPool(maxSize / POOL_RATIO) : null;
     }
 
     CacheableBitmapDrawable put(CacheableBitmapDrawable value) {
@@ -44,35 +38,23 @@ final class BitmapMemoryLruCache extends LruCache<String, CacheableBitmapDrawabl
     protected void entryRemoved(boolean evicted, String key, CacheableBitmapDrawable oldValue,
                                 CacheableBitmapDrawable newValue) {
         oldValue.setCached(false);
-        if (mRemovedEntries != null && oldValue.isBitmapValid() && oldValue.isBitmapMutable()) {
-            synchronized (mRemovedEntries) {
-                mRemovedEntries.add(new SoftReference<>(oldValue));
-            }
+        // pooled whenever inBitmap works, not only when the policy recycles: the pool reuses the pixels
+        // rather than freeing them. A bitmap still tracked as displayed stays out, it may be on screen.
+        if (mPool != null && oldValue != newValue
+                && !oldValue.isBeingDisplayed() && oldValue.isBitmapValid() && oldValue.isBitmapMutable()) {
+            mPool.put(oldValue.getBitmap());
         }
     }
 
-    Bitmap getBitmapFromRemoved(final int width, final int height) {
-        if (mRemovedEntries == null) {
-            return null;
-        }
-        Bitmap result = null;
-        synchronized (mRemovedEntries) {
-            final Iterator<SoftReference<CacheableBitmapDrawable>> it = mRemovedEntries.iterator();
-            while (it.hasNext()) {
-                CacheableBitmapDrawable value = it.next().get();
-                if (value != null && value.isBitmapValid() && value.isBitmapMutable()) {
-                    if (value.getIntrinsicWidth() == width
-                            && value.getIntrinsicHeight() == height) {
-                        it.remove();
-                        result = value.getBitmap();
-                        break;
-                    }
-                } else {
-                    it.remove();
-                }
-            }
+    BitmapPool getPool() {
+        return mPool;
+    }
+
+    void trimMemory(int level) {
+        if (mPool != null) {
+            mPool.trimMemory(level);
         }
-        return result;
+        trimMemory();
     }
 
     void trimMemory() {
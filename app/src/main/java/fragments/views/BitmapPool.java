@@ -0,0 +1,169 @@
+package fragments.views;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mutable bitmaps nobody uses any more, kept to be decoded into through
+ * {@link BitmapFactory.Options#inBitmap} instead of allocating a new buffer.
+ * <p>
+ * A decode can reuse any bitmap of the same config whose allocation is at least as big as the decoded
+ * image, so bitmaps are grouped by config and allocation size and the smallest that fits is handed out,
+ * never one more than {@link #MAX_OVERSIZE} times too big. The pool holds them strongly up to a byte
+ * budget and recycles the least recently pooled ones beyond it or when the system trims memory.
+ */
+public class BitmapPool {
+    private static final int MAX_OVERSIZE = 4;
+    private final int mMaxBytes;
+    private final Map<Bitmap.Config, TreeMap<Integer, LinkedList<Bitmap>>> mGroups = new HashMap<>();
+    // oldest first
+    private final LinkedHashSet<Bitmap> mOrder = new LinkedHashSet<>();
+    private int mBytes;
+    private int mHits;
+    private int mMisses;
+    private int mEvictions;
+
+    public BitmapPool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * bytes a decode of width by height in config takes
+     */
+    public static int byteCount(int width, int height, Bitmap.Config config) {
+        return width * height * bytesPerPixel(config);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+
+    /**
+     * sets opts.inBitmap to a pooled bitmap the decode opts describes fits in and makes the decode
+     * mutable, so its bitmap can be pooled in turn, opts must hold the image bounds and sample size
+     *
+     * @return whether one was found, put it back when the decode into it fails
+     */
+    public boolean addInBitmapOptions(BitmapFactory.Options opts) {
+        int sampleSize = Math.max(1, opts.inSampleSize);
+        // rounded up, decoders differ in how they round sampled sizes
+        int width = (opts.outWidth + sampleSize - 1) / sampleSize;
+        int height = (opts.outHeight + sampleSize - 1) / sampleSize;
+        Bitmap.Config config = opts.inPreferredConfig != null ? opts.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = get(width, height, config);
+        opts.inMutable = true;
+        if (bitmap == null) {
+            return false;
+        }
+        opts.inBitmap = bitmap;
+        return true;
+    }
+
+    /**
+     * a pooled bitmap that width by height in config can be decoded into, removed from the pool
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        TreeMap<Integer, LinkedList<Bitmap>> group = mGroups.get(config);
+        int needed = byteCount(width, height, config);
+        Integer size = group != null ? group.ceilingKey(needed) : null;
+        if (size == null || size > needed * MAX_OVERSIZE) {
+            mMisses++;
+            return null;
+        }
+        LinkedList<Bitmap> bitmaps = group.get(size);
+        Bitmap bitmap = bitmaps.removeLast();
+        if (bitmaps.isEmpty()) {
+            group.remove(size);
+        }
+        mOrder.remove(bitmap);
+        mBytes -= size;
+        mHits++;
+        return bitmap;
+    }
+
+    /**
+     * takes over a bitmap its owner is done with
+     *
+     * @return false when it can't be reused, the caller still owns it then
+     */
+    public synchronized boolean put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null
+                || mOrder.contains(bitmap)) {
+            return false;
+        }
+        int size = bitmap.getAllocationByteCount();
+        if (size > mMaxBytes / 2) {
+            return false;
+        }
+        TreeMap<Integer, LinkedList<Bitmap>> group = mGroups.get(bitmap.getConfig());
+        if (group == null) {
+            group = new TreeMap<>();
+            mGroups.put(bitmap.getConfig(), group);
+        }
+        LinkedList<Bitmap> bitmaps = group.get(size);
+        if (bitmaps == null) {
+            bitmaps = new LinkedList<>();
+            group.put(size, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        mOrder.add(bitmap);
+        mBytes += size;
+        trimTo(mMaxBytes);
+        return true;
+    }
+
+    /**
+     * @param level as passed to {@link ComponentCallbacks2#onTrimMemory}
+     */
+    public synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimTo(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimTo(mMaxBytes / 2);
+        }
+    }
+
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    public synchronized String getStats() {
+        return String.format(Locale.US, "pool hits=%d misses=%d evictions=%d size=%dKB/%dKB",
+                mHits, mMisses, mEvictions, mBytes / 1024, mMaxBytes / 1024);
+    }
+
+    private void trimTo(int maxBytes) {
+        Iterator<Bitmap> oldest = mOrder.iterator();
+        while (mBytes > maxBytes && oldest.hasNext()) {
+            Bitmap bitmap = oldest.next();
+            oldest.remove();
+            int size = bitmap.getAllocationByteCount();
+            TreeMap<Integer, LinkedList<Bitmap>> group = mGroups.get(bitmap.getConfig());
+            LinkedList<Bitmap> bitmaps = group.get(size);
+            bitmaps.remove(bitmap);
+            if (bitmaps.isEmpty()) {
+                group.remove(size);
+            }
+            mBytes -= size;
+            mEvictions++;
+            bitmap.recycle();
+        }
+    }
+}
@@ -2,15 +2,10 @@ package fragments.views;
 
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Paint.Style;
-import android.graphics.Path;
-import android.graphics.PathEffect;
 import android.graphics.Point;
 import android.graphics.PorterDuff.Mode;
 import android.graphics.PorterDuffXfermode;
@@ -20,7 +15,6 @@ import android.graphics.Shader;
 import android.graphics.Shader.TileMode;
 import android.graphics.Typeface;
 import android.os.Build;
-import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.Gravity;
 import android.view.MotionEvent;
@@ -43,7 +37,6 @@ import fragments.objects.TextProperties;
 import fragments.textEffects.ColorPallete;
 import fragments.textEffects.Fonts;
 import fragments.textEffects.Rotation;
-import fragments.textEffects.Shaders;
 import fragments.textEffects.Shadow;
 import fragments.textEffects.TextBg;
 import fragments.tool.Typefaces;
@@ -51,12 +44,12 @@ import mt.karimi.ronevis.ApplicationLoader;
 import mt.karimi.ronevis.R;
 
 public class MTextView extends View {
+    private static final PorterDuffXfermode XFERMODE_SRC = new PorterDuffXfermode(Mode.SRC);
+    private static final int TEXT_BOUNDS_COLOR = 0x80FFFFFF;
     private final Rect borderRect = new Rect();
     private final RectF TextBGRect = new RectF();
     private final Paint rectPaint = new Paint();
-    private final Rect r = new Rect();
     private final Point ppp = new Point(1, 1);
-    private final Rect rect = new Rect();
     public int _xDelta, _yDelta;
     //    int hhh, www;
     int TextxNew;
@@ -108,10 +101,6 @@ public class MTextView extends View {
     private Rect rrr = new Rect();
     private Paint Infopaint = new Paint();
     private boolean gotFocus = false;
-    private int NaturalTextHeight = 0;
-    private int xx = 0;
-    private int yy = 0;
-    private int yyy = 0;
     private Boolean NeedLayout = false;
     private boolean frozen = false;
     //    private TextLayoutResizeListener TRL = null;
@@ -137,6 +126,10 @@ public class MTextView extends View {
     private float TextCropX = 0.0f;
     private float TextCropY = 0.0f;
     private float TextCropCorner = 0.0f;
+    // line layout and shaders, rebuilt only when a property that changes them is set
+    private boolean mLayoutDirty = true;
+    private final TextLineLayout mLayout = new TextLineLayout();
+    private Shader mTextureShader;
 
     public MTextView(Context context) {
         super(context);
@@ -198,6 +191,7 @@ public class MTextView extends View {
 
     public void setTextUnderline() {
         TextUnderline = TextProperties.getCurrent().getTextUnderline();
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -211,11 +205,13 @@ public class MTextView extends View {
 
     public void setTextBGColor(String textBGColor) {
         TextBGColor = textBGColor;
+        mLayoutDirty = true;
         invalidate();
     }
 
     public void setTextStrike() {
         TextStrike = TextProperties.getCurrent().getTextStrike();
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -234,6 +230,7 @@ public class MTextView extends View {
 
     public void setTextGradientTileMode(Shader.TileMode textGradientTileMode) {
         TextGradientTileMode = textGradientTileMode;
+        mLayoutDirty = true;
     }
 
     public float getTextGradientRotate() {
@@ -251,6 +248,7 @@ public class MTextView extends View {
 
     public void setTextGradient(Boolean textGradient) {
         TextGradient = textGradient;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -260,6 +258,7 @@ public class MTextView extends View {
 
     public void setTextGradientFColor(String textGradientFColor) {
         TextGradientFColor = textGradientFColor;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -269,6 +268,7 @@ public class MTextView extends View {
 
     public void setTextGradientSColor(String textGradientSColor) {
         TextGradientSColor = textGradientSColor;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -503,6 +503,7 @@ public class MTextView extends View {
 
     public void setTextStroke(Boolean textStroke) {
         TextStroke = textStroke;
+        mLayoutDirty = true;
         NeedLayout = true;
         invalidate();
     }
@@ -513,6 +514,7 @@ public class MTextView extends View {
 
     public void setTextStrokeColor(String textStrokeColor) {
         TextStrokeColor = textStrokeColor;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -522,6 +524,7 @@ public class MTextView extends View {
 
     public void setTextStrokeWidth(float textStrokeWidth) {
         TextStrokeWidth = textStrokeWidth;
+        mLayoutDirty = true;
         NeedLayout = true;
         invalidate();
     }
@@ -532,6 +535,7 @@ public class MTextView extends View {
 
     public void setTextTextureTileMode(TileMode textTextureTileMode) {
         TextTextureTileMode = textTextureTileMode;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -541,6 +545,7 @@ public class MTextView extends View {
 
     public void setTextTexturePath(String textTexturePath) {
         TextTexturePath = textTexturePath;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -550,6 +555,7 @@ public class MTextView extends View {
 
     public void setTextTexture(Boolean textTexture) {
         TextTexture = textTexture;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -578,7 +584,7 @@ public class MTextView extends View {
     private void drawTextBounds(Canvas canvas, Rect rect, int x, int y, int a) {
         rectPaint.setStyle(Paint.Style.STROKE);
         rectPaint.setStrokeWidth(2f);
-        rectPaint.setColor(Color.parseColor("#80FFFFFF"));
+        rectPaint.setColor(TEXT_BOUNDS_COLOR);
         rectPaint.setAlpha(a);
         canvas.translate(x, y);
 //        int rrr = getTextPadding().right > 0 ? rect.right : 0;
@@ -635,19 +641,8 @@ public class MTextView extends View {
         super.draw(canvas);
         setAlpha(getTextAlpha() / 255.0f);
         freeze();
-        String[] lines = getText().split("\\r?\\n", -1);
-//        String[] lines = autoSplit(getText(), textPaint, MainActivity.mainInstance().appWH[0]);
-        ppp.set(0, 0);
-        xx = 0;
-        yy = 0;
-        yyy = 0;
-        NaturalTextHeight = 0;
-        initPaint();
-        for (String line : lines) {
-            if (TextUtils.isEmpty(line)) {
-                continue;
-            }
-            getrectSize(textPaint, line, getTextLineSpacing());
+        if (mLayoutDirty) {
+            buildLayout();
         }
         borderRect.setEmpty();
 //        canvas.clipRect(lll , rect.top,   rrr , rect.bottom );
@@ -662,25 +657,60 @@ public class MTextView extends View {
         } else {
             drawTextBounds(canvas, borderRect, 0, 0, 0);
         }
-        canvas.save();
+        mLayout.draw(canvas, mGravity, getTextPadding().left,
+                ((int) getTextSizeCrop() * 0.5f) + (int) (getTextStrokeWidth() * 0.5f) + (int) (getTextCropX() * 0.5f),
+                ((int) getTextSizeCrop() * 0.5f) + (int) (getTextStrokeWidth() * 0.5f) + (int) (getTextCropY() * 0.5f),
+                getTextShadowD(), getTextStroke() ? textPaint_Stroke : null, textPaint,
+                getTextGradient() ? textPaint_Gradient : null, getTextTexture() && mTextureShader != null ? textPaint_Texture : null);
+        unfreeze();
+    }
+
+    /**
+     * splits and measures the text and prepares every paint and shader used by draw,
+     * so frames that only move or redraw the view allocate nothing
+     */
+    private void buildLayout() {
         initPaint();
-        for (String line : lines) {
-            if (TextUtils.isEmpty(line)) {
-                continue;
-            }
-            TextDrawer(canvas, textPaint, line, getTextLineSpacing());
+//        String[] lines = autoSplit(getText(), textPaint, MainActivity.mainInstance().appWH[0]);
+        mLayout.measure(getText(), textPaint, getTextLineSpacing());
+        ppp.set(mLayout.getWidth(), mLayout.getHeight());
+        textPaint.setXfermode(XFERMODE_SRC);
+        if (getTextStroke()) {
+            textPaint_Stroke.setFlags(PERMISSIONS_ALL);
+            textPaint_Stroke.setTextSize(getTextUserSize());
+            textPaint_Stroke.setTextScaleX(1.0f);
+            textPaint_Stroke.setTypeface(getTypeface());
+            textPaint_Stroke.setStrokeWidth(getTextStrokeWidth());
+            textPaint_Stroke.setStrokeCap(Paint.Cap.ROUND);
+            textPaint_Stroke.setStrokeJoin(Paint.Join.ROUND);
+            textPaint_Stroke.setStyle(Style.FILL_AND_STROKE);
+            textPaint_Stroke.setColor(Color.parseColor(getTextStrokeColor()));
+            textPaint_Stroke.setXfermode(XFERMODE_SRC);
         }
-        canvas.restore();
-        unfreeze();
+        if (getTextGradient()) {
+            textPaint_Gradient.setFlags(PERMISSIONS_ALL);
+            textPaint_Gradient.setTextSize(getTextUserSize());
+            textPaint_Gradient.setTextScaleX(1.0f);
+            textPaint_Gradient.setTypeface(getTypeface());
+            textPaint_Gradient.setStyle(Paint.Style.FILL);
+            textPaint_Gradient.setXfermode(XFERMODE_SRC);
+            mLayout.makeGradients(getTextShadowD(), getTextGradientFColor(), getTextGradientSColor(), getTextGradientTileMode());
+        }
+        mTextureShader = null;
+        if (getTextTexture()) {
+            textPaint_Texture.setFlags(PERMISSIONS_ALL);
+            textPaint_Texture.setTextSize(getTextUserSize());
+            textPaint_Texture.setTextScaleX(1.0f);
+            textPaint_Texture.setTypeface(getTypeface());
+            textPaint_Texture.setStyle(Paint.Style.FILL);
+            textPaint_Texture.setXfermode(XFERMODE_SRC);
+            mTextureShader = TextureShaderCache.get(getTextTexturePath(), getTextTextureTileMode(), ppp.x, ppp.y);
+            textPaint_Texture.setShader(mTextureShader);
+        }
+        mLayoutDirty = false;
     }
 
     public void freeze() {
-        int[] lockedCompoundPadding = new int[]{
-                borderRect.left,
-                borderRect.right,
-                borderRect.top,
-                borderRect.bottom
-        };
         frozen = true;
     }
 
@@ -755,6 +785,9 @@ public class MTextView extends View {
 //                }
 //            }
 //        });
+        if (!NeedLayout) {
+            return;
+        }
         renderThread = new Thread() {
             @Override
             public void run() {
@@ -776,9 +809,7 @@ public class MTextView extends View {
                 }
             }
         };
-        if (NeedLayout) {
-            renderThread.start();
-        }
+        renderThread.start();
 //        if (NeedLayout) {
 //            requestLayout();
 //            NeedLayout = false;
@@ -794,6 +825,7 @@ public class MTextView extends View {
         if (textPaint.getTypeface() != tf) {
             textPaint.setTypeface(tf);
         }
+        mLayoutDirty = true;
         NeedLayout = true;
         invalidate();
     }
@@ -833,6 +865,7 @@ public class MTextView extends View {
     public void setText(String text) {
         NeedLayout = true;
         Text = text;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -843,6 +876,7 @@ public class MTextView extends View {
     public void setGravity(int gravity) {
         if (gravity != mGravity) {
             mGravity = gravity;
+            mLayoutDirty = true;
             NeedLayout = true;
             invalidate();
         }
@@ -876,6 +910,7 @@ public class MTextView extends View {
 
     public void setTextUserColor(String textUserColor) {
         TextUserColor = textUserColor;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -885,6 +920,7 @@ public class MTextView extends View {
 
     public void setTextUserSize(float textSize) {
         TextUserSize = textSize;
+        mLayoutDirty = true;
         NeedLayout = true;
         invalidate();
     }
@@ -895,6 +931,7 @@ public class MTextView extends View {
 
     public void setTextLineSpacing(float textLineSpacing) {
         TextLineSpacing = textLineSpacing;
+        mLayoutDirty = true;
         NeedLayout = true;
         invalidate();
     }
@@ -914,6 +951,7 @@ public class MTextView extends View {
 
     public void setTextShadow(Boolean textShadow) {
         TextShadow = textShadow;
+        mLayoutDirty = true;
         NeedLayout = true;
         invalidate();
     }
@@ -924,6 +962,7 @@ public class MTextView extends View {
 
     public void setTextShadowColor(String textShadowColor) {
         TextShadowColor = textShadowColor;
+        mLayoutDirty = true;
         invalidate();
     }
 
@@ -936,6 +975,7 @@ public class MTextView extends View {
 
     public void setTextShadowX(int textShadowX) {
         TextShadowX = textShadowX;
+        mLayoutDirty = true;
         NeedLayout = true;
         invalidate();
     }
@@ -949,6 +989,7 @@ public class MTextView extends View {
 
     public void setTextShadowY(int textShadowY) {
         TextShadowY = textShadowY;
+        mLayoutDirty = true;
         NeedLayout = true;
         invalidate();
     }
@@ -962,6 +1003,7 @@ public class MTextView extends View {
 
     public void setTextShadowD(int textShadowD) {
         TextShadowD = textShadowD;
+        mLayoutDirty = true;
         NeedLayout = true;
         invalidate();
     }
@@ -1063,32 +1105,6 @@ public class MTextView extends View {
         }
     }
 
-    private void getrectSize(Paint paint, String text, float LineSpacing) {
-        boolean isitsss = false;
-        if (text.isEmpty()) {
-            text = " ";
-            isitsss = true;
-        }
-        rect.setEmpty();
-        paint.getTextBounds(text, 0, text.length(), rect);
-        int mLeft = Math.abs(rect.left);
-        int mTop = Math.abs(rect.top);
-        int number = rect.left;
-        yy = (rect.bottom + mTop);
-        NaturalTextHeight = (int) (yy + (LineSpacing * 200));
-        yyy += NaturalTextHeight;
-        if (number < 0) {
-            xx = xx > (rect.right + mLeft) ? xx : (rect.right + mLeft);
-            if (isitsss)
-                yyy += getFontMetrics().bottom;
-            ppp.set(xx, yyy);
-        } else if (number >= 0) {
-            xx = xx > (rect.right - mLeft) ? xx : (rect.right - mLeft);
-            if (isitsss)
-                yyy += getFontMetrics().bottom;
-            ppp.set(xx, yyy);
-        }
-    }
 //    Wrapping long text on an Android Canvas
 //    http://stackoverflow.com/questions/2336938/wrapping-long-text-on-an-android-canvas
 //    http://stackoverflow.com/questions/6756975/draw-multi-line-text-to-canvas
@@ -1101,133 +1117,6 @@ public class MTextView extends View {
 //    http://stackoverflow.com/questions/19728181/how-to-divide-a-bitmap-into-parts-that-are-bitmaps-too/25953122#25953122
 //    http://developer.alexanderklimov.ru/android/catshop/android.graphics.path.php
 
-    private void TextDrawer(Canvas canvas, Paint paint, String text, float LineSpacing) {
-        boolean isitsss = false;
-        if (text.isEmpty()) {
-            text = " ";
-            isitsss = true;
-        }
-        r.setEmpty();
-        paint.getTextBounds(text, 0, text.length(), r);
-        float gravNum = 0;
-        switch (mGravity) {
-            case Gravity.START:
-                gravNum = LeftCaclc(r.left) + (getTextShadowD() * 0.5f)   /*+ lll*/;
-                break;
-            case Gravity.CENTER:
-                gravNum = xx * 0.5f - ((r.right - LeftCaclc(r.left)) * 0.5f) + (getTextShadowD() * 0.5f)   /*+ lll*/;
-                break;
-            case Gravity.END:
-                gravNum = (((xx - r.right) - LeftCaclc(r.left))) + LeftCaclc(r.left) + (getTextShadowD() * 0.5f)   /*+ lll*/;
-                break;
-        }
-        if (isitsss)
-            canvas.translate(0, getFontMetrics().bottom);
-        canvas.translate(gravNum + ((int) getTextSizeCrop() * 0.5f) + (int) (getTextStrokeWidth() * 0.5f) + (int) (getTextCropX() * 0.5f), ((int) getTextSizeCrop() * 0.5f) + (int) (getTextStrokeWidth() * 0.5f) + (int) (getTextCropY() * 0.5f));
-        Path dashPath;
-        float phase;
-        dashPath = new Path();
-        dashPath.addCircle(0, 0, 3, Path.Direction.CCW);
-        phase = 0.0f;
-//        paint.setXfermode(new PorterDuffXfermode(Mode.DST_ATOP));
-//        canvas.drawText(text,  getTextPadding().left  ,((-r.top) + (getTextShadowD() * 0.5f)) + getTextStrokeWidth(), paint);
-        if (getTextStroke()) {
-            textPaint_Stroke.setFlags(PERMISSIONS_ALL);
-            textPaint_Stroke.setTextSize(getTextUserSize());
-            textPaint_Stroke.setTextScaleX(1.0f);
-            textPaint_Stroke.setTypeface(getTypeface());
-            textPaint_Stroke.setStrokeWidth(getTextStrokeWidth());
-            textPaint_Stroke.setStrokeCap(Paint.Cap.ROUND);
-            textPaint_Stroke.setStrokeJoin(Paint.Join.ROUND);
-//        textPaint_Stroke.setStrokeMiter(getTextStrokeMiter());
-            Shaders.mEffects = new PathEffect[6];
-            Shaders.makeEffects(Shaders.mEffects, 10.0f);
-//            new CornerPathEffect(10)
-//            new DiscretePathEffect(3.0f, 5.0f)
-//            new DashPathEffect(new float[] { 20, 10, 5, 10 }, phase);
-//            new PathDashPathEffect(p, 12, phase, PathDashPathEffect.Style.ROTATE);
-//        textPaint_Stroke.setPathEffect(new DiscretePathEffect(10,15));
-//        textPaint_Stroke.setPathEffect(Shaders.mEffects[2]);
-//        textPaint_Stroke.setPathEffect(pathDashPathEffect );
-            textPaint_Stroke.setStyle(Style.FILL_AND_STROKE);
-            textPaint_Stroke.setColor(Color.parseColor(getTextStrokeColor()));
-//            textPaint_Stroke.setXfermode(new PorterDuffXfermode(Mode.DST_ATOP));
-            textPaint_Stroke.setXfermode(new PorterDuffXfermode(Mode.SRC));
-            canvas.drawText(text, getTextPadding().left, ((-r.top) + (getTextShadowD() * 0.5f)), textPaint_Stroke);
-//            paint.setXfermode(new PorterDuffXfermode(Mode.DST_OUT));
-//            paint.setXfermode(new PorterDuffXfermode(Mode.DST));
-        }
-        paint.setXfermode(new PorterDuffXfermode(Mode.SRC));
-        canvas.drawText(text, getTextPadding().left, ((-r.top) + (getTextShadowD() * 0.5f)), paint);
-//        circlePaint.setFlags(Paint.STRIKE_THRU_TEXT_FLAG);
-//        circlePaint.setFlags(Paint.UNDERLINE_TEXT_FLAG);
-//        paint.setXfermode(new PorterDuffXfermode(Mode.SRC_IN));
-//        EmbossMaskFilter debossFilter = new EmbossMaskFilter(
-////                new float[]{0f, -1f, 0.5f}, // direction of the light source
-//                new float[]{1f, -1f, 1f},
-//                0.8f, // ambient light between 0 to 1
-//                100, // specular highlights
-//                7.0f // blur before applying lighting
-//        );
-//        // Apply the deboss mask filter
-//        textPaint_Gradient.setMaskFilter(debossFilter);
-        if (getTextGradient()) {
-            textPaint_Gradient.setFlags(PERMISSIONS_ALL);
-            textPaint_Gradient.setTextSize(getTextUserSize());
-            textPaint_Gradient.setTextScaleX(1.0f);
-            textPaint_Gradient.setTypeface(getTypeface());
-            textPaint_Gradient.setStyle(Paint.Style.FILL);
-//            textPaint_Gradient.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-            float length_Y = (((r.bottom + (-r.top))) + (LineSpacing * 200)) + (getTextShadowD() * 0.5f);
-//            float length_Y = canvas.getHeight();
-            float length_X = (getTextShadowD() * 0.5f);
-//            Matrix matrix = new Matrix();
-//            matrix.setRotate(getTextGradientRotate(),length_Y,length_Y/2);
-//            shader.setLocalMatrix(matrix);
-//            Bitmap bitmap = BitmapFactory.decodeResource(
-//                    getResources(), R.drawable.cheetah_tile);
-//            Shader shader = new BitmapShader(bitmap,
-//                    Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
-//            int[] rainbow = getRainbowColors();
-//            Shader shader = new LinearGradient(0, 0, getWidth(), getHeight(), rainbow,
-//                    null, Shader.TileMode.CLAMP);
-//            Matrix matrix = new Matrix();
-//
-//            shader.setLocalMatrix(matrix);
-//            Shader shader = new LinearGradient(0, 0, 0, www, rainbow, null, Shader.TileMode.MIRROR);
-//            Matrix matrix = new Matrix();
-//            matrix.setRotate(getTextGradientRotate());
-//            shader.setLocalMatrix(matrix);
-//            textPaint_Gradient.setXfermode(new PorterDuffXfermode(Mode.SRC_OVER));
-            textPaint_Gradient.setXfermode(new PorterDuffXfermode(Mode.SRC));
-            textPaint_Gradient.setShader(Shaders.makeLinear(length_X, length_Y, getTextGradientFColor(), getTextGradientSColor(), getTextGradientTileMode()));
-//            textPaint_Gradient.setShader(shader);
-            canvas.drawText(text, getTextPadding().left, ((-r.top) + (getTextShadowD() * 0.5f)), textPaint_Gradient);
-        } else {
-            textPaint.setShader(null);
-        }
-        if (getTextTexture()) {
-            textPaint_Texture.setFlags(PERMISSIONS_ALL);
-            textPaint_Texture.setTextSize(getTextUserSize());
-            textPaint_Texture.setTextScaleX(1.0f);
-            textPaint_Texture.setTypeface(getTypeface());
-            textPaint_Texture.setStyle(Paint.Style.FILL);
-//            Matrix matrix = new Matrix();
-//            matrix.setRotate(getTextGradientRotate(),length_Y,length_Y/2);
-//            shader.setLocalMatrix(matrix);
-//            Bitmap bitmap = BitmapFactory.decodeResource( getResources(), R.drawable.cheetah_tile);
-            Bitmap bitmap = BitmapFactory.decodeFile(getTextTexturePath());
-            Shader shader = new BitmapShader(bitmap, getTextTextureTileMode(), getTextTextureTileMode());
-            textPaint_Texture.setXfermode(new PorterDuffXfermode(Mode.SRC));
-            textPaint_Texture.setShader(shader);
-//            textPaint_Texture.setShader(shader);
-            canvas.drawText(text, getTextPadding().left, ((-r.top) + (getTextShadowD() * 0.5f)), textPaint_Texture);
-        } else {
-            textPaint.setShader(null);
-        }
-        canvas.translate(-gravNum - ((int) getTextSizeCrop() * 0.5f) - (int) (getTextStrokeWidth() * 0.5f) - ((int) getTextCropX() * 0.5f), (int) (((r.bottom + (-r.top))) + (LineSpacing * 200)) - ((int) getTextSizeCrop() * 0.5f) - (int) (getTextStrokeWidth() * 0.5f) - (int) (getTextCropY() * 0.5f));
-    }
-
     private int[] getRainbowColors() {
         return new int[]{
                 getResources().getColor(R.color.md_red_700),
@@ -1238,15 +1127,6 @@ public class MTextView extends View {
         };
     }
 
-    private int LeftCaclc(int numbers) {
-        if (numbers < 0) {
-            return Math.abs(numbers);
-        } else if (numbers >= 0) {
-            return -numbers;
-        }
-        return numbers;
-    }
-
     public void RemoveMe() {
         MainActivity.mainInstance().SelecetedTextView = null;
         MainActivity.mainInstance().textArrayID = 0;
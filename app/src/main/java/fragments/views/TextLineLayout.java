@@ -0,0 +1,138 @@
+package fragments.views;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+import android.text.TextUtils;
+import android.view.Gravity;
+
+import fragments.textEffects.Shaders;
+
+/**
+ * The line layout of a text layer: its non-empty lines, their bounds, the block they make together
+ * and the gradient of every line. {@link MTextView} and the offscreen export renderer both measure
+ * and draw their lines through it, so an exported text lines up with the one on screen.
+ */
+public final class TextLineLayout {
+    private String[] mLines = new String[0];
+    private Rect[] mLineBounds = new Rect[0];
+    private Shader[] mLineGradients = new Shader[0];
+    private float mLineSpacing;
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * splits text at its line breaks, drops the empty lines and measures the others with paint
+     */
+    public void measure(String text, Paint paint, float lineSpacing) {
+        String[] lines = text == null ? new String[0] : text.split("\\r?\\n", -1);
+        int count = 0;
+        for (String line : lines) {
+            if (!TextUtils.isEmpty(line)) {
+                count++;
+            }
+        }
+        mLines = new String[count];
+        mLineBounds = new Rect[count];
+        mLineGradients = new Shader[count];
+        mLineSpacing = lineSpacing;
+        mWidth = 0;
+        mHeight = 0;
+        int index = 0;
+        for (String line : lines) {
+            if (TextUtils.isEmpty(line)) {
+                continue;
+            }
+            Rect rect = new Rect();
+            paint.getTextBounds(line, 0, line.length(), rect);
+            int left = Math.abs(rect.left);
+            mHeight += (int) ((rect.bottom + Math.abs(rect.top)) + (lineSpacing * 200));
+            mWidth = Math.max(mWidth, rect.left < 0 ? rect.right + left : rect.right - left);
+            mLines[index] = line;
+            mLineBounds[index] = rect;
+            index++;
+        }
+    }
+
+    /**
+     * makes the vertical gradient of every line, drawn by the gradient paint passed to {@link #draw}
+     */
+    public void makeGradients(int shadowD, String startColor, String endColor, Shader.TileMode tileMode) {
+        float lengthX = shadowD * 0.5f;
+        for (int i = 0; i < mLines.length; i++) {
+            Rect bounds = mLineBounds[i];
+            float lengthY = ((bounds.bottom + (-bounds.top)) + (mLineSpacing * 200)) + (shadowD * 0.5f);
+            mLineGradients[i] = Shaders.makeLinear(lengthX, lengthY, startColor, endColor, tileMode);
+        }
+    }
+
+    /**
+     * width of the widest line
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * height of all lines with their spacing
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getLineCount() {
+        return mLines.length;
+    }
+
+    /**
+     * draws the lines top to bottom, each placed by gravity within the block, the stroke, gradient and
+     * texture paints are skipped when null
+     *
+     * @param x       left of the text within its line, the padding of the layer
+     * @param offsetX offset of every line from its place, for stroke and crop
+     * @param offsetY offset of every line from its top, for stroke and crop
+     */
+    public void draw(Canvas canvas, int gravity, float x, float offsetX, float offsetY, int shadowD,
+                     Paint stroke, Paint fill, Paint gradient, Paint texture) {
+        canvas.save();
+        for (int i = 0; i < mLines.length; i++) {
+            String text = mLines[i];
+            Rect r = mLineBounds[i];
+            float y = (-r.top) + (shadowD * 0.5f);
+            canvas.save();
+            canvas.translate(gravityOffset(gravity, r, shadowD) + offsetX, offsetY);
+            if (stroke != null) {
+                canvas.drawText(text, x, y, stroke);
+            }
+            canvas.drawText(text, x, y, fill);
+            if (gradient != null) {
+                gradient.setShader(mLineGradients[i]);
+                canvas.drawText(text, x, y, gradient);
+            }
+            if (texture != null) {
+                canvas.drawText(text, x, y, texture);
+            }
+            canvas.restore();
+            canvas.translate(0, (int) (((r.bottom + (-r.top))) + (mLineSpacing * 200)));
+        }
+        canvas.restore();
+    }
+
+    private float gravityOffset(int gravity, Rect r, int shadowD) {
+        switch (gravity) {
+            case Gravity.START:
+                return leftInset(r.left) + (shadowD * 0.5f);
+            case Gravity.CENTER:
+                return mWidth * 0.5f - ((r.right - leftInset(r.left)) * 0.5f) + (shadowD * 0.5f);
+            case Gravity.END:
+                return (mWidth - r.right) + (shadowD * 0.5f);
+            default:
+                return 0;
+        }
+    }
+
+    private static int leftInset(int left) {
+        return left < 0 ? Math.abs(left) : -left;
+    }
+}
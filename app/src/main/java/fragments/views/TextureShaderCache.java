@@ -0,0 +1,97 @@
+package fragments.views;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapShader;
+import android.graphics.Matrix;
+import android.graphics.Shader;
+import android.text.TextUtils;
+
+import androidx.collection.LruCache;
+
+import fragments.imageHelper.BitmapLoader;
+
+/**
+ * Shares one decoded texture and its {@link BitmapShader} between every line and every
+ * text layer that uses the same texture file and tile mode.
+ * The texture is decoded with the biggest sample size that still covers the requested
+ * text bounds, and the shader matrix scales it back so the tiling looks the same.
+ */
+public final class TextureShaderCache extends LruCache<String, TextureShaderCache.Texture> {
+    private static final TextureShaderCache INSTANCE =
+            new TextureShaderCache((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16));
+
+    private TextureShaderCache(int maxSize) {
+        super(maxSize);
+    }
+
+    public static Shader get(String path, Shader.TileMode tileMode, int reqWidth, int reqHeight) {
+        if (TextUtils.isEmpty(path) || tileMode == null) {
+            return null;
+        }
+        String key = path + '|' + tileMode.name();
+        synchronized (INSTANCE) {
+            Texture texture = INSTANCE.get(key);
+            if (texture != null
+                    && texture.sampleSize <= BitmapLoader.sampleSize(texture.width, texture.height, reqWidth, reqHeight)) {
+                return texture.shader;
+            }
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(path, opts);
+            if (opts.outWidth <= 0 || opts.outHeight <= 0) {
+                return null;
+            }
+            int width = opts.outWidth;
+            int height = opts.outHeight;
+            opts.inJustDecodeBounds = false;
+            opts.inSampleSize = BitmapLoader.sampleSize(width, height, reqWidth, reqHeight);
+            Bitmap bitmap = BitmapLoader.getInstance().decode(path, opts);
+            if (bitmap == null) {
+                return null;
+            }
+            texture = new Texture(bitmap, tileMode, width, height, opts.inSampleSize);
+            INSTANCE.put(key, texture);
+            return texture.shader;
+        }
+    }
+
+    public static void remove(String path) {
+        if (TextUtils.isEmpty(path)) {
+            return;
+        }
+        for (Shader.TileMode tileMode : Shader.TileMode.values()) {
+            INSTANCE.remove(path + '|' + tileMode.name());
+        }
+    }
+
+    public static void clear() {
+        INSTANCE.evictAll();
+    }
+
+    @Override
+    protected int sizeOf(String key, Texture value) {
+        return value.byteCount;
+    }
+
+    static final class Texture {
+        final BitmapShader shader;
+        final int width;
+        final int height;
+        final int sampleSize;
+        final int byteCount;
+
+        Texture(Bitmap bitmap, Shader.TileMode tileMode, int width, int height, int sampleSize) {
+            this.width = width;
+            this.height = height;
+            this.sampleSize = sampleSize;
+            this.byteCount = bitmap.getRowBytes() * bitmap.getHeight();
+            shader = new BitmapShader(bitmap, tileMode, tileMode);
+            if (sampleSize > 1) {
+                Matrix matrix = new Matrix();
+                matrix.setScale(sampleSize, sampleSize);
+                shader.setLocalMatrix(matrix);
+            }
+        }
+    }
+}
@@ -2,10 +2,8 @@ package mt.karimi.ronevis;
 
 import android.app.Activity;
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.content.pm.PackageInfo;
-import android.content.pm.PackageManager;
-import android.content.pm.PackageManager.NameNotFoundException;
 import android.graphics.Color;
 import android.os.Build;
 import android.os.Handler;
@@ -20,9 +18,14 @@ import org.acra.sender.AcraLSender;
 
 import activities.MainActivity;
 import fragments.FireHelper;
+import fragments.db.dl.FilesDBManager;
+import fragments.db.dl.FilesInfo;
+import fragments.imageHelper.BitmapLoader;
 import fragments.tool.Base;
 import fragments.tool.FontsOverride;
 import fragments.tool.preferences.Pref;
+import mt.karimi.ronevis.startup.Startup;
+import mt.karimi.ronevis.startup.StartupTask;
 import mt.storage.SimpleStorage;
 import mt.storage.Storage;
 import multithreaddownload.DownloadConfiguration;
@@ -37,6 +40,22 @@ import multithreaddownload.DownloadManager;
         resDialogEmailPrompt = R.string.ok,
         reportSenderFactoryClasses = {AcraLFactory.class})
 public class ApplicationLoader extends Application {
+    /**
+     * storage, Base and the preference file, everything else may use them
+     */
+    public static final String TASK_STORAGE = "storage";
+    /**
+     * the app font swapped in for MONOSPACE, screens showing text wait for it
+     */
+    public static final String TASK_DEFAULT_FONT = "defaultFont";
+    /**
+     * the DownloadManager, call {@link Startup#require} before using it
+     */
+    public static final String TASK_DOWNLOADS = "downloads";
+    /**
+     * the font pack that ships with the app is in the packs database
+     */
+    public static final String TASK_BUNDLED_PACKS = "bundledPacks";
     public static volatile Context applicationContext;
     public static volatile Handler applicationHandler;
     private static ApplicationLoader AppInstance;
@@ -94,39 +113,69 @@ public class ApplicationLoader extends Application {
         Logger.init("MT_Debug");
         AppInstance = this;
         AppContext = getApplicationContext();
-        DownloadConfiguration configuration = new DownloadConfiguration();
-        configuration.setMaxThreadNum(10);
-        configuration.setThreadNum(3);
-        DownloadManager.getInstance().init(getApplicationContext(), configuration);
-        FontsOverride.setDefaultFont(this, "MONOSPACE", ApplicationLoader.appInstance().getString(R.string.IR_UltraLight_Fa));
-//        CalligraphyConfig.initDefault(new CalligraphyConfig.Builder()
-//                .setDefaultFontPath(ApplicationLoader.appInstance().getString(R.string.IR_UltraLight_Fa))
-//                .build()
-//        );
-//        if (SimpleStorage.isExternalStorageWritable()) {
-//            storage = SimpleStorage.getExternalStorage();
-//        } else {
-            storage = SimpleStorage.getInternalStorage(ApplicationLoader.appInstance());
-//        }
-        Base.initialize(ApplicationLoader.appInstance());
-        Pref.setDefaultName(ApplicationLoader.appInstance().getString(R.string.SharedPrefronevisEditor));
         sdkVersion = Build.VERSION.SDK_INT;
         sdkName = Build.VERSION.CODENAME;
-        try {
-            PackageManager manager = getPackageManager();
-            PackageInfo info;
-            info = manager.getPackageInfo(getPackageName(), 0);
-            appVersionCode = info.versionCode;
-            appVersionName = info.versionName;
-        } catch (NameNotFoundException ignored) {
-            FireHelper fireHelper = new FireHelper();
-            fireHelper.SendReport(ignored);
-        }
+        // the same values the package manager reports, without asking it
+        appVersionCode = BuildConfig.VERSION_CODE;
+        appVersionName = BuildConfig.VERSION_NAME;
+        Startup.getInstance()
+                .add(new StartupTask(TASK_STORAGE, Startup.PHASE_CRITICAL) {
+                    @Override
+                    public void run(Context context) {
+//                        if (SimpleStorage.isExternalStorageWritable()) {
+//                            storage = SimpleStorage.getExternalStorage();
+//                        } else {
+                        storage = SimpleStorage.getInternalStorage(ApplicationLoader.appInstance());
+//                        }
+                        Base.initialize(ApplicationLoader.appInstance());
+                        Pref.setDefaultName(ApplicationLoader.appInstance().getString(R.string.SharedPrefronevisEditor));
+                    }
+                })
+                .add(new StartupTask(TASK_DEFAULT_FONT, Startup.PHASE_BACKGROUND) {
+                    @Override
+                    public void run(Context context) {
+                        FontsOverride.setDefaultFont(context, "MONOSPACE", context.getString(R.string.IR_UltraLight_Fa));
+//                        CalligraphyConfig.initDefault(new CalligraphyConfig.Builder()
+//                                .setDefaultFontPath(ApplicationLoader.appInstance().getString(R.string.IR_UltraLight_Fa))
+//                                .build()
+//                        );
+                    }
+                })
+                .add(new StartupTask(TASK_BUNDLED_PACKS, Startup.PHASE_BACKGROUND) {
+                    @Override
+                    public void run(Context context) {
+                        FilesDBManager filesDBManager = FilesDBManager.getInstance(context);
+                        FilesInfo filesInfo = new FilesInfo(
+                                "1",
+                                "font",
+                                "fa",
+                                "fa_IRANSans",
+                                "5 فونت",
+                                "fa_IRANSans",
+                                "ایران",
+                                "img",
+                                "url");
+                        if (!filesDBManager.exists(filesInfo.getSubcat())) {
+                            filesDBManager.insert(filesInfo);
+                        }
+                    }
+                })
+                .add(new StartupTask(TASK_DOWNLOADS, Startup.PHASE_IDLE, TASK_STORAGE) {
+                    @Override
+                    public void run(Context context) {
+                        DownloadConfiguration configuration = new DownloadConfiguration();
+                        configuration.setMaxThreadNum(10);
+                        configuration.setThreadNum(3);
+                        DownloadManager.getInstance().init(context, configuration);
+                    }
+                })
+                .start(this);
     }
 
     @Override
     public void onLowMemory() {
         super.onLowMemory();
+        BitmapLoader.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
         try {
             System.gc();
             Runtime r = Runtime.getRuntime();
@@ -140,6 +189,7 @@ public class ApplicationLoader extends Application {
     @Override
     public void onTrimMemory(int level) {
         super.onTrimMemory(level);
+        BitmapLoader.trimMemory(level);
         try {
             System.gc();
             Runtime r = Runtime.getRuntime();
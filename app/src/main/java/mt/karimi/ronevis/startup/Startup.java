@@ -0,0 +1,368 @@
+package mt.karimi.ronevis.startup;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import fragments.FireHelper;
+
+/**
+ * Runs the app's {@link StartupTask}s in dependency order, each in its phase:
+ * <ul>
+ * <li>{@link #PHASE_CRITICAL} on the main thread inside {@link #start}, before anything is shown</li>
+ * <li>{@link #PHASE_IDLE} on the main thread one at a time whenever its queue is idle, i.e. after
+ * the first frames</li>
+ * <li>{@link #PHASE_BACKGROUND} on a small pool of background threads</li>
+ * </ul>
+ * Code that can't go on without a task calls {@link #require}, which runs it right away when it is
+ * still queued or waits for it, or {@link #whenDone} to be called back instead. Every task's duration
+ * goes to a {@link StartupTrace}, dumped to the cache folder at each traced first frame and once the
+ * idle work is done.
+ */
+public class Startup {
+    public static final int PHASE_CRITICAL = 0;
+    public static final int PHASE_IDLE = 1;
+    public static final int PHASE_BACKGROUND = 2;
+    private static final int BACKGROUND_THREADS = 2;
+    private static final String TRACE_FILE = "startup_trace.txt";
+    private static final Startup sInstance = new Startup();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final StartupTrace mTrace = new StartupTrace();
+    private final Map<String, Node> mNodes = new LinkedHashMap<>();
+    // idle tasks ready to run, main thread only
+    private final LinkedList<Runnable> mIdleQueue = new LinkedList<>();
+    private ExecutorService mBackground;
+    private Context mContext;
+    private boolean mStarted;
+    private boolean mIdleHandlerAdded;
+
+    private Startup() {
+    }
+
+    public static Startup getInstance() {
+        return sInstance;
+    }
+
+    public StartupTrace getTrace() {
+        return mTrace;
+    }
+
+    /**
+     * registers a task, tasks added after {@link #start} run as soon as their dependencies are done
+     */
+    public Startup add(StartupTask task) {
+        Node node;
+        synchronized (this) {
+            if (mNodes.containsKey(task.getName())) {
+                throw new IllegalArgumentException("task " + task.getName() + " is already added");
+            }
+            if (mStarted && task.getPhase() == PHASE_CRITICAL) {
+                throw new IllegalStateException("critical task " + task.getName() + " added after start");
+            }
+            node = new Node(task);
+            mNodes.put(task.getName(), node);
+            if (!mStarted) {
+                return this;
+            }
+        }
+        checkDependencies(node);
+        dispatchIfReady(node);
+        return this;
+    }
+
+    /**
+     * runs the critical tasks and schedules the others, call once from Application.onCreate
+     */
+    public void start(Context context) {
+        List<Node> nodes;
+        synchronized (this) {
+            if (mStarted) {
+                throw new IllegalStateException("already started");
+            }
+            mStarted = true;
+            mContext = context.getApplicationContext();
+            nodes = new ArrayList<>(mNodes.values());
+        }
+        for (Node node : nodes) {
+            checkDependencies(node);
+        }
+        for (Node node : nodes) {
+            if (node.mTask.getPhase() == PHASE_CRITICAL) {
+                runCritical(node);
+            }
+        }
+        for (Node node : nodes) {
+            dispatchIfReady(node);
+        }
+    }
+
+    /**
+     * returns once the task is done, running it on this thread when nobody started it yet
+     */
+    public void require(String name) {
+        Node node = getNode(name);
+        if (node.mLatch.getCount() == 0) {
+            return;
+        }
+        for (String dependency : node.mTask.getDependencies()) {
+            require(dependency);
+        }
+        boolean mainThread = Looper.myLooper() == Looper.getMainLooper();
+        if (node.mTask.getPhase() != PHASE_IDLE || mainThread) {
+            // ahead of its turn, run() ignores it when it comes up later
+            run(node);
+        }
+        try {
+            node.mLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * calls done on the main thread once the task is done, right away when it already is
+     */
+    public void whenDone(String name, Runnable done) {
+        Node node = getNode(name);
+        synchronized (this) {
+            if (node.mLatch.getCount() != 0) {
+                node.mCallbacks.add(done);
+                return;
+            }
+        }
+        mHandler.post(done);
+    }
+
+    /**
+     * runs work on the main thread when it is idle, traced under name but outside the task graph,
+     * for work an activity can put off until it is on screen
+     */
+    public void runWhenIdle(final String name, final Runnable work) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mIdleQueue.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        long begin = mTrace.begin();
+                        Throwable error = null;
+                        try {
+                            work.run();
+                        } catch (RuntimeException e) {
+                            error = e;
+                            throw e;
+                        } finally {
+                            mTrace.end(name, PHASE_IDLE, begin, error);
+                        }
+                    }
+                });
+                addIdleHandler();
+            }
+        });
+    }
+
+    /**
+     * marks the first frame of the activity in the trace and dumps it
+     */
+    public void traceFirstFrame(final Activity activity) {
+        final View decor = activity.getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                mTrace.mark("first frame " + activity.getClass().getSimpleName());
+                dumpTrace();
+                return true;
+            }
+        });
+    }
+
+    private void dumpTrace() {
+        if (mContext == null) {
+            return;
+        }
+        final File file = new File(mContext.getCacheDir(), TRACE_FILE);
+        background().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mTrace.dump(file);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private synchronized Node getNode(String name) {
+        Node node = mNodes.get(name);
+        if (node == null) {
+            throw new IllegalArgumentException("no task " + name);
+        }
+        return node;
+    }
+
+    private void checkDependencies(Node node) {
+        for (String dependency : node.mTask.getDependencies()) {
+            Node other = getNode(dependency);
+            if (node.mTask.getPhase() == PHASE_CRITICAL && other.mTask.getPhase() != PHASE_CRITICAL) {
+                throw new IllegalStateException("critical task " + node.mTask.getName()
+                        + " depends on " + dependency + " which is not critical");
+            }
+        }
+    }
+
+    private void runCritical(Node node) {
+        for (String dependency : node.mTask.getDependencies()) {
+            runCritical(getNode(dependency));
+        }
+        run(node);
+    }
+
+    private void dispatchIfReady(final Node node) {
+        synchronized (this) {
+            if (node.mState != Node.WAITING) {
+                return;
+            }
+            for (String dependency : node.mTask.getDependencies()) {
+                if (getNode(dependency).mLatch.getCount() != 0) {
+                    return;
+                }
+            }
+            node.mState = Node.QUEUED;
+        }
+        final Runnable run = new Runnable() {
+            @Override
+            public void run() {
+                Startup.this.run(node);
+            }
+        };
+        switch (node.mTask.getPhase()) {
+            case PHASE_IDLE:
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mIdleQueue.add(run);
+                        addIdleHandler();
+                    }
+                });
+                break;
+            case PHASE_BACKGROUND:
+                background().execute(run);
+                break;
+            default:
+                // critical tasks ran in start()
+                break;
+        }
+    }
+
+    private void run(Node node) {
+        synchronized (this) {
+            if (node.mState == Node.RUNNING || node.mState == Node.DONE) {
+                return;
+            }
+            node.mState = Node.RUNNING;
+        }
+        long begin = mTrace.begin();
+        Throwable error = null;
+        try {
+            node.mTask.run(mContext);
+        } catch (Exception e) {
+            // the app goes on without it, dependents still run
+            error = e;
+            new FireHelper().SendReport(e);
+        }
+        mTrace.end(node.mTask.getName(), node.mTask.getPhase(), begin, error);
+        List<Runnable> callbacks;
+        List<Node> nodes;
+        synchronized (this) {
+            node.mState = Node.DONE;
+            node.mLatch.countDown();
+            callbacks = new ArrayList<>(node.mCallbacks);
+            node.mCallbacks.clear();
+            nodes = new ArrayList<>(mNodes.values());
+        }
+        for (Runnable callback : callbacks) {
+            mHandler.post(callback);
+        }
+        for (Node other : nodes) {
+            if (other.mTask.getDependencies().contains(node.mTask.getName())) {
+                dispatchIfReady(other);
+            }
+        }
+    }
+
+    private void addIdleHandler() {
+        if (mIdleHandlerAdded) {
+            return;
+        }
+        mIdleHandlerAdded = true;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                // one per idle pass, input and frames get their turn in between
+                Runnable next = mIdleQueue.poll();
+                if (next != null) {
+                    next.run();
+                }
+                mIdleHandlerAdded = !mIdleQueue.isEmpty();
+                if (!mIdleHandlerAdded) {
+                    dumpTrace();
+                }
+                return mIdleHandlerAdded;
+            }
+        });
+    }
+
+    private synchronized ExecutorService background() {
+        if (mBackground == null) {
+            mBackground = Executors.newFixedThreadPool(BACKGROUND_THREADS, new ThreadFactory() {
+                private int mCount;
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "startup-" + (++mCount));
+                }
+            });
+        }
+        return mBackground;
+    }
+
+    private static class Node {
+        static final int WAITING = 0;
+        static final int QUEUED = 1;
+        static final int RUNNING = 2;
+        static final int DONE = 3;
+        final StartupTask mTask;
+        final CountDownLatch mLatch = new CountDownLatch(1);
+        final List<Runnable> mCallbacks = new ArrayList<>();
+        int mState = WAITING;
+
+        Node(StartupTask task) {
+            mTask = task;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package mt.karimi.ronevis.startup;
+
+import android.content.Context;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One named piece of app initialization, run by {@link Startup} once the tasks it depends on are done.
+ */
+public abstract class StartupTask {
+    private final String mName;
+    private final int mPhase;
+    private final List<String> mDependencies;
+
+    /**
+     * @param phase     one of {@link Startup#PHASE_CRITICAL}, {@link Startup#PHASE_IDLE} and
+     *                  {@link Startup#PHASE_BACKGROUND}
+     * @param dependsOn names of tasks that must be done first, a critical task may only depend on
+     *                  critical ones
+     */
+    public StartupTask(String name, int phase, String... dependsOn) {
+        mName = name;
+        mPhase = phase;
+        mDependencies = Collections.unmodifiableList(Arrays.asList(dependsOn));
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getPhase() {
+        return mPhase;
+    }
+
+    public List<String> getDependencies() {
+        return mDependencies;
+    }
+
+    /**
+     * @param context the application context
+     */
+    public abstract void run(Context context) throws Exception;
+}
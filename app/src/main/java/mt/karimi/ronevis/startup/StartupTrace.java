@@ -0,0 +1,83 @@
+package mt.karimi.ronevis.startup;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * When each startup task ran, on which thread and for how long, in milliseconds since the trace
+ * was created with the application.
+ */
+public class StartupTrace {
+    private static final String TAG = "StartupTrace";
+    private final long mOrigin = SystemClock.elapsedRealtime();
+    private final List<String> mLines = new ArrayList<>();
+
+    /**
+     * @return the time to pass to {@link #end}
+     */
+    long begin() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    synchronized void end(String name, int phase, long begin, Throwable error) {
+        long now = SystemClock.elapsedRealtime();
+        String line = String.format(Locale.US, "%6d %6dms  %-10s %-24s %s%s", begin - mOrigin, now - begin, phaseName(phase),
+                name, Thread.currentThread().getName(), error != null ? "  failed: " + error : "");
+        mLines.add(line);
+        Log.i(TAG, line);
+    }
+
+    /**
+     * records an event, e.g. the first frame of an activity
+     */
+    public synchronized void mark(String event) {
+        String line = String.format(Locale.US, "%6d %8s  %s", SystemClock.elapsedRealtime() - mOrigin, "", event);
+        mLines.add(line);
+        Log.i(TAG, line);
+    }
+
+    public synchronized void dump(File file) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            writer.write(String.format(Locale.US, "%6s %8s  %-10s %-24s %s\n", "start", "took", "phase", "task", "thread"));
+            for (String line : mLines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (String line : mLines) {
+            builder.append(line).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static String phaseName(int phase) {
+        switch (phase) {
+            case Startup.PHASE_CRITICAL:
+                return "critical";
+            case Startup.PHASE_IDLE:
+                return "idle";
+            case Startup.PHASE_BACKGROUND:
+                return "background";
+            default:
+                return "-";
+        }
+    }
+}
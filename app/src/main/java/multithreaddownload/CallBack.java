@@ -35,8 +35,10 @@ public interface CallBack {
      * @param finished the downloaded length of the file
      * @param total    the total length of the file same value with method {@link }
      * @param progress the percent of progress (finished/total)*100
+     * @param speed    smoothed bytes per second, -1 until measured
+     * @param eta      milliseconds left at that speed, -1 when unknown
      */
-    void onProgress(long finished, long total, int progress);
+    void onProgress(long finished, long total, int progress, long speed, long eta);
 
     /**
      * <p> download complete
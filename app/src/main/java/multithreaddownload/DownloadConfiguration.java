@@ -9,6 +9,8 @@ package multithreaddownload;
 public class DownloadConfiguration {
     public static final int DEFAULT_MAX_THREAD_NUMBER = 10;
     public static final int DEFAULT_THREAD_NUMBER = 1;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 2000;
+    public static final int DEFAULT_MAX_PER_HOST = 2;
     /**
      * thread number in the pool
      */
@@ -17,6 +19,18 @@ public class DownloadConfiguration {
      * thread number for each download
      */
     private int threadNum;
+    /**
+     * ms between forcing downloaded data to storage and saving the progress
+     */
+    private long checkpointInterval;
+    /**
+     * downloads running at once against one host
+     */
+    private int maxPerHost;
+    /**
+     * all downloads together, 0 for no limit
+     */
+    private long maxBytesPerSecond;
 
     /**
      * init with default value
@@ -24,6 +38,9 @@ public class DownloadConfiguration {
     public DownloadConfiguration() {
         maxThreadNum = DEFAULT_MAX_THREAD_NUMBER;
         threadNum = DEFAULT_THREAD_NUMBER;
+        checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        maxPerHost = DEFAULT_MAX_PER_HOST;
+        maxBytesPerSecond = 0;
     }
 
     public int getMaxThreadNum() {
@@ -41,4 +58,35 @@ public class DownloadConfiguration {
     public void setThreadNum(int threadNum) {
         this.threadNum = threadNum;
     }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * @return downloads that may run at once, every one keeps threadNum threads of the pool busy
+     */
+    public int getMaxRunningNum() {
+        return Math.max(1, maxThreadNum / Math.max(1, threadNum));
+    }
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    public void setMaxPerHost(int maxPerHost) {
+        this.maxPerHost = maxPerHost;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
 }
@@ -5,18 +5,18 @@ import android.os.Handler;
 import android.os.Looper;
 import androidx.annotation.NonNull;
 
-import java.util.LinkedHashMap;
+import java.io.File;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
-import multithreaddownload.architecture.DownloadResponse;
 import multithreaddownload.architecture.DownloadStatusDelivery;
 import multithreaddownload.architecture.Downloader;
+import multithreaddownload.core.BandwidthLimiter;
 import multithreaddownload.core.DownloadResponseImpl;
 import multithreaddownload.core.DownloadStatusDeliveryImpl;
 import multithreaddownload.core.DownloaderImpl;
+import multithreaddownload.core.HttpConnector;
 import multithreaddownload.db.DataBaseManager;
 import multithreaddownload.db.ThreadInfo;
 import multithreaddownload.util.L;
@@ -34,7 +34,9 @@ public class DownloadManager implements Downloader.OnDownloaderDestroyedListener
      */
     private static DownloadManager sDownloadManager;
     private DataBaseManager mDBManager;
-    private Map<String, Downloader> mDownloaderMap;
+    private HttpConnector mConnector;
+    private BandwidthLimiter mLimiter;
+    private DownloadQueue mQueue;
     private DownloadConfiguration mConfig;
     private ExecutorService mExecutorService;
     private DownloadStatusDelivery mDelivery;
@@ -44,7 +46,6 @@ public class DownloadManager implements Downloader.OnDownloaderDestroyedListener
      * private construction
      */
     private DownloadManager() {
-        mDownloaderMap = new LinkedHashMap<>();
     }
 
     public static DownloadManager getInstance() {
@@ -75,65 +76,128 @@ public class DownloadManager implements Downloader.OnDownloaderDestroyedListener
         }
         mConfig = config;
         mDBManager = DataBaseManager.getInstance(context);
+        mConnector = new HttpConnector(mConfig.getMaxThreadNum());
+        mLimiter = new BandwidthLimiter(mConfig.getMaxBytesPerSecond());
+        mQueue = new DownloadQueue(mConfig.getMaxRunningNum(), mConfig.getMaxPerHost());
         mExecutorService = Executors.newFixedThreadPool(mConfig.getMaxThreadNum());
         mDelivery = new DownloadStatusDeliveryImpl(mHandler);
     }
 
     @Override
-    public void onDestroyed(final String key, Downloader downloader) {
+    public void onDestroyed(final String key, final Downloader downloader) {
         mHandler.post(new Runnable() {
             @Override
             public void run() {
-                if (mDownloaderMap.containsKey(key)) {
-                    mDownloaderMap.remove(key);
+                DownloadQueue.Entry entry = mQueue.removeRunning(key, downloader);
+                if (entry != null && entry.mPreempted && entry.mResponse.takeSuspendedPause()) {
+                    // paused for a more urgent download, resumes from the saved ranges later
+                    mQueue.requeue(entry);
                 }
+                schedule();
             }
         });
     }
 
+    /**
+     * queues the download, it starts when its priority comes up and its host has a free slot
+     */
     public void download(DownloadRequest request, String tag, CallBack callBack) {
         final String key = createKey(tag);
         if (check(key)) {
-            DownloadResponse response = new DownloadResponseImpl(mDelivery, callBack);
-            Downloader downloader = new DownloaderImpl(request, response, mExecutorService, mDBManager, key, mConfig, this);
-            mDownloaderMap.put(key, downloader);
-            downloader.start();
+            DownloadQueue.Entry waiting = mQueue.getWaiting(key);
+            if (waiting != null) {
+                // asked again, maybe because the item became visible
+                waiting.mPriority = Math.max(waiting.mPriority, request.getPriority());
+                schedule();
+                return;
+            }
+            DownloadQueue.Entry entry = mQueue.add(key, request, new DownloadResponseImpl(mDelivery, callBack));
+            schedule();
+            if (entry.mDownloader == null) {
+                // waiting, show it as about to start
+                entry.mResponse.onStarted();
+            }
+        }
+    }
+
+    /**
+     * caps all downloads together, 0 for no limit
+     */
+    public void setMaxBytesPerSecond(long bytesPerSecond) {
+        mLimiter.setBytesPerSecond(bytesPerSecond);
+    }
+
+    private void schedule() {
+        DownloadQueue.Entry entry;
+        while ((entry = mQueue.pollStartable()) != null) {
+            entry.mResponse.setSuspended(false);
+            entry.mDownloader = new DownloaderImpl(entry.mRequest, entry.mResponse, mExecutorService, mDBManager, mConnector, mLimiter, entry.mKey, mConfig, this);
+            entry.mDownloader.start();
+        }
+        DownloadQueue.Entry victim = mQueue.findPreemptable();
+        if (victim != null && victim.mDownloader.isRunning()) {
+            L.i(TAG, "preempting " + victim.mRequest.getName());
+            victim.mPreempted = true;
+            victim.mResponse.setSuspended(true);
+            victim.mDownloader.pause();
         }
     }
 
     public void pause(String tag) {
         String key = createKey(tag);
-        if (mDownloaderMap.containsKey(key)) {
-            Downloader downloader = mDownloaderMap.get(key);
-            if (downloader != null) {
-                if (downloader.isRunning()) {
-                    downloader.pause();
-                }
+        DownloadQueue.Entry waiting = mQueue.removeWaiting(key);
+        if (waiting != null) {
+            waiting.mResponse.onDownloadPaused();
+            return;
+        }
+        DownloadQueue.Entry entry = mQueue.removeRunning(key);
+        if (entry != null) {
+            entry.mResponse.setSuspended(false);
+            if (entry.mDownloader.isRunning()) {
+                entry.mDownloader.pause();
             }
-            mDownloaderMap.remove(key);
+            schedule();
         }
     }
 
     public void cancel(String tag) {
         String key = createKey(tag);
-        if (mDownloaderMap.containsKey(key)) {
-            Downloader downloader = mDownloaderMap.get(key);
-            if (downloader != null) {
-                downloader.cancel();
-            }
-            mDownloaderMap.remove(key);
+        DownloadQueue.Entry waiting = mQueue.removeWaiting(key);
+        if (waiting != null) {
+            cancelWaiting(waiting);
+            return;
+        }
+        DownloadQueue.Entry entry = mQueue.removeRunning(key);
+        if (entry != null) {
+            entry.mResponse.setSuspended(false);
+            entry.mDownloader.cancel();
+            schedule();
         }
     }
 
+    /**
+     * a preempted download left ranges and a partial file behind
+     */
+    private void cancelWaiting(DownloadQueue.Entry entry) {
+        mDBManager.delete(entry.mKey);
+        File file = new File(entry.mRequest.getFolder(), entry.mRequest.getName().toString());
+        if (file.exists() && file.isFile()) {
+            file.delete();
+        }
+        entry.mResponse.onDownloadCanceled();
+    }
+
     public void pauseAll() {
         mHandler.post(new Runnable() {
             @Override
             public void run() {
-                for (Downloader downloader : mDownloaderMap.values()) {
-                    if (downloader != null) {
-                        if (downloader.isRunning()) {
-                            downloader.pause();
-                        }
+                for (DownloadQueue.Entry entry : mQueue.removeAllWaiting()) {
+                    entry.mResponse.onDownloadPaused();
+                }
+                for (DownloadQueue.Entry entry : mQueue.getRunning()) {
+                    entry.mResponse.setSuspended(false);
+                    if (entry.mDownloader.isRunning()) {
+                        entry.mDownloader.pause();
                     }
                 }
             }
@@ -144,11 +208,13 @@ public class DownloadManager implements Downloader.OnDownloaderDestroyedListener
         mHandler.post(new Runnable() {
             @Override
             public void run() {
-                for (Downloader downloader : mDownloaderMap.values()) {
-                    if (downloader != null) {
-                        if (downloader.isRunning()) {
-                            downloader.cancel();
-                        }
+                for (DownloadQueue.Entry entry : mQueue.removeAllWaiting()) {
+                    cancelWaiting(entry);
+                }
+                for (DownloadQueue.Entry entry : mQueue.getRunning()) {
+                    entry.mResponse.setSuspended(false);
+                    if (entry.mDownloader.isRunning()) {
+                        entry.mDownloader.cancel();
                     }
                 }
             }
@@ -160,15 +226,16 @@ public class DownloadManager implements Downloader.OnDownloaderDestroyedListener
         mDBManager.delete(key);
     }
 
+    /**
+     * @return true while the download runs or waits in the queue
+     */
     public boolean isRunning(String tag) {
         String key = createKey(tag);
-        if (mDownloaderMap.containsKey(key)) {
-            Downloader downloader = mDownloaderMap.get(key);
-            if (downloader != null) {
-                return downloader.isRunning();
-            }
+        if (mQueue.getWaiting(key) != null) {
+            return true;
         }
-        return false;
+        DownloadQueue.Entry entry = mQueue.getRunning(key);
+        return entry != null && entry.mDownloader.isRunning();
     }
 
     public DownloadInfo getDownloadInfo(String tag) {
@@ -193,8 +260,9 @@ public class DownloadManager implements Downloader.OnDownloaderDestroyedListener
     }
 
     private boolean check(String key) {
-        if (mDownloaderMap.containsKey(key)) {
-            Downloader downloader = mDownloaderMap.get(key);
+        DownloadQueue.Entry entry = mQueue.getRunning(key);
+        if (entry != null) {
+            Downloader downloader = entry.mDownloader;
             if (downloader != null) {
                 if (downloader.isRunning()) {
                     L.w("Task has been started!");
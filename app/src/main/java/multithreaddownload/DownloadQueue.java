@@ -0,0 +1,220 @@
+package multithreaddownload;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import multithreaddownload.architecture.Downloader;
+import multithreaddownload.core.DownloadResponseImpl;
+import okhttp3.HttpUrl;
+
+/**
+ * Waiting and running downloads of the {@link DownloadManager}, only used on the main thread.
+ * <p>
+ * At most maxRunning downloads run, and at most maxPerHost of them against one host. Waiting downloads
+ * go by priority, then by age. Every {@link #AGING_INTERVAL} a download waits it counts one priority
+ * higher, up to just below {@link DownloadRequest#PRIORITY_VISIBLE}, so prefetches still get their
+ * turn while the item the user tapped always goes first. A waiting download may preempt a running one
+ * of a lower priority, the running one is paused and queued again.
+ */
+class DownloadQueue {
+    static final long AGING_INTERVAL = 30 * 1000;
+    private final List<Entry> mWaiting = new ArrayList<>();
+    private final Map<String, Entry> mRunning = new LinkedHashMap<>();
+    private final int mMaxRunning;
+    private final int mMaxPerHost;
+    private long mNextSequence;
+
+    DownloadQueue(int maxRunning, int maxPerHost) {
+        mMaxRunning = Math.max(1, maxRunning);
+        mMaxPerHost = Math.max(1, maxPerHost);
+    }
+
+    Entry add(String key, DownloadRequest request, DownloadResponseImpl response) {
+        Entry entry = new Entry(key, request, response, mNextSequence++, now());
+        mWaiting.add(entry);
+        return entry;
+    }
+
+    /**
+     * puts a preempted download back, it keeps its place among downloads of the same priority
+     */
+    void requeue(Entry entry) {
+        entry.mDownloader = null;
+        entry.mPreempted = false;
+        mWaiting.add(entry);
+    }
+
+    Entry getWaiting(String key) {
+        for (Entry entry : mWaiting) {
+            if (entry.mKey.equals(key)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    Entry removeWaiting(String key) {
+        Entry entry = getWaiting(key);
+        if (entry != null) {
+            mWaiting.remove(entry);
+        }
+        return entry;
+    }
+
+    List<Entry> removeAllWaiting() {
+        List<Entry> waiting = new ArrayList<>(mWaiting);
+        mWaiting.clear();
+        return waiting;
+    }
+
+    Entry getRunning(String key) {
+        return mRunning.get(key);
+    }
+
+    Collection<Entry> getRunning() {
+        return mRunning.values();
+    }
+
+    Entry removeRunning(String key) {
+        return mRunning.remove(key);
+    }
+
+    /**
+     * @return the entry when downloader is still the one running for key
+     */
+    Entry removeRunning(String key, Downloader downloader) {
+        Entry entry = mRunning.get(key);
+        if (entry != null && entry.mDownloader == downloader) {
+            return mRunning.remove(key);
+        }
+        return null;
+    }
+
+    /**
+     * moves the best waiting download that fits the limits to the running ones
+     *
+     * @return null when none fits
+     */
+    Entry pollStartable() {
+        if (countRunning() >= mMaxRunning) {
+            return null;
+        }
+        for (Entry entry : sortedWaiting()) {
+            if (countHost(entry.mHost) < mMaxPerHost) {
+                mWaiting.remove(entry);
+                mRunning.put(entry.mKey, entry);
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * picks a running download to pause for the best waiting one that cannot start
+     *
+     * @return null when no running download has a lower priority or one is already being preempted
+     */
+    Entry findPreemptable() {
+        List<Entry> waiting = sortedWaiting();
+        if (waiting.isEmpty()) {
+            return null;
+        }
+        for (Entry entry : mRunning.values()) {
+            if (entry.mPreempted) {
+                // wait for that slot first
+                return null;
+            }
+        }
+        Entry next = waiting.get(0);
+        // while its host is at the cap only a download from the same host frees a usable slot
+        boolean sameHostOnly = countHost(next.mHost) >= mMaxPerHost;
+        Entry victim = null;
+        for (Entry entry : mRunning.values()) {
+            if (entry.mPriority >= next.mPriority || (sameHostOnly && !entry.mHost.equals(next.mHost))) {
+                continue;
+            }
+            if (victim == null || entry.mPriority < victim.mPriority
+                    || (entry.mPriority == victim.mPriority && entry.mSequence > victim.mSequence)) {
+                victim = entry;
+            }
+        }
+        return victim;
+    }
+
+    private List<Entry> sortedWaiting() {
+        final long now = now();
+        List<Entry> sorted = new ArrayList<>(mWaiting);
+        // insertion sort, the queue is a handful of downloads
+        for (int i = 1; i < sorted.size(); i++) {
+            Entry entry = sorted.get(i);
+            int j = i - 1;
+            while (j >= 0 && isBefore(entry, sorted.get(j), now)) {
+                sorted.set(j + 1, sorted.get(j));
+                j--;
+            }
+            sorted.set(j + 1, entry);
+        }
+        return sorted;
+    }
+
+    private static boolean isBefore(Entry a, Entry b, long now) {
+        int pa = a.effectivePriority(now);
+        int pb = b.effectivePriority(now);
+        return pa != pb ? pa > pb : a.mSequence < b.mSequence;
+    }
+
+    /**
+     * the clock downloads age by
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    private int countRunning() {
+        return mRunning.size();
+    }
+
+    private int countHost(String host) {
+        int count = 0;
+        for (Entry entry : mRunning.values()) {
+            if (entry.mHost.equals(host)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static class Entry {
+        final String mKey;
+        final DownloadRequest mRequest;
+        final DownloadResponseImpl mResponse;
+        final String mHost;
+        final long mSequence;
+        final long mEnqueuedAt;
+        int mPriority;
+        Downloader mDownloader;
+        boolean mPreempted;
+
+        Entry(String key, DownloadRequest request, DownloadResponseImpl response, long sequence, long enqueuedAt) {
+            mKey = key;
+            mRequest = request;
+            mResponse = response;
+            mSequence = sequence;
+            mEnqueuedAt = enqueuedAt;
+            mPriority = request.getPriority();
+            HttpUrl url = request.getUri() != null ? HttpUrl.parse(request.getUri()) : null;
+            mHost = url != null ? url.host() : "";
+        }
+
+        private int effectivePriority(long now) {
+            if (mPriority >= DownloadRequest.PRIORITY_VISIBLE) {
+                return mPriority;
+            }
+            long aged = mPriority + (now - mEnqueuedAt) / AGING_INTERVAL;
+            return (int) Math.min(aged, DownloadRequest.PRIORITY_VISIBLE - 1);
+        }
+    }
+}
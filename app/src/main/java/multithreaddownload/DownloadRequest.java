@@ -9,21 +9,34 @@ import java.io.File;
  * email me at mtk.irib@gmail.com
  */
 public class DownloadRequest {
+    /**
+     * fetched ahead of time, runs when nothing else waits
+     */
+    public static final int PRIORITY_PREFETCH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    /**
+     * the item the user is looking at, may pause lower priorities
+     */
+    public static final int PRIORITY_VISIBLE = 2;
     private String mUri;
     private File mFolder;
     private CharSequence mName;
     private CharSequence mDescription;
     private boolean mScannable;
+    private int mPriority;
+    private StreamConsumer mStreamConsumer;
 
     private DownloadRequest() {
     }
 
-    private DownloadRequest(String uri, File folder, CharSequence name, CharSequence description, boolean scannable) {
+    private DownloadRequest(String uri, File folder, CharSequence name, CharSequence description, boolean scannable, int priority, StreamConsumer streamConsumer) {
         this.mUri = uri;
         this.mFolder = folder;
         this.mName = name;
         this.mDescription = description;
         this.mScannable = scannable;
+        this.mPriority = priority;
+        this.mStreamConsumer = streamConsumer;
     }
 
     public String getUri() {
@@ -46,12 +59,22 @@ public class DownloadRequest {
         return mScannable;
     }
 
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public StreamConsumer getStreamConsumer() {
+        return mStreamConsumer;
+    }
+
     public static class Builder {
         private String mUri;
         private File mFolder;
         private CharSequence mName;
         private CharSequence mDescription;
         private boolean mScannable;
+        private int mPriority = PRIORITY_NORMAL;
+        private StreamConsumer mStreamConsumer;
 
         public Builder() {
         }
@@ -81,8 +104,25 @@ public class DownloadRequest {
             return this;
         }
 
+        /**
+         * @param priority one of {@link #PRIORITY_PREFETCH}, {@link #PRIORITY_NORMAL}, {@link #PRIORITY_VISIBLE}
+         */
+        public Builder setPriority(int priority) {
+            this.mPriority = priority;
+            return this;
+        }
+
+        /**
+         * reads the body while it downloads instead of saving it when the server does not accept
+         * ranges, see {@link StreamConsumer}
+         */
+        public Builder setStreamConsumer(StreamConsumer streamConsumer) {
+            this.mStreamConsumer = streamConsumer;
+            return this;
+        }
+
         public DownloadRequest build() {
-            return new DownloadRequest(mUri, mFolder, mName, mDescription, mScannable);
+            return new DownloadRequest(mUri, mFolder, mName, mDescription, mScannable, mPriority, mStreamConsumer);
         }
     }
 }
@@ -0,0 +1,30 @@
+package multithreaddownload;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the response body while it arrives instead of having it written to the download folder.
+ * <p>
+ * Only used when the server does not accept ranges. Such a download is a single stream that a pause
+ * starts over anyway, so reading it on the fly costs nothing. When ranges are accepted the request
+ * downloads to its file as usual, in resumable ranges, and the consumer is left out.
+ * All methods run on the download thread.
+ */
+public interface StreamConsumer {
+    /**
+     * @param in     the body, reads may throw when the download is paused or canceled
+     * @param length the body length
+     */
+    void consume(InputStream in, long length) throws IOException;
+
+    /**
+     * the whole body was read, make the result visible
+     */
+    void commit() throws IOException;
+
+    /**
+     * the download stopped early, drop everything consumed so far
+     */
+    void abort();
+}
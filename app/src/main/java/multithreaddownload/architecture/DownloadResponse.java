@@ -19,7 +19,11 @@ public interface DownloadResponse {
 
     void onConnectCanceled();
 
-    void onDownloadProgress(long finished, long length, int percent);
+    /**
+     * @param speed bytes per second, -1 until measured
+     * @param eta   milliseconds left, -1 when unknown
+     */
+    void onDownloadProgress(long finished, long length, int percent, long speed, long eta);
 
     void onDownloadCompleted();
 
@@ -23,6 +23,8 @@ public class DownloadStatus {
     private long length;
     private long finished;
     private int percent;
+    private long speed = -1;
+    private long eta = -1;
     private boolean acceptRanges;
     private DownloadException exception;
     private CallBack callBack;
@@ -67,6 +69,28 @@ public class DownloadStatus {
         this.percent = percent;
     }
 
+    /**
+     * @return bytes per second, -1 until measured
+     */
+    public long getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(long speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @return milliseconds left at the current speed, -1 when unknown
+     */
+    public long getEta() {
+        return eta;
+    }
+
+    public void setEta(long eta) {
+        this.eta = eta;
+    }
+
     public boolean isAcceptRanges() {
         return acceptRanges;
     }
@@ -90,4 +114,22 @@ public class DownloadStatus {
     public void setCallBack(CallBack callBack) {
         this.callBack = callBack;
     }
+
+    /**
+     * the delivery posts a copy, so later updates on the download thread don't change what the UI gets
+     */
+    public DownloadStatus copy() {
+        DownloadStatus status = new DownloadStatus();
+        status.status = this.status;
+        status.time = time;
+        status.length = length;
+        status.finished = finished;
+        status.percent = percent;
+        status.speed = speed;
+        status.eta = eta;
+        status.acceptRanges = acceptRanges;
+        status.exception = exception;
+        status.callBack = callBack;
+        return status;
+    }
 }
@@ -0,0 +1,57 @@
+package multithreaddownload.core;
+
+import android.os.SystemClock;
+
+/**
+ * Token bucket shared by every download thread, caps the bytes per second of all downloads together.
+ * <p>
+ * The bucket holds at most one second of tokens. A thread may take more than there is, it then sleeps
+ * until the debt is paid back, so a 64KB read at a low rate waits once instead of spinning.
+ */
+public class BandwidthLimiter {
+    private volatile long mBytesPerSecond;
+    private long mTokens;
+    private long mLastRefill;
+
+    /**
+     * @param bytesPerSecond 0 or less for no limit
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        setBytesPerSecond(bytesPerSecond);
+    }
+
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+        mTokens = Math.max(0, bytesPerSecond);
+        mLastRefill = SystemClock.elapsedRealtime();
+    }
+
+    public long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * takes bytes out of the bucket, sleeping while it is in debt
+     */
+    void acquire(int bytes) {
+        final long wait;
+        synchronized (this) {
+            final long rate = mBytesPerSecond;
+            if (rate <= 0) {
+                return;
+            }
+            final long now = SystemClock.elapsedRealtime();
+            mTokens = Math.min(rate, mTokens + (now - mLastRefill) * rate / 1000);
+            mLastRefill = now;
+            mTokens -= bytes;
+            wait = mTokens < 0 ? -mTokens * 1000 / rate : 0;
+        }
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
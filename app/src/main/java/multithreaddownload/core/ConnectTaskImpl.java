@@ -5,14 +5,13 @@ import android.text.TextUtils;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
 import java.net.ProtocolException;
-import java.net.URL;
+import java.util.Collections;
 
-import multithreaddownload.Constants;
 import multithreaddownload.DownloadException;
 import multithreaddownload.architecture.ConnectTask;
 import multithreaddownload.architecture.DownloadStatus;
+import okhttp3.Response;
 
 /**
  * Created by mt.karimi on 2015/7/20.
@@ -22,15 +21,37 @@ import multithreaddownload.architecture.DownloadStatus;
  */
 public class ConnectTaskImpl implements ConnectTask {
     private final String mUri;
+    private final HttpConnector mConnector;
+    private final TransferMetrics mMetrics;
     private final OnConnectListener mOnConnectListener;
     private volatile int mStatus;
     private volatile long mStartTime;
+    /**
+     * the open response that told the length, its body starts at byte 0
+     */
+    private Response mProbe;
+    private boolean mProbeTaken;
 
-    public ConnectTaskImpl(String uri, OnConnectListener listener) {
+    public ConnectTaskImpl(String uri, HttpConnector connector, TransferMetrics metrics, OnConnectListener listener) {
         this.mUri = uri;
+        this.mConnector = connector;
+        this.mMetrics = metrics;
         this.mOnConnectListener = listener;
     }
 
+    /**
+     * hands the probe response over, call it from {@link OnConnectListener#onConnected}; a probe nobody
+     * takes is closed when that callback returns
+     *
+     * @return the response with its body unread, null when it is already gone
+     */
+    public synchronized Response takeProbe() {
+        Response probe = mProbe;
+        mProbe = null;
+        mProbeTaken |= probe != null;
+        return probe;
+    }
+
     @Override
     public void pause() {
         mStatus = DownloadStatus.STATUS_PAUSED;
@@ -79,24 +100,18 @@ public class ConnectTaskImpl implements ConnectTask {
 
     private void executeConnection() throws DownloadException {
         mStartTime = System.currentTimeMillis();
-        HttpURLConnection httpConnection = null;
-        final URL url;
-        try {
-            url = new URL(mUri);
-        } catch (MalformedURLException e) {
-            throw new DownloadException(DownloadStatus.STATUS_FAILED, "Bad url.", e);
-        }
+        Response response = null;
         try {
-            httpConnection = (HttpURLConnection) url.openConnection();
-            httpConnection.setConnectTimeout(Constants.HTTP.CONNECT_TIME_OUT);
-            httpConnection.setReadTimeout(Constants.HTTP.READ_TIME_OUT);
-            httpConnection.setRequestMethod(Constants.HTTP.GET);
-            httpConnection.setRequestProperty("Range", "bytes=" + 0 + "-");
-            final int responseCode = httpConnection.getResponseCode();
+            try {
+                response = mConnector.execute(mUri, Collections.singletonMap("Range", "bytes=" + 0 + "-"), mMetrics);
+            } catch (IllegalArgumentException e) {
+                throw new DownloadException(DownloadStatus.STATUS_FAILED, "Bad url.", e);
+            }
+            final int responseCode = response.code();
             if (responseCode == HttpURLConnection.HTTP_OK) {
-                parseResponse(httpConnection, false);
+                parseResponse(response, false);
             } else if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
-                parseResponse(httpConnection, true);
+                parseResponse(response, true);
             } else {
                 throw new DownloadException(DownloadStatus.STATUS_FAILED, "UnSupported response code:" + responseCode);
             }
@@ -107,17 +122,21 @@ public class ConnectTaskImpl implements ConnectTask {
             e.printStackTrace();
             throw new DownloadException(DownloadStatus.STATUS_FAILED, "IO error", e);
         } finally {
-            if (httpConnection != null) {
-                httpConnection.disconnect();
+            // the body of a probe that was not taken is never read
+            synchronized (this) {
+                mProbe = null;
+                if (response != null && !mProbeTaken) {
+                    response.close();
+                }
             }
         }
     }
 
-    private void parseResponse(HttpURLConnection httpConnection, boolean isAcceptRanges) throws DownloadException {
+    private void parseResponse(Response response, boolean isAcceptRanges) throws DownloadException {
         final long length;
-        String contentLength = httpConnection.getHeaderField("Content-Length");
+        String contentLength = response.header("Content-Length");
         if (TextUtils.isEmpty(contentLength) || contentLength.equals("0") || contentLength.equals("-1")) {
-            length = httpConnection.getContentLength();
+            length = response.body().contentLength();
         } else {
             length = Long.parseLong(contentLength);
         }
@@ -128,6 +147,9 @@ public class ConnectTaskImpl implements ConnectTask {
         //Successful
         mStatus = DownloadStatus.STATUS_CONNECTED;
         final long timeDelta = System.currentTimeMillis() - mStartTime;
+        synchronized (this) {
+            mProbe = response;
+        }
         mOnConnectListener.onConnected(timeDelta, length, isAcceptRanges);
     }
 
@@ -15,6 +15,8 @@ import multithreaddownload.architecture.DownloadStatusDelivery;
 public class DownloadResponseImpl implements DownloadResponse {
     private DownloadStatusDelivery mDelivery;
     private DownloadStatus mDownloadStatus;
+    private boolean mSuspended;
+    private boolean mSuspendedPaused;
 
     public DownloadResponseImpl(DownloadStatusDelivery delivery, CallBack callBack) {
         mDelivery = delivery;
@@ -22,20 +24,40 @@ public class DownloadResponseImpl implements DownloadResponse {
         mDownloadStatus.setCallBack(callBack);
     }
 
+    /**
+     * the download is paused to make room for a more urgent one, its pause is reported as
+     * {@link CallBack#onStarted()} since it waits in the queue again
+     */
+    public synchronized void setSuspended(boolean suspended) {
+        mSuspended = suspended;
+        mSuspendedPaused = false;
+    }
+
+    /**
+     * @return true once when the download stopped by a pause while suspended, false when it
+     * completed, failed or was canceled meanwhile
+     */
+    public synchronized boolean takeSuspendedPause() {
+        boolean paused = mSuspendedPaused;
+        mSuspended = false;
+        mSuspendedPaused = false;
+        return paused;
+    }
+
     @Override
-    public void onStarted() {
+    public synchronized void onStarted() {
         mDownloadStatus.setStatus(DownloadStatus.STATUS_STARTED);
         mDownloadStatus.getCallBack().onStarted();
     }
 
     @Override
-    public void onConnecting() {
+    public synchronized void onConnecting() {
         mDownloadStatus.setStatus(DownloadStatus.STATUS_CONNECTING);
         mDelivery.post(mDownloadStatus);
     }
 
     @Override
-    public void onConnected(long time, long length, boolean acceptRanges) {
+    public synchronized void onConnected(long time, long length, boolean acceptRanges) {
         mDownloadStatus.setTime(time);
         mDownloadStatus.setAcceptRanges(acceptRanges);
         mDownloadStatus.setStatus(DownloadStatus.STATUS_CONNECTED);
@@ -43,47 +65,54 @@ public class DownloadResponseImpl implements DownloadResponse {
     }
 
     @Override
-    public void onConnectFailed(DownloadException e) {
+    public synchronized void onConnectFailed(DownloadException e) {
         mDownloadStatus.setException(e);
         mDownloadStatus.setStatus(DownloadStatus.STATUS_FAILED);
         mDelivery.post(mDownloadStatus);
     }
 
     @Override
-    public void onConnectCanceled() {
+    public synchronized void onConnectCanceled() {
         mDownloadStatus.setStatus(DownloadStatus.STATUS_CANCELED);
         mDelivery.post(mDownloadStatus);
     }
 
     @Override
-    public void onDownloadProgress(long finished, long length, int percent) {
+    public synchronized void onDownloadProgress(long finished, long length, int percent, long speed, long eta) {
         mDownloadStatus.setFinished(finished);
         mDownloadStatus.setLength(length);
         mDownloadStatus.setPercent(percent);
+        mDownloadStatus.setSpeed(speed);
+        mDownloadStatus.setEta(eta);
         mDownloadStatus.setStatus(DownloadStatus.STATUS_PROGRESS);
         mDelivery.post(mDownloadStatus);
     }
 
     @Override
-    public void onDownloadCompleted() {
+    public synchronized void onDownloadCompleted() {
         mDownloadStatus.setStatus(DownloadStatus.STATUS_COMPLETED);
         mDelivery.post(mDownloadStatus);
     }
 
     @Override
-    public void onDownloadPaused() {
-        mDownloadStatus.setStatus(DownloadStatus.STATUS_PAUSED);
+    public synchronized void onDownloadPaused() {
+        if (mSuspended) {
+            mSuspendedPaused = true;
+            mDownloadStatus.setStatus(DownloadStatus.STATUS_STARTED);
+        } else {
+            mDownloadStatus.setStatus(DownloadStatus.STATUS_PAUSED);
+        }
         mDelivery.post(mDownloadStatus);
     }
 
     @Override
-    public void onDownloadCanceled() {
+    public synchronized void onDownloadCanceled() {
         mDownloadStatus.setStatus(DownloadStatus.STATUS_CANCELED);
         mDelivery.post(mDownloadStatus);
     }
 
     @Override
-    public void onDownloadFailed(DownloadException e) {
+    public synchronized void onDownloadFailed(DownloadException e) {
         mDownloadStatus.setException(e);
         mDownloadStatus.setStatus(DownloadStatus.STATUS_FAILED);
         mDelivery.post(mDownloadStatus);
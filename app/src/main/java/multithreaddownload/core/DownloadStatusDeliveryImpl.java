@@ -29,7 +29,7 @@ public class DownloadStatusDeliveryImpl implements DownloadStatusDelivery {
 
     @Override
     public void post(DownloadStatus status) {
-        mDownloadStatusPoster.execute(new DownloadStatusDeliveryRunnable(status));
+        mDownloadStatusPoster.execute(new DownloadStatusDeliveryRunnable(status.copy()));
     }
 
     private static class DownloadStatusDeliveryRunnable implements Runnable {
@@ -44,6 +44,9 @@ public class DownloadStatusDeliveryImpl implements DownloadStatusDelivery {
         @Override
         public void run() {
             switch (mDownloadStatus.getStatus()) {
+                case DownloadStatus.STATUS_STARTED:
+                    mCallBack.onStarted();
+                    break;
                 case DownloadStatus.STATUS_CONNECTING:
                     mCallBack.onConnecting();
                     break;
@@ -51,7 +54,7 @@ public class DownloadStatusDeliveryImpl implements DownloadStatusDelivery {
                     mCallBack.onConnected(mDownloadStatus.getLength(), mDownloadStatus.isAcceptRanges());
                     break;
                 case DownloadStatus.STATUS_PROGRESS:
-                    mCallBack.onProgress(mDownloadStatus.getFinished(), mDownloadStatus.getLength(), mDownloadStatus.getPercent());
+                    mCallBack.onProgress(mDownloadStatus.getFinished(), mDownloadStatus.getLength(), mDownloadStatus.getPercent(), mDownloadStatus.getSpeed(), mDownloadStatus.getEta());
                     break;
                 case DownloadStatus.STATUS_COMPLETED:
                     mCallBack.onCompleted();
@@ -1,26 +1,29 @@
 package multithreaddownload.core;
 
 import android.os.Process;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
 import java.net.ProtocolException;
-import java.net.URL;
-import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-import multithreaddownload.Constants.HTTP;
+import multithreaddownload.DownloadConfiguration;
 import multithreaddownload.DownloadException;
 import multithreaddownload.DownloadInfo;
+import multithreaddownload.StreamConsumer;
 import multithreaddownload.architecture.DownloadStatus;
 import multithreaddownload.architecture.DownloadTask;
 import multithreaddownload.db.ThreadInfo;
 import multithreaddownload.util.IOCloseUtils;
+import okhttp3.Response;
 
 /**
  * Created by mt.karimi on 2015/7/27.
@@ -29,15 +32,33 @@ import multithreaddownload.util.IOCloseUtils;
  * email me at mtk.irib@gmail.com
  */
 public abstract class DownloadTaskImpl implements DownloadTask {
+    private static final int BUFFER_SIZE = 64 * 1024;
     private final DownloadInfo mDownloadInfo;
-    private final ThreadInfo mThreadInfo;
+    private final ThreadInfo mFirstThreadInfo;
+    private ThreadInfo mThreadInfo;
     private final OnDownloadListener mOnDownloadListener;
+    private final ProgressTracker mProgressTracker;
+    private final AtomicLong mProgressCell;
     private String mTag;
     private volatile int mStatus;
     private volatile int mCommend = 0;
+    private long mCheckpointInterval = DownloadConfiguration.DEFAULT_CHECKPOINT_INTERVAL;
+    private long mLastCheckpoint;
+    private HttpConnector mConnector;
+    private TransferMetrics mMetrics;
+    private BandwidthLimiter mLimiter;
+    private StreamConsumer mConsumer;
+    /**
+     * the connect task's open response, used for the range that starts at mProbeOffset
+     */
+    private Response mProbe;
+    private long mProbeOffset;
 
-    public DownloadTaskImpl(DownloadInfo downloadInfo, ThreadInfo threadInfo, OnDownloadListener listener) {
+    public DownloadTaskImpl(DownloadInfo downloadInfo, ThreadInfo threadInfo, ProgressTracker progressTracker, OnDownloadListener listener) {
         this.mDownloadInfo = downloadInfo;
+        this.mProgressTracker = progressTracker;
+        this.mProgressCell = progressTracker.newCell();
+        this.mFirstThreadInfo = threadInfo;
         this.mThreadInfo = threadInfo;
         this.mOnDownloadListener = listener;
         this.mTag = getTag();
@@ -46,6 +67,45 @@ public abstract class DownloadTaskImpl implements DownloadTask {
         }
     }
 
+    /**
+     * @param checkpointInterval ms between fsync + saving the progress to the database
+     */
+    void setCheckpointInterval(long checkpointInterval) {
+        mCheckpointInterval = checkpointInterval;
+    }
+
+    void setConnector(HttpConnector connector, TransferMetrics metrics) {
+        mConnector = connector;
+        mMetrics = metrics;
+    }
+
+    void setLimiter(BandwidthLimiter limiter) {
+        mLimiter = limiter;
+    }
+
+    /**
+     * hands the body to consumer instead of writing the file, only for a task that reads it in one piece
+     */
+    void setConsumer(StreamConsumer consumer) {
+        mConsumer = consumer;
+    }
+
+    /**
+     * @param probe  a response whose body is still unread, it is closed if no range starts at offset
+     * @param offset the file position the body starts at
+     */
+    void setProbe(Response probe, long offset) {
+        mProbe = probe;
+        mProbeOffset = offset;
+    }
+
+    /**
+     * @return where the probe response starts, -1 when there is none
+     */
+    protected long getProbeOffset() {
+        return mProbe != null ? mProbeOffset : -1;
+    }
+
     @Override
     public void cancel() {
         mCommend = DownloadStatus.STATUS_CANCELED;
@@ -84,20 +144,37 @@ public abstract class DownloadTaskImpl implements DownloadTask {
     @Override
     public void run() {
         Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-        insertIntoDB(mThreadInfo);
         try {
             mStatus = DownloadStatus.STATUS_PROGRESS;
-            executeDownload();
+            ThreadInfo info = nextThreadInfo(null);
+            while (info != null) {
+                mThreadInfo = info;
+                insertIntoDB(info);
+                executeDownload();
+                info = nextThreadInfo(info);
+            }
+            closeProbe();
             synchronized (mOnDownloadListener) {
                 mStatus = DownloadStatus.STATUS_COMPLETED;
                 mOnDownloadListener.onDownloadCompleted();
             }
         } catch (DownloadException e) {
+            closeProbe();
             handleDownloadException(e);
         }
     }
 
+    private void closeProbe() {
+        if (mProbe != null) {
+            mProbe.close();
+            mProbe = null;
+        }
+    }
+
     private void handleDownloadException(DownloadException e) {
+        if (mThreadInfo != null) {
+            releaseThreadInfo(mThreadInfo);
+        }
         switch (e.getErrorCode()) {
             case DownloadStatus.STATUS_FAILED:
                 synchronized (mOnDownloadListener) {
@@ -123,22 +200,26 @@ public abstract class DownloadTaskImpl implements DownloadTask {
     }
 
     private void executeDownload() throws DownloadException {
-        final URL url;
+        Response response = null;
+        boolean probe = false;
         try {
-            url = new URL(mThreadInfo.getUri());
-        } catch (MalformedURLException e) {
-            throw new DownloadException(DownloadStatus.STATUS_FAILED, "Bad url.", e);
-        }
-        HttpURLConnection httpConnection = null;
-        try {
-            httpConnection = (HttpURLConnection) url.openConnection();
-            httpConnection.setConnectTimeout(HTTP.CONNECT_TIME_OUT);
-            httpConnection.setReadTimeout(HTTP.READ_TIME_OUT);
-            httpConnection.setRequestMethod(HTTP.GET);
-            setHttpHeader(getHttpHeaders(mThreadInfo), httpConnection);
-            final int responseCode = httpConnection.getResponseCode();
-            if (responseCode == getResponseCode()) {
-                transferData(httpConnection);
+            if (mProbe != null && mProbeOffset == mThreadInfo.getStart() + mThreadInfo.getFinished()) {
+                // the connect task already asked for these bytes, read on instead of asking again
+                response = mProbe;
+                probe = true;
+                mProbe = null;
+            } else {
+                closeProbe();
+                try {
+                    response = mConnector.execute(mThreadInfo.getUri(), getHttpHeaders(mThreadInfo), mMetrics);
+                } catch (IllegalArgumentException e) {
+                    throw new DownloadException(DownloadStatus.STATUS_FAILED, "Bad url.", e);
+                }
+            }
+            final int responseCode = response.code();
+            // the probe asked for "bytes=0-", a 200 and a 206 both carry the whole body
+            if (responseCode == getResponseCode() || probe) {
+                transferData(response, probe);
             } else {
                 throw new DownloadException(DownloadStatus.STATUS_FAILED, "UnSupported response code:" + responseCode);
             }
@@ -149,28 +230,26 @@ public abstract class DownloadTaskImpl implements DownloadTask {
             e.printStackTrace();
             throw new DownloadException(DownloadStatus.STATUS_FAILED, "IO error", e);
         } finally {
-            if (httpConnection != null) {
-                httpConnection.disconnect();
-            }
-        }
-    }
-
-    private void setHttpHeader(Map<String, String> headers, URLConnection connection) {
-        if (headers != null) {
-            for (String key : headers.keySet()) {
-                connection.setRequestProperty(key, headers.get(key));
+            if (response != null) {
+                // a fully read body gives its connection back to the pool
+                response.close();
             }
         }
     }
 
-    private void transferData(HttpURLConnection httpConnection) throws DownloadException {
+    private void transferData(Response response, boolean probe) throws DownloadException {
         InputStream inputStream = null;
         RandomAccessFile raf = null;
+        final long start = SystemClock.elapsedRealtime();
+        final long startFinished = mThreadInfo.getFinished();
         try {
-            try {
-                inputStream = httpConnection.getInputStream();
-            } catch (IOException e) {
-                throw new DownloadException(DownloadStatus.STATUS_FAILED, "http get inputStream error", e);
+            if (response.body() == null) {
+                throw new DownloadException(DownloadStatus.STATUS_FAILED, "http get inputStream error");
+            }
+            inputStream = response.body().byteStream();
+            if (mConsumer != null) {
+                consumeData(inputStream);
+                return;
             }
             final long offset = mThreadInfo.getStart() + mThreadInfo.getFinished();
             try {
@@ -179,8 +258,11 @@ public abstract class DownloadTaskImpl implements DownloadTask {
                 e.printStackTrace();
                 throw new DownloadException(DownloadStatus.STATUS_FAILED, "File error", e);
             }
-            transferData(inputStream, raf);
+            transferData(inputStream, raf.getChannel());
         } finally {
+            if (mMetrics != null) {
+                mMetrics.onTransferred(SystemClock.elapsedRealtime() - start, mThreadInfo.getFinished() - startFinished, probe);
+            }
             try {
                 IOCloseUtils.close(inputStream);
                 IOCloseUtils.close(raf);
@@ -190,23 +272,48 @@ public abstract class DownloadTaskImpl implements DownloadTask {
         }
     }
 
-    private void transferData(InputStream inputStream, RandomAccessFile raf) throws DownloadException {
-        final byte[] buffer = new byte[1024 * 8];
+    /**
+     * writes at absolute positions without synchronous writes; the data is forced to storage and the
+     * progress saved only every checkpoint interval, at the end of the range and when stopping,
+     * so the database never counts bytes that are not on disk yet
+     */
+    private void transferData(InputStream inputStream, FileChannel channel) throws DownloadException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        mLastCheckpoint = SystemClock.elapsedRealtime();
         while (true) {
-            checkPausedOrCanceled();
+            checkPausedOrCanceled(channel);
             int len = -1;
+            int allowed = 0;
             try {
                 len = inputStream.read(buffer);
                 if (len == -1) {
+                    checkpoint(channel);
                     break;
                 }
-                raf.write(buffer, 0, len);
-                mThreadInfo.setFinished(mThreadInfo.getFinished() + len);
-                synchronized (mOnDownloadListener) {
-                    mDownloadInfo.setFinished(mDownloadInfo.getFinished() + len);
-                    mOnDownloadListener.onDownloadProgress(mDownloadInfo.getFinished(), mDownloadInfo.getLength());
+                if (mLimiter != null) {
+                    mLimiter.acquire(len);
+                }
+                final long position = mThreadInfo.getStart() + mThreadInfo.getFinished();
+                allowed = reserve(mThreadInfo, len);
+                ByteBuffer data = ByteBuffer.wrap(buffer, 0, allowed);
+                while (data.hasRemaining()) {
+                    channel.write(data, position + data.position());
+                }
+                mProgressCell.addAndGet(allowed);
+                if (mProgressTracker.tryReport()) {
+                    mOnDownloadListener.onDownloadProgress(mProgressTracker.getFinished(), mProgressTracker.getLength());
+                }
+                if (allowed < len) {
+                    // the rest of this range was handed to another thread
+                    checkpoint(channel);
+                    break;
+                }
+                if (SystemClock.elapsedRealtime() - mLastCheckpoint >= mCheckpointInterval) {
+                    checkpoint(channel);
                 }
             } catch (IOException e) {
+                unreserve(mThreadInfo, allowed);
+                forceQuietly(channel);
                 updateDB(mThreadInfo);
                 e.printStackTrace();
                 throw new DownloadException(DownloadStatus.STATUS_FAILED, e);
@@ -214,17 +321,83 @@ public abstract class DownloadTaskImpl implements DownloadTask {
         }
     }
 
-    private void checkPausedOrCanceled() throws DownloadException {
+    private void consumeData(InputStream inputStream) throws DownloadException {
+        final TrackedInputStream in = new TrackedInputStream(inputStream);
+        try {
+            mConsumer.consume(in, mDownloadInfo.getLength());
+            // a zip reader stops before the central directory, the rest still counts as downloaded
+            final byte[] rest = new byte[BUFFER_SIZE];
+            while (in.read(rest, 0, rest.length) != -1) {
+                // drain
+            }
+            mConsumer.commit();
+        } catch (StoppedException e) {
+            mConsumer.abort();
+            throw e.mDownloadException;
+        } catch (IOException e) {
+            e.printStackTrace();
+            mConsumer.abort();
+            throw new DownloadException(DownloadStatus.STATUS_FAILED, "Consume error", e);
+        }
+    }
+
+    private void checkpoint(FileChannel channel) throws IOException {
+        channel.force(false);
+        updateDB(mThreadInfo);
+        mLastCheckpoint = SystemClock.elapsedRealtime();
+    }
+
+    private void forceQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void checkPausedOrCanceled(FileChannel channel) throws DownloadException {
         if (mCommend == DownloadStatus.STATUS_CANCELED) {
             // cancel
             throw new DownloadException(DownloadStatus.STATUS_CANCELED, "Download canceled!");
         } else if (mCommend == DownloadStatus.STATUS_PAUSED) {
             // pause
+            forceQuietly(channel);
             updateDB(mThreadInfo);
             throw new DownloadException(DownloadStatus.STATUS_PAUSED, "Download paused!");
         }
     }
 
+    /**
+     * @param done the range just downloaded, null before the first one
+     * @return the next range to download, null when this task is done
+     */
+    protected ThreadInfo nextThreadInfo(ThreadInfo done) throws DownloadException {
+        return done == null ? mFirstThreadInfo : null;
+    }
+
+    /**
+     * gives an unfinished range back when this task stops
+     */
+    protected void releaseThreadInfo(ThreadInfo info) {
+    }
+
+    /**
+     * counts freshly read bytes against info
+     *
+     * @return how many of len still belong to info
+     */
+    protected int reserve(ThreadInfo info, int len) {
+        info.setFinished(info.getFinished() + len);
+        return len;
+    }
+
+    protected void unreserve(ThreadInfo info, int len) {
+        info.setFinished(info.getFinished() - len);
+    }
+
     protected abstract void insertIntoDB(ThreadInfo info);
 
     protected abstract int getResponseCode();
@@ -236,4 +409,66 @@ public abstract class DownloadTaskImpl implements DownloadTask {
     protected abstract RandomAccessFile getFile(File dir, String name, long offset) throws IOException;
 
     protected abstract String getTag();
+
+    /**
+     * a pause or cancel seen while the consumer reads
+     */
+    private static class StoppedException extends IOException {
+        private final DownloadException mDownloadException;
+
+        StoppedException(DownloadException downloadException) {
+            super(downloadException.getMessage());
+            mDownloadException = downloadException;
+        }
+    }
+
+    /**
+     * does for the consumer's reads what the write loop does for the file: stop checks, bandwidth
+     * limit and progress
+     */
+    private class TrackedInputStream extends FilterInputStream {
+        TrackedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                checkPausedOrCanceled(null);
+            } catch (DownloadException e) {
+                throw new StoppedException(e);
+            }
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                if (mLimiter != null) {
+                    mLimiter.acquire(read);
+                }
+                reserve(mThreadInfo, read);
+                mProgressCell.addAndGet(read);
+                if (mProgressTracker.tryReport()) {
+                    mOnDownloadListener.onDownloadProgress(mProgressTracker.getFinished(), mProgressTracker.getLength());
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // read instead, skipped bytes are downloaded too
+            final byte[] skipped = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            final int read = read(skipped, 0, skipped.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public void close() {
+            // closed with the response
+        }
+    }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@ import multithreaddownload.architecture.DownloadTask;
 import multithreaddownload.architecture.Downloader;
 import multithreaddownload.db.DataBaseManager;
 import multithreaddownload.db.ThreadInfo;
+import multithreaddownload.util.L;
 
 /**
  * Created by mt.karimi on 2015/10/28.
@@ -33,14 +34,22 @@ public class DownloaderImpl implements Downloader, ConnectTask.OnConnectListener
     private OnDownloaderDestroyedListener mListener;
     private int mStatus;
     private DownloadInfo mDownloadInfo;
-    private ConnectTask mConnectTask;
+    private ConnectTaskImpl mConnectTask;
     private List<DownloadTask> mDownloadTasks;
-
-    public DownloaderImpl(DownloadRequest request, DownloadResponse response, Executor executor, DataBaseManager dbManager, String key, DownloadConfiguration config, OnDownloaderDestroyedListener listener) {
+    private SegmentScheduler mScheduler;
+    private ProgressTracker mProgressTracker;
+    private DownloadException mLastException;
+    private HttpConnector mConnector;
+    private BandwidthLimiter mLimiter;
+    private TransferMetrics mMetrics;
+
+    public DownloaderImpl(DownloadRequest request, DownloadResponse response, Executor executor, DataBaseManager dbManager, HttpConnector connector, BandwidthLimiter limiter, String key, DownloadConfiguration config, OnDownloaderDestroyedListener listener) {
         mRequest = request;
         mResponse = response;
         mExecutor = executor;
         mDBManager = dbManager;
+        mConnector = connector;
+        mLimiter = limiter;
         mTag = key;
         mConfig = config;
         mListener = listener;
@@ -93,6 +102,13 @@ public class DownloaderImpl implements Downloader, ConnectTask.OnConnectListener
         }
     }
 
+    /**
+     * @return connect and transfer times of the current or last run
+     */
+    public TransferMetrics getMetrics() {
+        return mMetrics;
+    }
+
     @Override
     public void onDestroy() {
         // trigger the onDestroy callback tell download manager
@@ -154,14 +170,19 @@ public class DownloaderImpl implements Downloader, ConnectTask.OnConnectListener
 
     @Override
     public void onDownloadProgress(long finished, long length) {
-        // calculate percent
-        final int percent = (int) (finished * 100 / length);
-        mResponse.onDownloadProgress(finished, length, percent);
+        // called by at most one thread per report interval
+        final int percent = length > 0 ? (int) (finished * 100 / length) : 0;
+        mDownloadInfo.setFinished(finished);
+        mResponse.onDownloadProgress(finished, length, percent, mProgressTracker.getSpeed(), mProgressTracker.getEta());
     }
 
     @Override
     public void onDownloadCompleted() {
-        if (isAllComplete()) {
+        if (mScheduler != null && !isAnyDownloading() && !mScheduler.isComplete()) {
+            // the last running thread ran out of ranges while the others stopped
+            finishUnfinished();
+        } else if (isAllComplete()) {
+            L.i(mTag, "download completed, " + mMetrics);
             deleteFromDB();
             mStatus = DownloadStatus.STATUS_COMPLETED;
             mResponse.onDownloadCompleted();
@@ -191,15 +212,43 @@ public class DownloaderImpl implements Downloader, ConnectTask.OnConnectListener
 
     @Override
     public void onDownloadFailed(DownloadException de) {
-        if (isAllFailed()) {
+        mLastException = de;
+        if (mScheduler != null && !isAnyDownloading() && mScheduler.isComplete()) {
+            // the other threads took over the failed ranges
+            deleteFromDB();
+            mStatus = DownloadStatus.STATUS_COMPLETED;
+            mResponse.onDownloadCompleted();
+            onDestroy();
+        } else if (isAllFailed()) {
             mStatus = DownloadStatus.STATUS_FAILED;
             mResponse.onDownloadFailed(de);
             onDestroy();
         }
     }
 
+    private void finishUnfinished() {
+        for (DownloadTask task : mDownloadTasks) {
+            if (task.isCanceled()) {
+                onDownloadCanceled();
+                return;
+            }
+        }
+        for (DownloadTask task : mDownloadTasks) {
+            if (task.isPaused()) {
+                onDownloadPaused();
+                return;
+            }
+        }
+        if (mLastException != null) {
+            mStatus = DownloadStatus.STATUS_FAILED;
+            mResponse.onDownloadFailed(mLastException);
+            onDestroy();
+        }
+    }
+
     private void connect() {
-        mConnectTask = new ConnectTaskImpl(mRequest.getUri(), this);
+        mMetrics = new TransferMetrics();
+        mConnectTask = new ConnectTaskImpl(mRequest.getUri(), mConnector, mMetrics, this);
         mExecutor.execute(mConnectTask);
     }
 
@@ -212,47 +261,34 @@ public class DownloaderImpl implements Downloader, ConnectTask.OnConnectListener
         }
     }
 
-    //TODO
     private void initDownloadTasks(long length, boolean acceptRanges) {
         mDownloadTasks.clear();
+        mScheduler = null;
+        mLastException = null;
         if (acceptRanges) {
-            List<ThreadInfo> threadInfos = getMultiThreadInfos(length);
-            // init finished
-            int finished = 0;
-            for (ThreadInfo threadInfo : threadInfos) {
-                finished += threadInfo.getFinished();
-            }
-            mDownloadInfo.setFinished(finished);
-            for (ThreadInfo info : threadInfos) {
-                mDownloadTasks.add(new MultiDownloadTask(mDownloadInfo, info, mDBManager, this));
+            // a stream consumer can't resume, ranges beat unzipping on the fly
+            mScheduler = new SegmentScheduler(mDBManager, mTag, mRequest.getUri(), length, mConfig.getThreadNum(),
+                    new File(mDownloadInfo.getDir(), mDownloadInfo.getName()));
+            mDownloadInfo.setFinished(mScheduler.getFinished());
+            mProgressTracker = new ProgressTracker(length, mScheduler.getFinished());
+            for (int i = 0; i < mConfig.getThreadNum(); i++) {
+                mDownloadTasks.add(new MultiDownloadTask(mDownloadInfo, mScheduler, mProgressTracker, mDBManager, this));
             }
         } else {
             ThreadInfo info = getSingleThreadInfo();
-            mDownloadTasks.add(new SingleDownloadTask(mDownloadInfo, info, this));
+            mProgressTracker = new ProgressTracker(length, 0);
+            SingleDownloadTask task = new SingleDownloadTask(mDownloadInfo, info, mProgressTracker, this);
+            // restarts from byte 0 on resume either way, so the body may as well be read as it comes
+            task.setConsumer(mRequest.getStreamConsumer());
+            mDownloadTasks.add(task);
         }
-    }
-
-    //TODO
-    private List<ThreadInfo> getMultiThreadInfos(long length) {
-        // init threadInfo from db
-        final List<ThreadInfo> threadInfos = mDBManager.getThreadInfos(mTag);
-        if (threadInfos.isEmpty()) {
-            final int threadNum = mConfig.getThreadNum();
-            for (int i = 0; i < threadNum; i++) {
-                // calculate average
-                final long average = length / threadNum;
-                final long start = average * i;
-                final long end;
-                if (i == threadNum - 1) {
-                    end = length;
-                } else {
-                    end = start + average - 1;
-                }
-                ThreadInfo threadInfo = new ThreadInfo(i, mTag, mRequest.getUri(), start, end, 0);
-                threadInfos.add(threadInfo);
-            }
+        for (DownloadTask task : mDownloadTasks) {
+            ((DownloadTaskImpl) task).setCheckpointInterval(mConfig.getCheckpointInterval());
+            ((DownloadTaskImpl) task).setConnector(mConnector, mMetrics);
+            ((DownloadTaskImpl) task).setLimiter(mLimiter);
         }
-        return threadInfos;
+        // the first task reads on from the connect response instead of requesting byte 0 again
+        ((DownloadTaskImpl) mDownloadTasks.get(0)).setProbe(mConnectTask.takeProbe(), 0);
     }
 
     //TODO
@@ -260,7 +296,19 @@ public class DownloaderImpl implements Downloader, ConnectTask.OnConnectListener
         return new ThreadInfo(0, mTag, mRequest.getUri(), 0);
     }
 
+    private boolean isAnyDownloading() {
+        for (DownloadTask task : mDownloadTasks) {
+            if (task.isDownloading()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean isAllComplete() {
+        if (mScheduler != null) {
+            return !isAnyDownloading() && mScheduler.isComplete();
+        }
         boolean allFinished = true;
         for (DownloadTask task : mDownloadTasks) {
             if (!task.isComplete()) {
@@ -0,0 +1,89 @@
+package multithreaddownload.core;
+
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import multithreaddownload.Constants.HTTP;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * One OkHttp client for every download, its pool keeps connections alive per host so the ranges of a
+ * download (and the next download from the same server) skip TCP and TLS setup.
+ */
+public class HttpConnector {
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private final OkHttpClient mClient;
+
+    /**
+     * @param maxIdleConnections connections kept open while no thread uses them
+     */
+    public HttpConnector(int maxIdleConnections) {
+        mClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(HTTP.CONNECT_TIME_OUT, TimeUnit.MILLISECONDS)
+                .readTimeout(HTTP.READ_TIME_OUT, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(new EventListener.Factory() {
+                    @Override
+                    public EventListener create(Call call) {
+                        return new MetricsListener(call.request().tag(TransferMetrics.class));
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * sends a GET and waits for the headers, the caller must close the response
+     *
+     * @throws IllegalArgumentException when uri is not a http(s) url
+     */
+    Response execute(String uri, Map<String, String> headers, TransferMetrics metrics) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(uri)
+                // OkHttp would ask for gzip and unzip on the fly, then the bytes no longer match the length
+                .header("Accept-Encoding", "identity")
+                .tag(TransferMetrics.class, metrics);
+        if (headers != null) {
+            for (String key : headers.keySet()) {
+                builder.header(key, headers.get(key));
+            }
+        }
+        final long start = SystemClock.elapsedRealtime();
+        Response response = mClient.newCall(builder.build()).execute();
+        if (metrics != null) {
+            metrics.onResponse(SystemClock.elapsedRealtime() - start);
+        }
+        return response;
+    }
+
+    /**
+     * closes the idle connections, the pool opens new ones on demand
+     */
+    public void evictAll() {
+        mClient.connectionPool().evictAll();
+    }
+
+    private static class MetricsListener extends EventListener {
+        private final TransferMetrics mMetrics;
+
+        MetricsListener(TransferMetrics metrics) {
+            mMetrics = metrics;
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            if (mMetrics != null) {
+                mMetrics.onNewConnection();
+            }
+        }
+    }
+}
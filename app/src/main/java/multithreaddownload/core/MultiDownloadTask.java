@@ -13,19 +13,57 @@ import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.Map;
 
+import multithreaddownload.DownloadException;
 import multithreaddownload.DownloadInfo;
+import multithreaddownload.architecture.DownloadStatus;
 import multithreaddownload.db.DataBaseManager;
 import multithreaddownload.db.ThreadInfo;
 
 /**
- * download thread
+ * download thread, takes ranges from the {@link SegmentScheduler} until none is left
  */
 public class MultiDownloadTask extends DownloadTaskImpl {
     private DataBaseManager mDBManager;
+    private SegmentScheduler mScheduler;
 
-    public MultiDownloadTask(DownloadInfo downloadInfo, ThreadInfo threadInfo, DataBaseManager dbManager, OnDownloadListener listener) {
-        super(downloadInfo, threadInfo, listener);
+    public MultiDownloadTask(DownloadInfo downloadInfo, SegmentScheduler scheduler, ProgressTracker progressTracker, DataBaseManager dbManager, OnDownloadListener listener) {
+        super(downloadInfo, null, progressTracker, listener);
         this.mDBManager = dbManager;
+        this.mScheduler = scheduler;
+    }
+
+    @Override
+    protected ThreadInfo nextThreadInfo(ThreadInfo done) throws DownloadException {
+        if (done == null && getProbeOffset() >= 0) {
+            // start where the connect task's response is, its bytes are already on the way
+            ThreadInfo info = mScheduler.claimAt(getProbeOffset());
+            if (info != null) {
+                return info;
+            }
+        }
+        if (done != null) {
+            updateDB(done);
+            if (mScheduler.remaining(done) > 0) {
+                // the server closed the range early, leave it to another thread
+                throw new DownloadException(DownloadStatus.STATUS_FAILED, "Range ended early");
+            }
+        }
+        return mScheduler.next(done);
+    }
+
+    @Override
+    protected void releaseThreadInfo(ThreadInfo info) {
+        mScheduler.release(info);
+    }
+
+    @Override
+    protected int reserve(ThreadInfo info, int len) {
+        return mScheduler.reserve(info, len);
+    }
+
+    @Override
+    protected void unreserve(ThreadInfo info, int len) {
+        mScheduler.unreserve(info, len);
     }
 
     @Override
@@ -57,7 +95,8 @@ public class MultiDownloadTask extends DownloadTaskImpl {
     @Override
     protected RandomAccessFile getFile(File dir, String name, long offset) throws IOException {
         File file = new File(dir, name);
-        RandomAccessFile raf = new RandomAccessFile(file, "rwd");
+        // writes are positional and forced at checkpoints, no "rwd" sync on every write
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
         raf.seek(offset);
         return raf;
     }
@@ -0,0 +1,91 @@
+package multithreaddownload.core;
+
+import android.os.SystemClock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts downloaded bytes of one download without a shared lock.
+ * <p>
+ * Every thread adds to a counter of its own ({@link #newCell()}), the total is summed when needed.
+ * {@link #tryReport()} lets one caller through per {@link #REPORT_INTERVAL} ms, that caller also
+ * refreshes the smoothed speed and the remaining time.
+ */
+public class ProgressTracker {
+    public static final long REPORT_INTERVAL = 250;
+    private static final float SMOOTHING = 0.3f;
+    private final long mLength;
+    private final long mBase;
+    private final List<AtomicLong> mCells = new CopyOnWriteArrayList<>();
+    private final AtomicLong mNextReport = new AtomicLong();
+    private long mLastTime;
+    private long mLastFinished;
+    private volatile long mSpeed = -1;
+    private volatile long mEta = -1;
+
+    /**
+     * @param base bytes already on disk when the download starts or resumes
+     */
+    ProgressTracker(long length, long base) {
+        mLength = length;
+        mBase = base;
+    }
+
+    AtomicLong newCell() {
+        AtomicLong cell = new AtomicLong();
+        mCells.add(cell);
+        return cell;
+    }
+
+    public long getLength() {
+        return mLength;
+    }
+
+    public long getFinished() {
+        long finished = mBase;
+        for (AtomicLong cell : mCells) {
+            finished += cell.get();
+        }
+        return finished;
+    }
+
+    /**
+     * @return bytes per second, -1 until measured
+     */
+    public long getSpeed() {
+        return mSpeed;
+    }
+
+    /**
+     * @return milliseconds left at the current speed, -1 when unknown
+     */
+    public long getEta() {
+        return mEta;
+    }
+
+    /**
+     * @return true for at most one caller per interval, that caller should send the progress
+     */
+    boolean tryReport() {
+        long now = SystemClock.elapsedRealtime();
+        long next = mNextReport.get();
+        if (now < next || !mNextReport.compareAndSet(next, now + REPORT_INTERVAL)) {
+            return false;
+        }
+        updateSpeed(now);
+        return true;
+    }
+
+    private synchronized void updateSpeed(long now) {
+        long finished = getFinished();
+        if (mLastTime != 0 && now > mLastTime) {
+            long instant = (finished - mLastFinished) * 1000 / (now - mLastTime);
+            mSpeed = mSpeed < 0 ? instant : (long) (mSpeed + SMOOTHING * (instant - mSpeed));
+        }
+        mLastTime = now;
+        mLastFinished = finished;
+        mEta = mSpeed > 0 && mLength > 0 ? Math.max(0, mLength - finished) * 1000 / mSpeed : -1;
+    }
+}
@@ -0,0 +1,171 @@
+package multithreaddownload.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import multithreaddownload.db.ThreadInfo;
+import multithreaddownload.db.ThreadInfoStore;
+
+/**
+ * Hands out byte ranges of one download to its threads on demand.
+ * <p>
+ * The file is cut into a few chunks per thread instead of one fixed range each. An idle thread takes
+ * the next untouched chunk; when there is none it steals the back half of the largest range still being
+ * downloaded, so a slow connection only keeps the part it already has in flight.
+ * Every chunk is a {@link ThreadInfo} row, splits are written to the database right away so a paused
+ * download resumes with the same layout. On resume the saved progress is checked against the file,
+ * a range never counts bytes past its end on disk.
+ */
+public class SegmentScheduler {
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long MIN_CHUNK = 256 * 1024;
+    /**
+     * a range is only split when both halves get at least this much
+     */
+    private static final long MIN_STEAL = 64 * 1024;
+    private final ThreadInfoStore mDBManager;
+    private final List<ThreadInfo> mChunks;
+    private final Map<ThreadInfo, Boolean> mClaimed = new IdentityHashMap<>();
+    private final String mTag;
+    private final String mUri;
+    private int mNextId;
+
+    SegmentScheduler(ThreadInfoStore dbManager, String tag, String uri, long length, int threadNum, File file) {
+        mDBManager = dbManager;
+        mTag = tag;
+        mUri = uri;
+        mChunks = new ArrayList<>(dbManager.getThreadInfos(tag));
+        if (mChunks.isEmpty()) {
+            long chunkSize = threadNum <= 1 ? length : Math.max(MIN_CHUNK, length / ((long) threadNum * CHUNKS_PER_THREAD));
+            for (long start = 0; start < length; start += chunkSize) {
+                ThreadInfo info = new ThreadInfo(mNextId++, tag, uri, start, Math.min(length, start + chunkSize) - 1, 0);
+                dbManager.insert(info);
+                mChunks.add(info);
+            }
+        } else {
+            for (ThreadInfo info : mChunks) {
+                mNextId = Math.max(mNextId, info.getId() + 1);
+                if (info.getEnd() >= length) {
+                    // the old fixed split ended the last range one byte past the file
+                    info.setEnd(length - 1);
+                }
+                reconcile(info, file.exists() ? file.length() : 0);
+            }
+        }
+    }
+
+    /**
+     * the file may be shorter than the progress says when it was cleared or truncated
+     */
+    private void reconcile(ThreadInfo info, long fileLength) {
+        long onDisk = Math.max(0, fileLength - info.getStart());
+        if (info.getFinished() > onDisk) {
+            info.setFinished(onDisk);
+            mDBManager.update(mTag, info.getId(), onDisk);
+        }
+    }
+
+    long getFinished() {
+        long finished = 0;
+        synchronized (this) {
+            for (ThreadInfo info : mChunks) {
+                finished += info.getFinished();
+            }
+        }
+        return finished;
+    }
+
+    /**
+     * @param done the chunk the caller just finished, null on the first call
+     * @return the next chunk for the caller, null when nothing is left
+     */
+    synchronized ThreadInfo next(ThreadInfo done) {
+        if (done != null) {
+            mClaimed.remove(done);
+        }
+        for (ThreadInfo info : mChunks) {
+            if (remaining(info) > 0 && !mClaimed.containsKey(info)) {
+                mClaimed.put(info, Boolean.TRUE);
+                return info;
+            }
+        }
+        return steal();
+    }
+
+    /**
+     * claims the free chunk that continues at position
+     *
+     * @return null when no free chunk goes on from there
+     */
+    synchronized ThreadInfo claimAt(long position) {
+        for (ThreadInfo info : mChunks) {
+            if (info.getStart() + info.getFinished() == position && remaining(info) > 0 && !mClaimed.containsKey(info)) {
+                mClaimed.put(info, Boolean.TRUE);
+                return info;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * gives a chunk back unfinished, another thread can pick it up
+     */
+    synchronized void release(ThreadInfo info) {
+        mClaimed.remove(info);
+    }
+
+    synchronized boolean isComplete() {
+        for (ThreadInfo info : mChunks) {
+            if (remaining(info) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * counts len freshly read bytes against info before they are written
+     *
+     * @return how many of them still belong to info, the rest was stolen by another thread
+     */
+    synchronized int reserve(ThreadInfo info, int len) {
+        int allowed = (int) Math.max(0, Math.min(len, remaining(info)));
+        info.setFinished(info.getFinished() + allowed);
+        return allowed;
+    }
+
+    /**
+     * takes back reserved bytes that could not be written
+     */
+    synchronized void unreserve(ThreadInfo info, int len) {
+        info.setFinished(info.getFinished() - len);
+    }
+
+    synchronized long remaining(ThreadInfo info) {
+        return info.getEnd() - (info.getStart() + info.getFinished()) + 1;
+    }
+
+    private ThreadInfo steal() {
+        ThreadInfo victim = null;
+        for (ThreadInfo info : mChunks) {
+            if (mClaimed.containsKey(info) && (victim == null || remaining(info) > remaining(victim))) {
+                victim = info;
+            }
+        }
+        if (victim == null || remaining(victim) < MIN_STEAL * 2) {
+            return null;
+        }
+        long position = victim.getStart() + victim.getFinished();
+        long middle = position + remaining(victim) / 2;
+        ThreadInfo stolen = new ThreadInfo(mNextId++, mTag, mUri, middle, victim.getEnd(), 0);
+        victim.setEnd(middle - 1);
+        mDBManager.updateEnd(mTag, victim.getId(), victim.getEnd());
+        mDBManager.insert(stolen);
+        mChunks.add(stolen);
+        mClaimed.put(stolen, Boolean.TRUE);
+        return stolen;
+    }
+}
@@ -16,8 +16,8 @@ import multithreaddownload.db.ThreadInfo;
  * email me at mtk.irib@gmail.com
  */
 public class SingleDownloadTask extends DownloadTaskImpl {
-    public SingleDownloadTask(DownloadInfo mDownloadInfo, ThreadInfo mThreadInfo, OnDownloadListener mOnDownloadListener) {
-        super(mDownloadInfo, mThreadInfo, mOnDownloadListener);
+    public SingleDownloadTask(DownloadInfo mDownloadInfo, ThreadInfo mThreadInfo, ProgressTracker mProgressTracker, OnDownloadListener mOnDownloadListener) {
+        super(mDownloadInfo, mThreadInfo, mProgressTracker, mOnDownloadListener);
     }
 
     @Override
@@ -44,8 +44,9 @@ public class SingleDownloadTask extends DownloadTaskImpl {
     @Override
     protected RandomAccessFile getFile(File dir, String name, long offset) throws IOException {
         File file = new File(dir, name);
-        RandomAccessFile raf = new RandomAccessFile(file, "rwd");
-        raf.seek(0);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        // always starts over, drop what an earlier attempt left behind
+        raf.setLength(0);
         return raf;
     }
 
@@ -0,0 +1,70 @@
+package multithreaddownload.core;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connect time against transfer time of one download, summed over all its threads.
+ * <p>
+ * Connect time runs from sending a request until its response headers arrive, so it holds DNS, TCP and
+ * TLS setup when no pooled connection was free. {@link #getConnections()} counts the sockets actually
+ * opened, the other requests went over a kept-alive one.
+ */
+public class TransferMetrics {
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mConnections = new AtomicLong();
+    private final AtomicLong mConnectMillis = new AtomicLong();
+    private final AtomicLong mTransferMillis = new AtomicLong();
+    private final AtomicLong mBytes = new AtomicLong();
+    private final AtomicLong mProbeBytes = new AtomicLong();
+
+    void onResponse(long millis) {
+        mRequests.incrementAndGet();
+        mConnectMillis.addAndGet(millis);
+    }
+
+    void onNewConnection() {
+        mConnections.incrementAndGet();
+    }
+
+    void onTransferred(long millis, long bytes, boolean probe) {
+        mTransferMillis.addAndGet(millis);
+        mBytes.addAndGet(bytes);
+        if (probe) {
+            mProbeBytes.addAndGet(bytes);
+        }
+    }
+
+    public long getRequests() {
+        return mRequests.get();
+    }
+
+    public long getConnections() {
+        return mConnections.get();
+    }
+
+    public long getConnectMillis() {
+        return mConnectMillis.get();
+    }
+
+    public long getTransferMillis() {
+        return mTransferMillis.get();
+    }
+
+    public long getBytes() {
+        return mBytes.get();
+    }
+
+    /**
+     * @return bytes read from the connection that was opened to find the length
+     */
+    public long getProbeBytes() {
+        return mProbeBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "requests=%d connections=%d connect=%dms transfer=%dms bytes=%d probeBytes=%d",
+                getRequests(), getConnections(), getConnectMillis(), getTransferMillis(), getBytes(), getProbeBytes());
+    }
+}
@@ -10,7 +10,7 @@ import java.util.List;
  * let me know and we can be friend :)
  * email me at mtk.irib@gmail.com
  */
-public class DataBaseManager {
+public class DataBaseManager implements ThreadInfoStore {
     private static DataBaseManager sDataBaseManager;
     private final ThreadInfoDao mThreadInfoDao;
 
@@ -25,6 +25,7 @@ public class DataBaseManager {
         return sDataBaseManager;
     }
 
+    @Override
     public synchronized void insert(ThreadInfo threadInfo) {
         mThreadInfoDao.insert(threadInfo);
     }
@@ -33,10 +34,17 @@ public class DataBaseManager {
         mThreadInfoDao.delete(tag);
     }
 
+    @Override
     public synchronized void update(String tag, int threadId, long finished) {
         mThreadInfoDao.update(tag, threadId, finished);
     }
 
+    @Override
+    public synchronized void updateEnd(String tag, int threadId, long end) {
+        mThreadInfoDao.updateEnd(tag, threadId, end);
+    }
+
+    @Override
     public List<ThreadInfo> getThreadInfos(String tag) {
         return mThreadInfoDao.getThreadInfos(tag);
     }
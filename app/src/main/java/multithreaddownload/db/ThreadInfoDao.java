@@ -53,6 +53,15 @@ public class ThreadInfoDao extends AbstractDao<ThreadInfo> {
                 new Object[]{finished, tag, threadId});
     }
 
+    public void updateEnd(String tag, int threadId, long end) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.execSQL("update "
+                        + TABLE_NAME
+                        + " set end = ?"
+                        + " where tag = ? and id = ? ",
+                new Object[]{end, tag, threadId});
+    }
+
     public List<ThreadInfo> getThreadInfos(String tag) {
         List<ThreadInfo> list = new ArrayList<>();
         SQLiteDatabase db = getReadableDatabase();
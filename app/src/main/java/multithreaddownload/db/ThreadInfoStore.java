@@ -0,0 +1,16 @@
+package multithreaddownload.db;
+
+import java.util.List;
+
+/**
+ * Where the byte ranges of downloads are saved, {@link DataBaseManager} keeps them in the database.
+ */
+public interface ThreadInfoStore {
+    void insert(ThreadInfo threadInfo);
+
+    void update(String tag, int threadId, long finished);
+
+    void updateEnd(String tag, int threadId, long end);
+
+    List<ThreadInfo> getThreadInfos(String tag);
+}
@@ -67,6 +67,7 @@ LOCAL_SRC_FILES := \
     src/utils/utils.c \
 
 LOCAL_SRC_FILES += swig/libwebp_java_wrap.c
+LOCAL_SRC_FILES += webp_bitmap_jni.c
 
 LOCAL_CFLAGS := $(WEBP_CFLAGS)
 LOCAL_C_INCLUDES += $(LOCAL_PATH)/src
@@ -83,6 +84,7 @@ ifeq ($(TARGET_ARCH_ABI),armeabi-v7a)
   LOCAL_SRC_FILES += src/dsp/enc_neon.c.neon
 endif
 LOCAL_STATIC_LIBRARIES := cpufeatures
+LOCAL_LDLIBS := -ljnigraphics
 
 LOCAL_MODULE := webp
 
@@ -0,0 +1,78 @@
+// Encodes an android.graphics.Bitmap from its locked pixels without a Java copy
+// or channel swizzle. Bitmap pixels are premultiplied and libwebp expects straight
+// alpha, so they are unpremultiplied row by row into a native scratch buffer.
+
+#include <jni.h>
+#include <stdlib.h>
+#include <android/bitmap.h>
+
+#include "webp/encode.h"
+
+static void UnpremultiplyRow(const uint8_t* src, uint8_t* dst, uint32_t width) {
+  uint32_t x;
+  for (x = 0; x < width; ++x, src += 4, dst += 4) {
+    const uint32_t a = src[3];
+    if (a == 255) {
+      dst[0] = src[0];
+      dst[1] = src[1];
+      dst[2] = src[2];
+    } else if (a == 0) {
+      dst[0] = dst[1] = dst[2] = 0;
+    } else {
+      int i;
+      for (i = 0; i < 3; ++i) {
+        const uint32_t v = (src[i] * 255 + a / 2) / a;
+        dst[i] = (uint8_t)(v > 255 ? 255 : v);
+      }
+    }
+    dst[3] = (uint8_t)a;
+  }
+}
+
+JNIEXPORT jbyteArray JNICALL
+Java_fragments_imageHelper_webPHelper_nativeEncodeBitmap(JNIEnv* env, jclass clazz,
+                                                         jobject bitmap, jfloat quality,
+                                                         jboolean lossless) {
+  AndroidBitmapInfo info;
+  void* pixels = NULL;
+  uint8_t* straight = NULL;
+  uint8_t* output = NULL;
+  size_t size = 0;
+  uint32_t y;
+  jbyteArray result = NULL;
+  (void)clazz;
+
+  if (AndroidBitmap_getInfo(env, bitmap, &info) != ANDROID_BITMAP_RESULT_SUCCESS ||
+      info.format != ANDROID_BITMAP_FORMAT_RGBA_8888) {
+    return NULL;
+  }
+  straight = (uint8_t*)malloc((size_t)info.width * 4 * info.height);
+  if (straight == NULL) {
+    return NULL;
+  }
+  if (AndroidBitmap_lockPixels(env, bitmap, &pixels) != ANDROID_BITMAP_RESULT_SUCCESS) {
+    free(straight);
+    return NULL;
+  }
+  // RGBA_8888 is laid out R, G, B, A in memory, which is what WebPEncode*RGBA reads.
+  for (y = 0; y < info.height; ++y) {
+    UnpremultiplyRow((const uint8_t*)pixels + (size_t)y * info.stride,
+                     straight + (size_t)y * info.width * 4, info.width);
+  }
+  AndroidBitmap_unlockPixels(env, bitmap);
+  if (lossless) {
+    size = WebPEncodeLosslessRGBA(straight, info.width, info.height, info.width * 4, &output);
+  } else {
+    size = WebPEncodeRGBA(straight, info.width, info.height, info.width * 4, quality, &output);
+  }
+  free(straight);
+
+  if (size > 0) {
+    result = (*env)->NewByteArray(env, (jsize)size);
+    if (result != NULL) {
+      (*env)->SetByteArrayRegion(env, result, 0, (jsize)size, (const jbyte*)output);
+    }
+  }
+  free(output);
+  return result;
+}
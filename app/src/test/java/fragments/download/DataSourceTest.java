@@ -0,0 +1,194 @@
+package fragments.download;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import fragments.download.model.Download;
+import fragments.lisetener.RespondListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DataSourceTest {
+    private static final String CATALOG_V1 = catalog(1);
+    private static final String CATALOG_V2 = catalog(2);
+    private static final long TIMEOUT_SECONDS = 10;
+    /**
+     * how long a delivery that must not come is waited for
+     */
+    private static final long QUIET_MILLIS = 1000;
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+    private MockWebServer mServer;
+    private ExecutorService mMainThread;
+    private File mModelFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mMainThread = Executors.newSingleThreadExecutor();
+        mModelFile = new File(mFolder.getRoot(), "catalog.json");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+        mMainThread.shutdownNow();
+    }
+
+    @Test
+    public void deliversOnceWhileUnchangedAndAgainWhenChanged() throws Exception {
+        DataSource dataSource = dataSource(mServer.url("/").toString());
+        RecordingListener listener = new RecordingListener();
+
+        mServer.enqueue(new MockResponse().setBody(CATALOG_V1).setHeader("ETag", "\"v1\""));
+        dataSource.getAllFiles(listener);
+        Download first = listener.nextCatalog();
+        assertEquals(1, version(first));
+        assertNull(mServer.takeRequest().getHeader("If-None-Match"));
+        listener.assertQuiet();
+
+        // 304: the catalog in memory is delivered and nothing else
+        mServer.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+        dataSource.getAllFiles(listener);
+        assertSame(first, listener.nextCatalog());
+        RecordedRequest revalidation = mServer.takeRequest(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals("\"v1\"", revalidation.getHeader("If-None-Match"));
+        listener.assertQuiet();
+
+        // changed body: the catalog in memory, then the new one as a second onSuccess
+        mServer.enqueue(new MockResponse().setBody(CATALOG_V2).setHeader("ETag", "\"v2\""));
+        dataSource.getAllFiles(listener);
+        assertSame(first, listener.nextCatalog());
+        assertEquals(2, version(listener.nextCatalog()));
+        listener.assertQuiet();
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void sameBodyAgainIsNotDelivered() throws Exception {
+        DataSource dataSource = dataSource(mServer.url("/").toString());
+        RecordingListener listener = new RecordingListener();
+        mServer.enqueue(new MockResponse().setBody(CATALOG_V1));
+        dataSource.getAllFiles(listener);
+        Download first = listener.nextCatalog();
+
+        // no validators to revalidate with, the server sends it all again
+        mServer.enqueue(new MockResponse().setBody(CATALOG_V1));
+        dataSource.getAllFiles(listener);
+        assertSame(first, listener.nextCatalog());
+        mServer.takeRequest();
+        mServer.takeRequest(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        listener.assertQuiet();
+    }
+
+    @Test
+    public void coldStartOfflineServesTheSavedCatalog() throws Exception {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(mModelFile), StandardCharsets.UTF_8);
+        writer.write(CATALOG_V1);
+        writer.close();
+        String url = mServer.url("/").toString();
+        mServer.shutdown();
+
+        RecordingListener listener = new RecordingListener();
+        dataSource(url).getAllFiles(listener);
+        assertEquals(1, version(listener.nextCatalog()));
+        // the failed refresh is not reported, there is a catalog on screen
+        listener.assertQuiet();
+    }
+
+    @Test
+    public void firstDeliveryIsSaved() throws Exception {
+        mServer.enqueue(new MockResponse().setBody(CATALOG_V2));
+        RecordingListener listener = new RecordingListener();
+        dataSource(mServer.url("/").toString()).getAllFiles(listener);
+        listener.nextCatalog();
+        assertTrue(mModelFile.exists());
+        assertEquals(2, version(new Gson().fromJson(new String(Files.readAllBytes(mModelFile.toPath()),
+                StandardCharsets.UTF_8), Download.class)));
+    }
+
+    @Test
+    public void offlineWithNothingSavedFails() throws Exception {
+        String url = mServer.url("/").toString();
+        mServer.shutdown();
+        RecordingListener listener = new RecordingListener();
+        dataSource(url).getAllFiles(listener);
+        assertTrue(listener.next() instanceof Throwable);
+    }
+
+    private DataSource dataSource(String baseUrl) {
+        return new DataSource(baseUrl, new File(mFolder.getRoot(), "http"), mModelFile, mMainThread);
+    }
+
+    private static int version(Download catalog) {
+        return catalog.getDlfile().get(0).getPacks().get(0).getVersion();
+    }
+
+    private static String catalog(int version) {
+        return "{\"dlfile\":[{\"title\":\"Fonts\",\"type\":\"font\",\"cover\":\"fonts.png\",\"packs\":["
+                + "{\"id\":\"f1\",\"type\":\"font\",\"title\":\"Vazir\",\"url\":\"fonts/vazir.zip\",\"version\":" + version + "},"
+                + "{\"id\":\"f2\",\"type\":\"font\",\"title\":\"Sahel\",\"url\":\"fonts/sahel.zip\",\"version\":1}]}]}";
+    }
+
+    /**
+     * queues what the data source delivers, a catalog or the failure
+     */
+    private class RecordingListener implements RespondListener {
+        private final LinkedBlockingQueue<Object> mDeliveries = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onSuccess(Response<Download> response) {
+            mDeliveries.add(response.isSuccessful() ? response.body() : response);
+        }
+
+        @Override
+        public void onFail(Throwable t) {
+            mDeliveries.add(t);
+        }
+
+        Object next() throws InterruptedException {
+            Object delivery = mDeliveries.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (delivery == null) {
+                throw new AssertionError("nothing delivered");
+            }
+            return delivery;
+        }
+
+        Download nextCatalog() throws InterruptedException {
+            Object delivery = next();
+            if (!(delivery instanceof Download)) {
+                throw new AssertionError("expected a catalog, got " + delivery);
+            }
+            return (Download) delivery;
+        }
+
+        void assertQuiet() throws InterruptedException {
+            assertNull(mDeliveries.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package fragments.tool;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GZIPCompressionTest {
+    /**
+     * Persian text and an emoji from outside the BMP, a surrogate pair
+     */
+    private static final String PERSIAN = "\u0633\u0644\u0627\u0645 \u062f\u0646\u06cc\u0627\u060c \u0631\u0648\u0646\u0648\u06cc\u0633 \u06f1\u06f2\u06f3 \ud83d\ude00";
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void keepsNewlines() throws IOException {
+        String text = "first\nsecond\r\n\nthird\r\r\n\n";
+        assertEquals(text, GZIPCompression.decompress(GZIPCompression.compress(text)));
+    }
+
+    @Test
+    public void keepsUtf8() throws IOException {
+        assertEquals(PERSIAN, GZIPCompression.decompress(GZIPCompression.compress(PERSIAN)));
+    }
+
+    @Test
+    public void writesUtf8Gzip() throws IOException {
+        // other tools read the files too, so the bytes must be plain gzip of UTF-8
+        byte[] compressed = GZIPCompression.compress(PERSIAN);
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPCompression.copy(in, out);
+        in.close();
+        assertArrayEquals(PERSIAN.getBytes(GZIPCompression.UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void readsPlainText() throws IOException {
+        String text = "{\"plain\": \"" + PERSIAN + "\"}\n";
+        assertEquals(text, GZIPCompression.decompress(text.getBytes(GZIPCompression.UTF_8)));
+    }
+
+    @Test
+    public void readsInputShorterThanTheMagic() throws IOException {
+        assertEquals("a", GZIPCompression.decompress(new byte[]{'a'}));
+        assertEquals("", GZIPCompression.decompress(new byte[0]));
+        assertEquals("", GZIPCompression.decompress(null));
+    }
+
+    @Test
+    public void compressesNothingToNull() throws IOException {
+        assertNull(GZIPCompression.compress(""));
+        assertNull(GZIPCompression.compress(null));
+    }
+
+    @Test
+    public void fastLevelRoundTrips() throws IOException {
+        String text = text(64 * 1024);
+        assertEquals(text, GZIPCompression.decompress(compress(text, GZIPCompression.LEVEL_FAST)));
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        for (int size : new int[]{1, 10, 50}) {
+            String text = text(size * MB);
+            long start = System.nanoTime();
+            byte[] compressed = compress(text, GZIPCompression.LEVEL_DEFAULT);
+            long compress = System.nanoTime() - start;
+            start = System.nanoTime();
+            byte[] fast = compress(text, GZIPCompression.LEVEL_FAST);
+            long compressFast = System.nanoTime() - start;
+            start = System.nanoTime();
+            String decompressed = GZIPCompression.decompress(compressed);
+            long decompress = System.nanoTime() - start;
+            assertEquals(text, decompressed);
+            assertEquals(text, GZIPCompression.decompress(fast));
+            System.out.printf("%2d MB: default %4d ms to %d bytes, fast %4d ms to %d bytes, decompress %4d ms%n",
+                    size, compress / 1000000, compressed.length, compressFast / 1000000, fast.length, decompress / 1000000);
+        }
+    }
+
+    private static byte[] compress(String text, int level) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() / 4);
+        Writer writer = GZIPCompression.newWriter(out, level);
+        writer.write(text);
+        writer.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * project-like JSON lines, at least chars long
+     */
+    private static String text(int chars) {
+        StringBuilder builder = new StringBuilder(chars + 128);
+        for (int i = 0; builder.length() < chars; i++) {
+            builder.append("{\"TextID\":").append(i).append(",\"Text\":\"").append(PERSIAN).append(' ').append(i * 31 % 997)
+                    .append("\",\"TextSize\":").append(12 + i % 40).append(",\"TextColor\":").append(0xFF000000 | (i * 7919))
+                    .append("}\n");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,207 @@
+package multithreaddownload;
+
+import org.junit.Test;
+
+import multithreaddownload.architecture.Downloader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadQueueTest {
+    private static final String HOST_A = "http://a.example.com/packs/";
+    private static final String HOST_B = "http://b.example.com/packs/";
+
+    @Test
+    public void startsByPriorityThenByAge() {
+        TestQueue queue = new TestQueue(1, 1);
+        queue.add("normal", request(HOST_A + "1", DownloadRequest.PRIORITY_NORMAL), null);
+        queue.add("prefetch", request(HOST_A + "2", DownloadRequest.PRIORITY_PREFETCH), null);
+        queue.add("visible", request(HOST_A + "3", DownloadRequest.PRIORITY_VISIBLE), null);
+        queue.add("normal2", request(HOST_A + "4", DownloadRequest.PRIORITY_NORMAL), null);
+        assertEquals("visible", drain(queue));
+        assertEquals("normal", drain(queue));
+        assertEquals("normal2", drain(queue));
+        assertEquals("prefetch", drain(queue));
+        assertNull(queue.pollStartable());
+    }
+
+    @Test
+    public void waitingPrefetchAgesPastNewerDownloads() {
+        TestQueue queue = new TestQueue(1, 1);
+        queue.add("prefetch", request(HOST_A + "1", DownloadRequest.PRIORITY_PREFETCH), null);
+        queue.mNow += DownloadQueue.AGING_INTERVAL;
+        queue.add("normal", request(HOST_A + "2", DownloadRequest.PRIORITY_NORMAL), null);
+        // same priority by now, the older one goes first
+        assertEquals("prefetch", drain(queue));
+        assertEquals("normal", drain(queue));
+    }
+
+    @Test
+    public void agingStopsBelowVisible() {
+        TestQueue queue = new TestQueue(1, 1);
+        queue.add("prefetch", request(HOST_A + "1", DownloadRequest.PRIORITY_PREFETCH), null);
+        queue.mNow += 10 * DownloadQueue.AGING_INTERVAL;
+        queue.add("visible", request(HOST_A + "2", DownloadRequest.PRIORITY_VISIBLE), null);
+        assertEquals("visible", drain(queue));
+    }
+
+    @Test
+    public void keepsToTheRunningLimit() {
+        TestQueue queue = new TestQueue(2, 2);
+        queue.add("1", request(HOST_A + "1", DownloadRequest.PRIORITY_NORMAL), null);
+        queue.add("2", request(HOST_B + "2", DownloadRequest.PRIORITY_NORMAL), null);
+        queue.add("3", request(HOST_B + "3", DownloadRequest.PRIORITY_NORMAL), null);
+        assertNotNull(queue.pollStartable());
+        assertNotNull(queue.pollStartable());
+        assertNull(queue.pollStartable());
+        assertNotNull(queue.getWaiting("3"));
+    }
+
+    @Test
+    public void keepsToTheHostLimit() {
+        TestQueue queue = new TestQueue(3, 1);
+        queue.add("a1", request(HOST_A + "1", DownloadRequest.PRIORITY_VISIBLE), null);
+        queue.add("a2", request(HOST_A + "2", DownloadRequest.PRIORITY_VISIBLE), null);
+        queue.add("b1", request(HOST_B + "1", DownloadRequest.PRIORITY_PREFETCH), null);
+        assertEquals("a1", queue.pollStartable().mKey);
+        // a2 is better but its host is busy, b1 takes the free slot
+        assertEquals("b1", queue.pollStartable().mKey);
+        assertNull(queue.pollStartable());
+        queue.removeRunning("a1");
+        assertEquals("a2", queue.pollStartable().mKey);
+    }
+
+    @Test
+    public void preemptsTheLowestNewestRunning() {
+        TestQueue queue = new TestQueue(2, 2);
+        queue.add("prefetch1", request(HOST_A + "1", DownloadRequest.PRIORITY_PREFETCH), null);
+        queue.add("prefetch2", request(HOST_A + "2", DownloadRequest.PRIORITY_PREFETCH), null);
+        queue.pollStartable();
+        queue.pollStartable();
+        queue.add("visible", request(HOST_A + "3", DownloadRequest.PRIORITY_VISIBLE), null);
+        assertNull(queue.pollStartable());
+        DownloadQueue.Entry victim = queue.findPreemptable();
+        assertEquals("prefetch2", victim.mKey);
+    }
+
+    @Test
+    public void doesNotPreemptTheSameOrHigherPriority() {
+        TestQueue queue = new TestQueue(1, 1);
+        queue.add("normal", request(HOST_A + "1", DownloadRequest.PRIORITY_NORMAL), null);
+        queue.pollStartable();
+        queue.add("normal2", request(HOST_A + "2", DownloadRequest.PRIORITY_NORMAL), null);
+        assertNull(queue.findPreemptable());
+    }
+
+    @Test
+    public void preemptsOnlyTheSameHostWhenThatHostIsFull() {
+        TestQueue queue = new TestQueue(3, 1);
+        queue.add("a", request(HOST_A + "1", DownloadRequest.PRIORITY_NORMAL), null);
+        queue.add("b", request(HOST_B + "1", DownloadRequest.PRIORITY_PREFETCH), null);
+        queue.pollStartable();
+        queue.pollStartable();
+        queue.add("visible", request(HOST_A + "2", DownloadRequest.PRIORITY_VISIBLE), null);
+        // b has the lower priority, but pausing it would not let a host-a download start
+        assertEquals("a", queue.findPreemptable().mKey);
+    }
+
+    @Test
+    public void waitsForAPendingPreemption() {
+        TestQueue queue = new TestQueue(2, 2);
+        queue.add("prefetch1", request(HOST_A + "1", DownloadRequest.PRIORITY_PREFETCH), null);
+        queue.add("prefetch2", request(HOST_A + "2", DownloadRequest.PRIORITY_PREFETCH), null);
+        queue.pollStartable();
+        queue.pollStartable();
+        queue.add("visible", request(HOST_A + "3", DownloadRequest.PRIORITY_VISIBLE), null);
+        queue.findPreemptable().mPreempted = true;
+        queue.add("visible2", request(HOST_A + "4", DownloadRequest.PRIORITY_VISIBLE), null);
+        assertNull(queue.findPreemptable());
+    }
+
+    @Test
+    public void preemptedDownloadKeepsItsPlace() {
+        TestQueue queue = new TestQueue(1, 1);
+        queue.add("prefetch", request(HOST_A + "1", DownloadRequest.PRIORITY_PREFETCH), null);
+        DownloadQueue.Entry running = queue.pollStartable();
+        queue.add("prefetch2", request(HOST_A + "2", DownloadRequest.PRIORITY_PREFETCH), null);
+        queue.add("visible", request(HOST_A + "3", DownloadRequest.PRIORITY_VISIBLE), null);
+        running.mDownloader = new StubDownloader();
+        running.mPreempted = true;
+        queue.requeue(queue.removeRunning("prefetch", running.mDownloader));
+        assertNull(running.mDownloader);
+        assertEquals("visible", drain(queue));
+        assertEquals("prefetch", drain(queue));
+        assertEquals("prefetch2", drain(queue));
+    }
+
+    @Test
+    public void onlyTheCurrentDownloaderIsRemoved() {
+        TestQueue queue = new TestQueue(1, 1);
+        queue.add("key", request(HOST_A + "1", DownloadRequest.PRIORITY_NORMAL), null);
+        DownloadQueue.Entry entry = queue.pollStartable();
+        Downloader old = new StubDownloader();
+        entry.mDownloader = new StubDownloader();
+        // a destroyed downloader of an earlier run must not drop the new one
+        assertNull(queue.removeRunning("key", old));
+        assertSame(entry, queue.removeRunning("key", entry.mDownloader));
+        assertTrue(queue.getRunning().isEmpty());
+    }
+
+    @Test
+    public void uriWithoutHostSharesOneSlot() {
+        TestQueue queue = new TestQueue(2, 1);
+        queue.add("1", request("not a url", DownloadRequest.PRIORITY_NORMAL), null);
+        queue.add("2", request(null, DownloadRequest.PRIORITY_NORMAL), null);
+        assertNotNull(queue.pollStartable());
+        assertNull(queue.pollStartable());
+    }
+
+    private static String drain(DownloadQueue queue) {
+        DownloadQueue.Entry entry = queue.pollStartable();
+        queue.removeRunning(entry.mKey);
+        return entry.mKey;
+    }
+
+    private static DownloadRequest request(String uri, int priority) {
+        return new DownloadRequest.Builder().setUri(uri).setPriority(priority).build();
+    }
+
+    private static class TestQueue extends DownloadQueue {
+        long mNow = 1000;
+
+        TestQueue(int maxRunning, int maxPerHost) {
+            super(maxRunning, maxPerHost);
+        }
+
+        @Override
+        long now() {
+            return mNow;
+        }
+    }
+
+    private static class StubDownloader implements Downloader {
+        @Override
+        public boolean isRunning() {
+            return true;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void pause() {
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public void onDestroy() {
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package multithreaddownload.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import multithreaddownload.db.ThreadInfo;
+import multithreaddownload.db.ThreadInfoStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentSchedulerTest {
+    private static final String TAG = "pack";
+    private static final String URI = "http://localhost/pack.zip";
+    private static final long KB = 1024;
+    private static final long MB = 1024 * KB;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+    private final MemoryStore mStore = new MemoryStore();
+
+    @Test
+    public void splitsIntoChunksPerThread() {
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 4 * MB, 2, missingFile());
+        List<ThreadInfo> saved = mStore.getThreadInfos(TAG);
+        // four chunks per thread, none under the minimum chunk
+        assertEquals(8, saved.size());
+        assertContiguous(saved, 4 * MB);
+        assertEquals(0, scheduler.getFinished());
+        assertFalse(scheduler.isComplete());
+    }
+
+    @Test
+    public void smallFilesKeepTheMinimumChunk() {
+        new SegmentScheduler(mStore, TAG, URI, 600 * KB, 4, missingFile());
+        List<ThreadInfo> saved = mStore.getThreadInfos(TAG);
+        assertEquals(3, saved.size());
+        assertContiguous(saved, 600 * KB);
+    }
+
+    @Test
+    public void oneThreadGetsOneChunk() {
+        new SegmentScheduler(mStore, TAG, URI, 10 * MB, 1, missingFile());
+        List<ThreadInfo> saved = mStore.getThreadInfos(TAG);
+        assertEquals(1, saved.size());
+        assertEquals(10 * MB - 1, saved.get(0).getEnd());
+    }
+
+    @Test
+    public void handsOutEveryChunkOnce() {
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 4 * MB, 2, missingFile());
+        List<Long> starts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            ThreadInfo chunk = scheduler.next(null);
+            assertNotNull(chunk);
+            assertFalse(starts.contains(chunk.getStart()));
+            starts.add(chunk.getStart());
+        }
+        assertEquals(8, starts.size());
+    }
+
+    @Test
+    public void finishedChunkIsNotHandedOutAgain() {
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 600 * KB, 4, missingFile());
+        ThreadInfo first = scheduler.next(null);
+        scheduler.reserve(first, (int) scheduler.remaining(first));
+        ThreadInfo second = scheduler.next(first);
+        assertTrue(second.getStart() > first.getStart());
+        assertEquals(0, scheduler.remaining(first));
+    }
+
+    @Test
+    public void releasedChunkGoesToTheNextThread() {
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 600 * KB, 4, missingFile());
+        ThreadInfo first = scheduler.next(null);
+        scheduler.reserve(first, 1000);
+        scheduler.release(first);
+        assertSame(first, scheduler.claimAt(first.getStart() + 1000));
+        assertNull(scheduler.claimAt(first.getStart() + 1000));
+    }
+
+    @Test
+    public void idleThreadStealsTheBackHalfOfTheLargestRange() {
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 2 * MB, 1, missingFile());
+        ThreadInfo slow = scheduler.next(null);
+        scheduler.reserve(slow, (int) (256 * KB));
+        ThreadInfo stolen = scheduler.next(null);
+        assertNotNull(stolen);
+        long middle = 256 * KB + (2 * MB - 256 * KB) / 2;
+        assertEquals(middle, stolen.getStart());
+        assertEquals(2 * MB - 1, stolen.getEnd());
+        assertEquals(middle - 1, slow.getEnd());
+        // the split is saved right away, so a resume keeps the layout
+        List<ThreadInfo> saved = mStore.getThreadInfos(TAG);
+        assertEquals(2, saved.size());
+        assertContiguous(saved, 2 * MB);
+    }
+
+    @Test
+    public void victimStopsAtTheStolenRange() {
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 1 * MB, 1, missingFile());
+        ThreadInfo slow = scheduler.next(null);
+        ThreadInfo stolen = scheduler.next(null);
+        long left = stolen.getStart();
+        // a read that already went past the split only counts up to it
+        assertEquals(left, scheduler.reserve(slow, (int) (left + 4 * KB)));
+        assertEquals(0, scheduler.remaining(slow));
+        assertEquals(0, scheduler.reserve(slow, 100));
+    }
+
+    @Test
+    public void smallRangesAreNotStolen() {
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 100 * KB, 1, missingFile());
+        scheduler.next(null);
+        assertNull(scheduler.next(null));
+    }
+
+    @Test
+    public void unreserveGivesBytesBack() {
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 1 * MB, 1, missingFile());
+        ThreadInfo chunk = scheduler.next(null);
+        scheduler.reserve(chunk, 1000);
+        scheduler.unreserve(chunk, 400);
+        assertEquals(600, scheduler.getFinished());
+    }
+
+    @Test
+    public void resumeKeepsTheSavedLayout() throws Exception {
+        mStore.insert(new ThreadInfo(0, TAG, URI, 0, MB - 1, MB));
+        mStore.insert(new ThreadInfo(3, TAG, URI, MB, 2 * MB - 1, 100));
+        File file = fileOfLength(2 * MB);
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 2 * MB, 2, file);
+        assertEquals(MB + 100, scheduler.getFinished());
+        ThreadInfo next = scheduler.next(null);
+        assertEquals(MB, next.getStart());
+        assertEquals(100, next.getFinished());
+        // a new range gets an id after the saved ones
+        scheduler.reserve(next, 100);
+        ThreadInfo stolen = scheduler.next(null);
+        assertEquals(4, stolen.getId());
+    }
+
+    @Test
+    public void resumeTrustsTheFileOverTheProgress() throws Exception {
+        mStore.insert(new ThreadInfo(0, TAG, URI, 0, MB - 1, MB));
+        mStore.insert(new ThreadInfo(1, TAG, URI, MB, 2 * MB, 500 * KB));
+        File file = fileOfLength(MB + 200 * KB);
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 2 * MB, 2, file);
+        assertEquals(MB + 200 * KB, scheduler.getFinished());
+        ThreadInfo saved = mStore.get(TAG, 1);
+        assertEquals(200 * KB, saved.getFinished());
+        // the old fixed split ended one byte past the file
+        ThreadInfo last = scheduler.next(null);
+        assertEquals(2 * MB - 1, last.getEnd());
+    }
+
+    @Test
+    public void completeOnceEveryRangeIsDone() {
+        SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, 600 * KB, 4, missingFile());
+        ThreadInfo chunk = null;
+        while ((chunk = scheduler.next(chunk)) != null) {
+            scheduler.reserve(chunk, (int) scheduler.remaining(chunk));
+        }
+        assertTrue(scheduler.isComplete());
+        assertEquals(600 * KB, scheduler.getFinished());
+    }
+
+    @Test
+    public void fastThreadsTakeOverFromASlowOne() throws Exception {
+        final long length = 8 * MB;
+        final SegmentScheduler scheduler = new SegmentScheduler(mStore, TAG, URI, length, 4, missingFile());
+        final List<long[]> written = Collections.synchronizedList(new ArrayList<long[]>());
+        final long[] slowBytes = new long[1];
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            final boolean slow = t == 0;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random();
+                    ThreadInfo chunk = null;
+                    while ((chunk = scheduler.next(chunk)) != null) {
+                        while (scheduler.remaining(chunk) > 0) {
+                            long position;
+                            int allowed;
+                            synchronized (scheduler) {
+                                position = chunk.getStart() + chunk.getFinished();
+                                allowed = scheduler.reserve(chunk, (int) (16 * KB));
+                            }
+                            if (allowed > 0) {
+                                written.add(new long[]{position, position + allowed});
+                                if (slow) {
+                                    slowBytes[0] += allowed;
+                                }
+                            }
+                            sleep(slow ? 20 : random.nextInt(2));
+                        }
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        assertTrue(scheduler.isComplete());
+        assertEquals(length, scheduler.getFinished());
+        // every byte written exactly once
+        List<long[]> ranges = new ArrayList<>(written);
+        Collections.sort(ranges, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+        long position = 0;
+        for (long[] range : ranges) {
+            assertEquals(position, range[0]);
+            position = range[1];
+        }
+        assertEquals(length, position);
+        // the slow thread would own a quarter of the file with a fixed split
+        assertTrue("slow thread wrote " + slowBytes[0], slowBytes[0] < length / 4);
+    }
+
+    private File missingFile() {
+        return new File(mFolder.getRoot(), "missing");
+    }
+
+    private File fileOfLength(long length) throws Exception {
+        File file = mFolder.newFile();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(length);
+        raf.close();
+        return file;
+    }
+
+    private static void assertContiguous(List<ThreadInfo> chunks, long length) {
+        List<ThreadInfo> sorted = new ArrayList<>(chunks);
+        Collections.sort(sorted, new Comparator<ThreadInfo>() {
+            @Override
+            public int compare(ThreadInfo a, ThreadInfo b) {
+                return Long.compare(a.getStart(), b.getStart());
+            }
+        });
+        long position = 0;
+        for (ThreadInfo chunk : sorted) {
+            assertEquals(position, chunk.getStart());
+            position = chunk.getEnd() + 1;
+        }
+        assertEquals(length, position);
+    }
+
+    private static void sleep(int millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * keeps copies, like the database, so only what the scheduler writes back shows up
+     */
+    private static class MemoryStore implements ThreadInfoStore {
+        private final Map<String, Map<Integer, ThreadInfo>> mInfos = new HashMap<>();
+
+        @Override
+        public synchronized void insert(ThreadInfo threadInfo) {
+            Map<Integer, ThreadInfo> infos = mInfos.get(threadInfo.getTag());
+            if (infos == null) {
+                infos = new HashMap<>();
+                mInfos.put(threadInfo.getTag(), infos);
+            }
+            infos.put(threadInfo.getId(), copy(threadInfo));
+        }
+
+        @Override
+        public synchronized void update(String tag, int threadId, long finished) {
+            mInfos.get(tag).get(threadId).setFinished(finished);
+        }
+
+        @Override
+        public synchronized void updateEnd(String tag, int threadId, long end) {
+            mInfos.get(tag).get(threadId).setEnd(end);
+        }
+
+        @Override
+        public synchronized List<ThreadInfo> getThreadInfos(String tag) {
+            List<ThreadInfo> list = new ArrayList<>();
+            Map<Integer, ThreadInfo> infos = mInfos.get(tag);
+            if (infos != null) {
+                for (ThreadInfo info : infos.values()) {
+                    list.add(copy(info));
+                }
+            }
+            return list;
+        }
+
+        synchronized ThreadInfo get(String tag, int threadId) {
+            return mInfos.get(tag).get(threadId);
+        }
+
+        private static ThreadInfo copy(ThreadInfo info) {
+            return new ThreadInfo(info.getId(), info.getTag(), info.getUri(), info.getStart(), info.getEnd(), info.getFinished());
+        }
+    }
+}